@@ -18,10 +18,11 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.ActivityManager;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
-import android.media.ExifInterface;
 import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
@@ -32,42 +33,68 @@ import android.os.Message;
 import android.os.Process;
 import android.os.SystemClock;
 import com.imagefixer.app.utils.LogUtils;
+import com.imagefixer.app.utils.DateTimeUtils;
 import com.imagefixer.app.utils.FileNameDateTimeParser;
+import com.imagefixer.app.utils.ShadowFileNameParser;
+import com.imagefixer.app.metadata.AbstractExifDateSource;
+import com.imagefixer.app.metadata.AndroidxExifDateSource;
+import com.imagefixer.app.metadata.DirectBufferPool;
+import com.imagefixer.app.metadata.FileType;
+import com.imagefixer.app.metadata.HeaderDateReader;
+import com.imagefixer.app.metadata.HeaderProbeDateSource;
+import com.imagefixer.app.metadata.MalformedMetadataException;
+import com.imagefixer.app.metadata.PlatformExifDateSource;
+import com.imagefixer.app.metadata.XmpDateSource;
+import com.imagefixer.app.scan.ConcurrencyController;
+import com.imagefixer.app.scan.DirectoryWalker;
+import com.imagefixer.app.scan.FileSystemShim;
+import com.imagefixer.app.scan.PosixFileSystem;
+import com.imagefixer.app.scan.ScanEntry;
+import com.imagefixer.app.scan.ScanPipeline;
+import com.imagefixer.app.scan.ScanRules;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.io.Serializable;
-import android.media.ExifInterface;
 
 public class ScanService extends Service {
 
     private static final String TAG = "ScanService";
     private static final int NOTIFICATION_ID = 1;
     private static final String CHANNEL_ID = "scan_channel";
-    private static final int MAX_SCAN_DEPTH = 10; // 最大扫描深度限制
     private static final int BATCH_SIZE = 5; // 批处理大小
-    private static final int THREAD_POOL_SIZE = Math.min(4, Runtime.getRuntime().availableProcessors()); // 限制最大线程数，避免过多并发
+    private static final int PIPELINE_CAPACITY = 256; // 发现与处理之间的队列容量，队列满时遍历等待
+    private static final int MAX_WORKER_COUNT = 8; // 处理线程数上限，也是自适应并发的上限
+    private static final int LOW_RAM_WORKER_COUNT = 2; // 低内存设备的并发上限
+    private static final int INITIAL_CONCURRENCY = 2; // 自适应并发的初始值，按吞吐量逐步增加
     private static final long MIN_NOTIFICATION_INTERVAL_MS = 1000; // 通知最小更新间隔（毫秒）
     private static final long MEMORY_CHECK_INTERVAL_MS = 5000; // 内存检查间隔
     private static final float LOW_MEMORY_THRESHOLD = 0.15f; // 低内存阈值（可用内存低于15%时触发优化）
@@ -77,6 +104,13 @@ public class ScanService extends Service {
     // 广播动作
     // Dryrun模式参数
     public static final String EXTRA_DRY_RUN = "dry_run";
+    public static final String EXTRA_SHADOW_PARSER = "shadow_parser"; // 影子模式：同时运行候选文件名解析器并对比结果
+    public static final String EXTRA_EXIF_SOURCE = "exif_source"; // EXIF读取后端：header（默认）、platform、androidx
+    public static final String EXTRA_WALK_PARALLELISM = "walk_parallelism"; // 目录遍历的并行线程数，默认为CPU核数
+    public static final String EXTRA_WORKER_COUNT = "worker_count"; // 固定的处理并发数，不指定时按存储设备的吞吐量自动调整
+    // 用户文件名模板配置，位于应用外部存储目录（Android/data/<包名>/files）
+    private static final String FILE_NAME_PATTERNS = "filename_patterns.txt";
+    private static final String SCAN_RULES = "scan_rules.txt"; // 扫描根目录和包含/排除规则
     public static final String ACTION_SCAN_PROGRESS = "com.imagefixer.app.ACTION_SCAN_PROGRESS";
     public static final String ACTION_SCAN_COMPLETED = "com.imagefixer.app.ACTION_SCAN_COMPLETED";
     public static final String ACTION_SCAN_ERROR = "com.imagefixer.app.ACTION_SCAN_ERROR";
@@ -90,6 +124,7 @@ public class ScanService extends Service {
     public static final String EXTRA_FILE_INFO = "file_info";
     public static final String EXTRA_PROGRESS = "progress";
     public static final String EXTRA_TOTAL_FILES = "total_files";
+    public static final String EXTRA_CONCURRENCY = "concurrency"; // 当前的处理并发数
     public static final String EXTRA_SCANNED_FILES_LIST = "scanned_files_list"; // 所有扫描文件列表
 
     private Looper serviceLooper;
@@ -97,12 +132,22 @@ public class ScanService extends Service {
     private NotificationManager notificationManager;
     private ExecutorService executorService; // 线程池
     private Handler mainHandler; // 用于在主线程更新通知
+
+    // 设备时区改变时重新读取默认时区，扫描过程中也立即生效
+    private final BroadcastReceiver timeZoneReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            DateTimeUtils.refreshTimeZone();
+            LogUtils.i(TAG, "设备时区已改变，已重新读取默认时区");
+        }
+    };
     private ScheduledExecutorService memoryMonitorService; // 内存监控线程池
 
     private long lastNotificationUpdateTime = 0; // 上次通知更新时间
     private int lastScannedCount = 0; // 上次通知中的扫描计数
     private int lastFixedCount = 0; // 上次通知中的修复计数
     private boolean notificationUpdatePending = false; // 是否有待处理的通知更新
+    private final Object notificationLock = new Object(); // 保护以上通知更新状态，多个处理线程同时更新进度
     private boolean isLowMemoryMode = false; // 是否处于低内存模式
     private List<ScanFileInfo> pendingFileInfos = new ArrayList<>(); // 待发送的文件信息列表
     private long lastFileInfoBroadcastTime = 0; // 上次文件信息广播时间
@@ -113,7 +158,17 @@ public class ScanService extends Service {
     private AtomicInteger totalCount = new AtomicInteger(0); // 文件总数计数器
     private AtomicInteger scannedCount = new AtomicInteger(0); // 已扫描文件计数
     private AtomicInteger fixedCount = new AtomicInteger(0); // 已修正文件计数
-    private Queue<File> imageFilesQueue = new ConcurrentLinkedQueue<>(); // 使用并发队列代替ArrayList，提高线程安全和性能
+    private AtomicLong exifFallbackCount = new AtomicLong(0); // 结构异常、改用ExifInterface的文件数
+    private volatile AbstractExifDateSource exifDateSource = new HeaderProbeDateSource(); // 选定的EXIF读取后端
+    private volatile AbstractExifDateSource fallbackExifSource = new PlatformExifDateSource(); // 后端不支持或结构异常时使用
+    private volatile AbstractExifDateSource videoDateSource = exifDateSource; // 视频总是使用头部探测，与选定的EXIF后端无关
+    private volatile XmpDateSource xmpDateSource = new XmpDateSource(); // EXIF中没有日期时读取XMP
+    private volatile int walkParallelism = Runtime.getRuntime().availableProcessors(); // 目录遍历的并行线程数
+    private volatile int fixedConcurrency = 0; // 固定的处理并发数，0 表示自适应
+    private volatile ConcurrencyController concurrencyController; // 本次扫描的并发控制器
+    private final FileSystemShim fileSystem = new PosixFileSystem(); // 遍历的文件系统操作，每个条目一次 stat
+    private volatile ScanRules scanRules = ScanRules.defaults(); // 扫描根目录和包含/排除规则
+    private AtomicIntegerArray fileTypeCounts = new AtomicIntegerArray(FileType.values().length); // 按实际格式统计的文件数
     private CopyOnWriteArrayList<ScanFileInfo> imageFileList = new CopyOnWriteArrayList<>(); // 统一存储所有检查分析过的文件信息
 
     public static class ScanFileInfo implements Serializable {
@@ -178,7 +233,11 @@ public class ScanService extends Service {
 
     // 支持的图片格式
     private static final String[] SUPPORTED_IMAGE_FORMATS = {
-            ".jpg", ".jpeg", ".png", ".webp", ".heic"
+            ".jpg", ".jpeg", ".png", ".webp", ".heic", ".dng", ".cr2", ".nef", ".arw"
+    };
+    // 支持的视频格式，只读取 moov 盒中的创建时间，不受文件大小限制
+    private static final String[] SUPPORTED_VIDEO_FORMATS = {
+            ".mp4", ".mov", ".3gp"
     };
 
     private final class ServiceHandler extends Handler {
@@ -193,7 +252,10 @@ public class ScanService extends Service {
                 isScanning.set(true);
                 scannedCount.set(0);
                 fixedCount.set(0);
-                imageFilesQueue.clear();
+                exifFallbackCount.set(0);
+                for (int i = 0; i < fileTypeCounts.length(); i++) {
+                    fileTypeCounts.set(i, 0);
+                }
                 imageFileList.clear();
 
                 LogUtils.i(TAG, "开始初始化扫描服务");
@@ -241,18 +303,67 @@ public class ScanService extends Service {
 
         notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
 
+        // 时区广播只由系统发送，不需要导出标志
+        registerReceiver(timeZoneReceiver, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+
         // 初始化线程池，使用更安全的配置
-        executorService = new ThreadPoolExecutor(
-                1, // 核心线程数
-                THREAD_POOL_SIZE, // 最大线程数
+        // 核心线程数等于最大线程数：处理线程与扫描任务同时运行，不能排在队列中等扫描任务结束
+        // 线程数只是上限，实际同时处理的文件数由 ConcurrencyController 按吞吐量调整
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_WORKER_COUNT + 1, // 核心线程数：扫描任务和处理线程
+                MAX_WORKER_COUNT + 1, // 最大线程数
                 60L, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<>(100), // 有界队列，避免任务无限积压
                 new ThreadPoolExecutor.CallerRunsPolicy() // 拒绝策略：调用者执行
         );
+        executor.allowCoreThreadTimeOut(true); // 空闲线程超时后退出
+        executorService = executor;
 
         // 初始化内存监控服务
         memoryMonitorService = Executors.newSingleThreadScheduledExecutor();
         startMemoryMonitoring();
+
+        // 加载用户自定义的文件名模板
+        loadFileNamePatterns();
+        // 加载扫描根目录和包含/排除规则
+        loadScanRules();
+    }
+
+    // 从应用外部存储目录中的 filename_patterns.txt 加载用户模板，文件不存在时只使用内置规则
+    private void loadFileNamePatterns() {
+        File config = new File(getExternalFilesDir(null), FILE_NAME_PATTERNS);
+        if (!config.isFile()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(config), StandardCharsets.UTF_8)) {
+            fileNameParser.loadUserPatterns(reader);
+            LogUtils.i(TAG, "已加载文件名模板: " + fileNameParser.getUserRules().size() + " 个");
+        } catch (IOException | IllegalArgumentException e) {
+            LogUtils.w(TAG, "文件名模板配置无效，只使用内置规则: " + config.getAbsolutePath(), e);
+        }
+    }
+
+    // 读取元数据以等待I/O为主，并发上限为每个CPU核一个（至少2个）；低内存设备只用2个，避免缓冲区占用过多内存
+    private int getMaxConcurrency() {
+        ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null && activityManager.isLowRamDevice()) {
+            return LOW_RAM_WORKER_COUNT;
+        }
+        return Math.max(2, Math.min(MAX_WORKER_COUNT, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // 从应用外部存储目录中的 scan_rules.txt 加载扫描规则，文件不存在或有误时只使用内置规则
+    private void loadScanRules() {
+        File config = new File(getExternalFilesDir(null), SCAN_RULES);
+        if (!config.isFile()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(config), StandardCharsets.UTF_8)) {
+            scanRules = ScanRules.parse(reader);
+            LogUtils.i(TAG, "已加载扫描规则，根目录: " + scanRules.getRoots());
+        } catch (IOException | IllegalArgumentException e) {
+            LogUtils.w(TAG, "扫描规则配置无效，只使用内置规则: " + config.getAbsolutePath(), e);
+        }
     }
 
     // 启动内存监控
@@ -287,15 +398,9 @@ public class ScanService extends Service {
         // 清理不必要的资源
         LogUtils.i(TAG, "执行内存优化...");
 
-        // 手动触发GC
+        // 手动触发GC；待处理文件在有界流水线中，不需要再截断
         System.gc();
         Runtime.getRuntime().gc();
-
-        // 限制队列大小，防止内存溢出
-        int maxQueueSize = isLowMemoryMode ? 100 : 500;
-        while (imageFilesQueue.size() > maxQueueSize) {
-            imageFilesQueue.poll(); // 移除最早的文件
-        }
     }
 
     @Override
@@ -305,6 +410,23 @@ public class ScanService extends Service {
             // 检查是否启用dryrun模式
             isDryRun = intent.getBooleanExtra(EXTRA_DRY_RUN, false);
             LogUtils.d(TAG, "启动扫描服务，dryrun模式: " + isDryRun);
+            // 检查是否启用文件名解析影子模式
+            shadowParser = intent.getBooleanExtra(EXTRA_SHADOW_PARSER, false)
+                    ? new ShadowFileNameParser(fileNameParser)
+                    : null;
+            // 选择EXIF读取后端，各后端分别统计字节数和耗时
+            exifDateSource = createExifDateSource(intent.getStringExtra(EXTRA_EXIF_SOURCE));
+            videoDateSource = exifDateSource instanceof HeaderProbeDateSource
+                    ? exifDateSource
+                    : new HeaderProbeDateSource();
+            fallbackExifSource = exifDateSource instanceof PlatformExifDateSource
+                    ? exifDateSource
+                    : new PlatformExifDateSource();
+            xmpDateSource = new XmpDateSource();
+            walkParallelism = Math.max(1, intent.getIntExtra(EXTRA_WALK_PARALLELISM,
+                    Runtime.getRuntime().availableProcessors()));
+            int workers = intent.getIntExtra(EXTRA_WORKER_COUNT, 0);
+            fixedConcurrency = workers > 0 ? Math.min(MAX_WORKER_COUNT, workers) : 0;
         }
         
         if (!isScanning.getAndSet(true)) {
@@ -330,6 +452,8 @@ public class ScanService extends Service {
         // 停止扫描
         isScanning.set(false);
 
+        unregisterReceiver(timeZoneReceiver);
+
         // 关闭线程池
         shutdownExecutors();
 
@@ -400,10 +524,6 @@ public class ScanService extends Service {
             imageFileList.clear();
         }
 
-        if (imageFilesQueue != null) {
-            imageFilesQueue.clear();
-        }
-
         // 手动触发垃圾回收
         System.gc();
         Runtime.getRuntime().gc();
@@ -416,24 +536,43 @@ public class ScanService extends Service {
     }
 
     // 扫描任务类
-    private class ScanTask implements Runnable {
-        private String rootPath;
-        private int currentDepth = 0;
-
-        public ScanTask(String rootPath) {
-            this.rootPath = rootPath;
+    private class ScanTask implements Runnable, DirectoryWalker.Listener {
+        private final List<File> roots;
+        private final ScanRules rules;
+        private ScanPipeline<ScanEntry> pipeline;
+
+        public ScanTask(List<File> roots, ScanRules rules) {
+            this.roots = roots;
+            this.rules = rules;
         }
 
         @Override
         public void run() {
             try {
-                // 开始扫描
-                LogUtils.d(TAG, "开始扫描目录: " + rootPath);
-                scanDirectory(new File(rootPath), currentDepth);
-                LogUtils.d(TAG, "扫描完成: 扫描了 " + totalCount.get() + " 个文件，分析了 " + scannedCount.get() + " 个文件");
-
-                // 扫描完成后，批量处理所有发现的图片文件
-                batchProcessImageFiles();
+                // 开始扫描，服务未运行期间时区可能已改变
+                DateTimeUtils.refreshTimeZone();
+                LogUtils.d(TAG, "开始扫描目录: " + roots);
+                pipeline = new ScanPipeline<>(PIPELINE_CAPACITY, BATCH_SIZE, isScanning);
+                final DirectoryWalker walker = new DirectoryWalker(fileSystem, rules, walkParallelism, isScanning,
+                        this);
+
+                // 遍历在单独的线程中进行，当前线程和线程池中的处理线程同时处理已发现的文件；队列满时遍历等待
+                Thread walkerThread = new Thread(() -> {
+                    try {
+                        walker.walk(roots);
+                        LogUtils.d(TAG, "扫描完成: 扫描了 " + totalCount.get() + " 个文件，分析了 " + scannedCount.get() + " 个文件");
+                        LogUtils.d(TAG, walker.getSummary());
+                    } finally {
+                        pipeline.finish();
+                    }
+                }, "ScanWalker");
+                ConcurrencyController controller = createConcurrencyController();
+                concurrencyController = controller;
+                walkerThread.start();
+                drainWithWorkers(controller.getMaxLimit());
+                walkerThread.join();
+                LogUtils.d(TAG, pipeline.getSummary());
+                LogUtils.d(TAG, controller.getSummary());
 
                 // 确保所有待发送的文件信息都已发送
                 flushPendingFileInfos();
@@ -444,6 +583,23 @@ public class ScanService extends Service {
 
                     // 扫描完成
                     LogUtils.d(TAG, "分析完成: 分析了 " + finalScannedCount + " 个文件，修正了 " + finalFixedCount + " 个文件");
+                    LogUtils.d(TAG, "文件名规则统计: " + fileNameParser.getRuleStatistics());
+                    LogUtils.d(TAG, fileNameParser.getShapeCacheStatistics());
+                    AbstractExifDateSource source = exifDateSource;
+                    LogUtils.d(TAG, source.getSummary());
+                    if (fallbackExifSource != source) {
+                        LogUtils.d(TAG, fallbackExifSource.getSummary() + "，其中结构异常 " + exifFallbackCount.get() + " 个");
+                    }
+                    if (videoDateSource != source) {
+                        LogUtils.d(TAG, "视频" + videoDateSource.getSummary());
+                    }
+                    LogUtils.d(TAG, xmpDateSource.getSummary());
+                    LogUtils.d(TAG, "文件类型统计: " + getFileTypeSummary());
+                    LogUtils.d(TAG, DirectBufferPool.getSummary());
+                    ShadowFileNameParser shadow = shadowParser;
+                    if (shadow != null) {
+                        LogUtils.d(TAG, shadow.getSummary());
+                    }
 
                     // 发送完成广播
                     sendCompletedBroadcast(totalCount.get(), finalScannedCount, finalFixedCount);
@@ -466,119 +622,87 @@ public class ScanService extends Service {
             } finally {
                 // 清理资源
                 imageFileList.clear();
-                imageFilesQueue.clear();
             }
         }
 
-        // 扫描目录，发现所有图片文件
-        private void scanDirectory(File directory, int depth) {
-            // 检查是否超过最大深度或服务是否已被停止
-            if (depth > MAX_SCAN_DEPTH || !isScanning.get()) {
-                return;
+        // 指定了固定并发数时不调整；否则从较小的并发开始，按存储设备的吞吐量在 1..上限 之间调整
+        private ConcurrencyController createConcurrencyController() {
+            int fixed = fixedConcurrency;
+            if (fixed > 0) {
+                return new ConcurrencyController(fixed, fixed, fixed);
             }
+            int max = getMaxConcurrency();
+            return new ConcurrencyController(Math.min(INITIAL_CONCURRENCY, max), 1, max);
+        }
 
-            // 检查目录是否存在且可访问
-            if (!directory.exists() || !directory.isDirectory() || !directory.canRead()) {
-                return;
+        // 当前线程和 workers-1 个线程池线程同时处理流水线中的文件，全部结束（或被取消）后返回；
+        // 同时处理的文件数由并发控制器限制
+        private void drainWithWorkers(int workers) throws InterruptedException {
+            LogUtils.d(TAG, "处理线程: " + workers);
+            List<Future<?>> futures = new ArrayList<>(workers - 1);
+            for (int i = 1; i < workers; i++) {
+                futures.add(executorService.submit(() -> pipeline.drain(this::processBatch)));
             }
-
-            // 跳过系统目录和隐藏目录
-            if (directory.getName().startsWith(".") ||
-                    directory.getName().equals("Android") ||
-                    directory.getName().equals("Download") ||
-                    directory.getAbsolutePath().contains("\\Android\\data\\") ||
-                    directory.getAbsolutePath().contains("\\Android\\obb\\") ||
-                    directory.getAbsolutePath().contains("\\.thumbnails")) {
-                return;
+            pipeline.drain(this::processBatch);
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LogUtils.e(TAG, "处理线程失败", e.getCause());
+                }
             }
+        }
 
-            // 获取目录下的所有文件和子目录
-            File[] files = directory.listFiles();
-            if (files == null || files.length == 0) {
+        // 遍历中发现文件：只收集支持的格式，放入流水线由处理线程立即处理
+        @Override
+        public void onFile(ScanEntry entry) {
+            if (!isSupportedImageFile(entry) || !pipeline.put(entry)) {
                 return;
             }
 
-            // 批量处理文件列表，减少重复更新通知
-            int batchCount = 0;
-
-            try {
-                // 遍历文件和子目录
-                for (File file : files) {
-                    // 检查服务是否已被停止
-                    if (!isScanning.get()) {
-                        return;
-                    }
+            // 增加总文件数计数
+            int currentCount = totalCount.incrementAndGet();
 
-                    // 检查内存状态，如果内存不足则暂停扫描
-                    if (isLowMemoryMode && batchCount > 0 && batchCount % 20 == 0) {
-                        try {
-                            Thread.sleep(100); // 暂停一小段时间，让GC有机会运行
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-
-                    // 如果是目录，递归扫描
-                    if (file.isDirectory()) {
-                        scanDirectory(file, depth + 1);
-                    } else if (isSupportedImageFile(file)) {
-                        // 使用并发队列
-                        imageFilesQueue.offer(file);
-
-                        // 增加总文件数计数
-                        int currentCount = totalCount.incrementAndGet();
-                        batchCount++;
-
-                        // 批量更新通知，减少UI更新频率
-                        // if (batchCount % 10 == 0 || currentCount % BATCH_SIZE == 0) {
-                        updateProgressNotification(0, 0);
-                        // }
-                    }
+            // 检查内存状态，如果内存不足则暂停遍历
+            if (isLowMemoryMode && currentCount % 20 == 0) {
+                try {
+                    Thread.sleep(100); // 暂停一小段时间，让GC有机会运行
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            } catch (SecurityException e) {
-                LogUtils.w(TAG, "无法访问目录: " + directory.getAbsolutePath(), e);
             }
-        }
 
-        // 批量处理图片文件
-        private void batchProcessImageFiles() {
-            List<File> batchFiles = new ArrayList<>(BATCH_SIZE);
-            File file;
-            int batchCount = 0;
-
-            while ((file = imageFilesQueue.poll()) != null && isScanning.get()) {
-                batchFiles.add(file);
-
-                // 当批次满了或队列为空时处理批次
-                if (batchFiles.size() >= BATCH_SIZE || imageFilesQueue.isEmpty()) {
-                    processBatch(batchFiles);
-                    batchFiles.clear();
-                    batchCount++;
-
-                    // 批次处理后检查内存状态
-                    if (isLowMemoryMode) {
-                        optimizeMemoryUsage();
-                        // 在低内存模式下，处理完一批后短暂暂停
-                        try {
-                            Thread.sleep(50);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-                }
-            }
+            updateProgressNotification(0, 0);
         }
 
-        // 处理单个批次的文件
-        private void processBatch(List<File> batchFiles) {
+        // 处理单个批次的文件，返回修正的文件数
+        private int processBatch(List<ScanEntry> batchFiles) {
             int batchFixedCount = 0;
 
-            for (File file : batchFiles) {
-                if (!isScanning.get())
+            // 整批文件名一次解析，供EXIF缺失时使用
+            long[] fileNameDates = getFileNameDateTimes(batchFiles);
+
+            ConcurrencyController controller = concurrencyController;
+            for (int i = 0; i < batchFiles.size(); i++) {
+                try {
+                    // 等待并发许可，已取消时返回 false
+                    if (!controller.acquire(isScanning))
+                        break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                     break;
+                }
 
-                if (processImageFile(file)) {
-                    batchFixedCount++;
+                long start = System.nanoTime();
+                try {
+                    if (processImageFile(batchFiles.get(i), fileNameDates[i])) {
+                        batchFixedCount++;
+                    }
+                } finally {
+                    controller.release();
+                    if (controller.record(System.nanoTime() - start)) {
+                        LogUtils.d(TAG, "处理并发调整为 " + controller.getLimit());
+                    }
                 }
                 scannedCount.incrementAndGet();
             }
@@ -589,46 +713,69 @@ public class ScanService extends Service {
             }
             // 更新通知
             updateProgressNotification(scannedCount.get(), fixedCount.get());
+
+            // 批次处理后检查内存状态
+            if (isLowMemoryMode) {
+                optimizeMemoryUsage();
+                // 在低内存模式下，处理完一批后短暂暂停
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return batchFixedCount;
         }
 
         // 修复图片文件
-        private boolean processImageFile(File imageFile) {
+        // 大小和修改时间使用遍历时 stat 读到的值，不再查询文件系统
+        private boolean processImageFile(ScanEntry entry, long fileNameDate) {
+            File imageFile = entry.getFile();
             try {
-                // 限制文件大小，跳过过大的文件
-                if (imageFile.length() > 100 * 1024 * 1024) { // 跳过大于100MB的文件
+                // 限制图片文件大小，跳过过大的文件；视频只读取 moov 盒，不受限制
+                if (!isVideoFile(imageFile) && entry.getSize() > 100 * 1024 * 1024) { // 跳过大于100MB的文件
                     LogUtils.w(TAG, "跳过过大的文件: " + imageFile.getAbsolutePath());
                     return false;
                 }
 
                 // 获取当前文件的修改时间
-                long longCurrentModifiedTime = imageFile.lastModified();
-                long longRealModifyDate = 0;
-                Date RealModifyDate = null;
+                long longCurrentModifiedTime = entry.getLastModified();
+                long longRealModifyDate;
                 boolean isModified = false;
+                boolean isDateFromXmp = false;
                 boolean isDateFromFileName = false;
 
-                // 读取EXIF信息
-                ExifInterface exifInterface = new ExifInterface(imageFile.getAbsolutePath());
-                RealModifyDate = getExifDateTime(exifInterface);
+                // 按文件内容识别格式并读取EXIF信息，无法识别的文件（改名的其它文件、零字节占位文件等）直接跳过
+                HeaderDateReader reader = headerReaders.get();
+                longRealModifyDate = readExifDateTime(imageFile, reader);
+                if (reader.getLastFileType() == FileType.UNKNOWN) {
+                    LogUtils.d(TAG, "无法识别文件格式，跳过: " + imageFile.getAbsolutePath());
+                    return false;
+                }
 
-                // 如果不存在EXIF信息，尝试通过文件名称解析出文件创建时间
-                if (RealModifyDate == null) {
-                    RealModifyDate = getFileNameDateTime(imageFile.getName());
+                // 如果EXIF中没有日期，使用读取EXIF时一并读到的XMP拍摄时间
+                if (longRealModifyDate == DateTimeUtils.INVALID) {
+                    longRealModifyDate = reader.getLastXmpDateTime();
+                    isDateFromXmp = longRealModifyDate != DateTimeUtils.INVALID;
+                }
+
+                // 如果不存在EXIF和XMP信息，尝试通过文件名称解析出文件创建时间
+                if (longRealModifyDate == DateTimeUtils.INVALID) {
+                    longRealModifyDate = fileNameDate;
                     isDateFromFileName = true;
                 }
 
                 // 如果无法解析出EXIF时间，创建未修正的扫描文件信息
-                if (RealModifyDate == null) {
+                if (longRealModifyDate == DateTimeUtils.INVALID) {
                     LogUtils.d(TAG, "无法解析出EXIF时间，文件时间未修改: " + imageFile.getAbsolutePath());
                     sendFileInfoBroadcast(new ScanFileInfo(
                             imageFile.getAbsolutePath(),
                             longCurrentModifiedTime,
-                            longRealModifyDate,
+                            0,
                             false));
                     return false;
                 }
 
-                longRealModifyDate = RealModifyDate.getTime();
                 // 如果EXIF时间与当前修改时间不同，则更新文件时间
                 if (Math.abs(longRealModifyDate - longCurrentModifiedTime) > 1000) { // 允许1秒的误差
                     // 更新文件修改时间
@@ -639,7 +786,9 @@ public class ScanService extends Service {
                     // @todo 检查文件创建时间，如果晚于修改时间，则设置文件创建时间为修改时间
 
                     // 文件已修正，日志记录
-                    LogUtils.d(TAG, "已修正 " + (isDateFromFileName ? "[文件名]: " : ": ") + " -> "
+                    Date RealModifyDate = new Date(longRealModifyDate);
+                    LogUtils.d(TAG, "已修正 "
+                            + (isDateFromFileName ? "[文件名]: " : isDateFromXmp ? "[XMP]: " : ": ") + " -> "
                             + imageFile.getAbsolutePath() + " -> " + RealModifyDate
                             + (isDryRun ? " [DRYRUN模式]" : ""));
 
@@ -651,6 +800,7 @@ public class ScanService extends Service {
                             true,
                             " - " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(RealModifyDate)
                                     + (isDateFromFileName ? " 【文件名解析】" : "")
+                                    + (isDateFromXmp ? " 【XMP】" : "")
                                     + (isDryRun ? " 【DRYRUN模式】" : "")));
 
                     return isModified;
@@ -684,45 +834,131 @@ public class ScanService extends Service {
      * 3) 2023-01-01-12-30-45.jpg
      * 4) 2023.01.01.12.30.45.heic
      * 5) 1748512965775.jpg (Unix时间戳格式)
-     * 返回解析出的 Date 对象；若无法解析则返回 null
+     * 一批文件名一次解析，返回与文件列表一一对应的毫秒时间戳；无法解析的为 DateTimeUtils.INVALID
      */
     // 使用FileNameDateTimeParser类处理文件名解析
     private FileNameDateTimeParser fileNameParser = new FileNameDateTimeParser();
+    // 影子模式对比器，未启用时为null
+    private volatile ShadowFileNameParser shadowParser;
     
-    private Date getFileNameDateTime(String fileName) {
-        return fileNameParser.getFileNameDateTime(fileName);
+    private long[] getFileNameDateTimes(List<ScanEntry> files) {
+        long[] results = new long[files.size()];
+        ShadowFileNameParser shadow = shadowParser;
+        if (shadow != null) {
+            // 影子模式需要逐个对比
+            for (int i = 0; i < results.length; i++) {
+                Date date = shadow.getFileNameDateTime(files.get(i).getName());
+                results[i] = date != null ? date.getTime() : DateTimeUtils.INVALID;
+            }
+            return results;
+        }
+        String[] fileNames = new String[results.length];
+        for (int i = 0; i < fileNames.length; i++) {
+            fileNames[i] = files.get(i).getName();
+        }
+        fileNameParser.parseBatch(fileNames, results);
+        return results;
     }
 
     private void startScan() {
-        // 创建并启动扫描任务
-        ScanTask scanTask = new ScanTask(Environment.getExternalStorageDirectory().getAbsolutePath());
+        // 创建并启动扫描任务，没有配置根目录时扫描外部存储根目录
+        ScanRules rules = scanRules;
+        List<File> roots = rules.getRoots();
+        if (roots.isEmpty()) {
+            roots = Collections.singletonList(Environment.getExternalStorageDirectory());
+        }
+        ScanTask scanTask = new ScanTask(roots, rules);
         executorService.execute(scanTask);
     }
 
-    private boolean isSupportedImageFile(File file) {
-        if (file == null || !file.exists() || !file.isFile()) {
+    // 类型已在遍历时 stat 读取
+    private boolean isSupportedImageFile(ScanEntry entry) {
+        if (entry == null || !entry.isRegularFile()) {
             return false;
         }
 
+        File file = entry.getFile();
         String fileName = file.getName().toLowerCase();
         for (String format : SUPPORTED_IMAGE_FORMATS) {
             if (fileName.endsWith(format)) {
                 return true;
             }
         }
+        return isVideoFile(file);
+    }
+
+    private static boolean isVideoFile(File file) {
+        String fileName = file.getName().toLowerCase();
+        for (String format : SUPPORTED_VIDEO_FORMATS) {
+            if (fileName.endsWith(format)) {
+                return true;
+            }
+        }
         return false;
     }
 
-    private Date getExifDateTime(ExifInterface exifInterface) {
-        // 尝试获取不同的日期时间标签
-        String dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME);
-        if (dateString == null || dateString.isEmpty()) {
-            dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
+    // 头部探测读取器，复用窗口缓冲区，每个工作线程一个
+    private final ThreadLocal<HeaderDateReader> headerReaders = new ThreadLocal<HeaderDateReader>() {
+        @Override
+        protected HeaderDateReader initialValue() {
+            return new HeaderDateReader();
+        }
+    };
+
+    /**
+     * 读取图片的EXIF日期时间
+     * 先按文件开头的魔数识别格式，再交给选定的读取后端（视频总是交给头部探测）；后端不支持该格式或头部结构异常时
+     * 改用系统 ExifInterface，ExifInterface 不支持的视频和无法识别的文件不再读取。
+     * 头部中没有EXIF日期时，XMP在同一次打开中读取，由调用方通过 {@link HeaderDateReader#getLastXmpDateTime()} 获取
+     */
+    private long readExifDateTime(File imageFile, HeaderDateReader reader) throws IOException {
+        AbstractExifDateSource source = exifDateSource;
+        AbstractExifDateSource videoSource = videoDateSource;
+        try {
+            long millis = reader.read(imageFile, source, videoSource, xmpDateSource);
+            FileType fileType = reader.getLastFileType();
+            fileTypeCounts.incrementAndGet(fileType.ordinal());
+            if (HeaderDateReader.select(fileType, source, videoSource).supports(fileType)) {
+                return millis;
+            }
+        } catch (MalformedMetadataException e) {
+            fileTypeCounts.incrementAndGet(reader.getLastFileType().ordinal());
+            exifFallbackCount.incrementAndGet();
+            LogUtils.d(TAG, reader.getLastFileType() + "结构异常，改用ExifInterface: "
+                    + imageFile.getAbsolutePath() + " " + e.getMessage());
+        }
+
+        FileType fileType = reader.getLastFileType();
+        AbstractExifDateSource fallback = fallbackExifSource;
+        if (!fallback.supports(fileType)) {
+            // ExifInterface 不支持这些格式，打开只会失败
+            return DateTimeUtils.INVALID;
+        }
+        return fallback.readDateTime(imageFile, null, fileType);
+    }
+
+    // 按名称创建EXIF读取后端，未指定或名称无效时使用头部探测
+    private static AbstractExifDateSource createExifDateSource(String name) {
+        if (PlatformExifDateSource.NAME.equals(name)) {
+            return new PlatformExifDateSource();
+        } else if (AndroidxExifDateSource.NAME.equals(name)) {
+            return new AndroidxExifDateSource();
         }
-        if (dateString == null || dateString.isEmpty()) {
-            dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME_DIGITIZED);
+        if (name != null && !HeaderProbeDateSource.NAME.equals(name)) {
+            LogUtils.w(TAG, "未知的EXIF读取后端: " + name + "，使用头部探测");
         }
-        return dateString != null && !dateString.isEmpty() ? fileNameParser.parseExifDateTime(dateString) : null;
+        return new HeaderProbeDateSource();
+    }
+
+    private String getFileTypeSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (FileType fileType : FileType.values()) {
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(fileType).append(' ').append(fileTypeCounts.get(fileType.ordinal()));
+        }
+        return summary.toString();
     }
 
     // parseExifDateTime方法已移至FileNameDateTimeParser类
@@ -768,6 +1004,10 @@ public class ScanService extends Service {
         intent.putExtra(EXTRA_TOTAL_FILES, totalCount.get());
         intent.putExtra(EXTRA_SCANNED_COUNT, scanned);
         intent.putExtra(EXTRA_FIXED_COUNT, fixed);
+        ConcurrencyController controller = concurrencyController;
+        if (controller != null) {
+            intent.putExtra(EXTRA_CONCURRENCY, controller.getLimit());
+        }
         // 设置包名以避免UnsafeImplicitIntentLaunch错误
         intent.setPackage(getPackageName());
         sendBroadcast(intent);
@@ -778,25 +1018,38 @@ public class ScanService extends Service {
      * 延迟更新通知，避免频繁更新导致UI卡顿
      */
     private void updateNotificationDelayed(final int scanned, final int fixed) {
-        // 检查是否有足够的变化来更新通知，避免微小变化导致的频繁更新
-        if (Math.abs(scanned - lastScannedCount) < 10 && Math.abs(fixed - lastFixedCount) < 5) {
-            return;
-        }
+        long delay;
+        // 遍历线程和多个处理线程同时更新进度，检查和标记在锁内完成，同一时间只有一个线程更新通知
+        synchronized (notificationLock) {
+            // 检查是否有足够的变化来更新通知，避免微小变化导致的频繁更新
+            if (Math.abs(scanned - lastScannedCount) < 10 && Math.abs(fixed - lastFixedCount) < 5) {
+                return;
+            }
 
-        // 检查是否已经有待处理的更新
-        if (notificationUpdatePending) {
-            return;
+            // 检查是否已经有待处理的更新
+            if (notificationUpdatePending) {
+                return;
+            }
+
+            // 检查是否满足最小更新间隔
+            long currentTime = System.currentTimeMillis();
+            delay = MIN_NOTIFICATION_INTERVAL_MS - (currentTime - lastNotificationUpdateTime);
+            if (delay <= 0) {
+                // 立即更新，先记录下来，其它线程不再重复更新
+                markNotificationUpdated(scanned, fixed);
+            }
+            notificationUpdatePending = delay > 0;
         }
 
-        // 检查是否满足最小更新间隔
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastNotificationUpdateTime < MIN_NOTIFICATION_INTERVAL_MS) {
+        if (delay > 0) {
             // 如果不满足间隔，安排延迟更新
-            notificationUpdatePending = true;
             mainHandler.postDelayed(() -> {
                 performNotificationUpdate(scanned, fixed);
-                notificationUpdatePending = false;
-            }, MIN_NOTIFICATION_INTERVAL_MS - (currentTime - lastNotificationUpdateTime));
+                synchronized (notificationLock) {
+                    markNotificationUpdated(scanned, fixed);
+                    notificationUpdatePending = false;
+                }
+            }, delay);
             return;
         }
 
@@ -804,6 +1057,13 @@ public class ScanService extends Service {
         performNotificationUpdate(scanned, fixed);
     }
 
+    // 更新最后更新时间和计数，调用方持有 notificationLock
+    private void markNotificationUpdated(int scanned, int fixed) {
+        lastNotificationUpdateTime = System.currentTimeMillis();
+        lastScannedCount = scanned;
+        lastFixedCount = fixed;
+    }
+
     /**
      * 执行实际的通知更新
      */
@@ -811,11 +1071,6 @@ public class ScanService extends Service {
         try {
             String content = getString(R.string.notification_scan_progress, scanned, fixed);
             showForegroundNotification(content, scanned, totalCount.get());
-
-            // 更新最后更新时间和计数
-            lastNotificationUpdateTime = System.currentTimeMillis();
-            lastScannedCount = scanned;
-            lastFixedCount = fixed;
         } catch (Exception e) {
             LogUtils.e(TAG, "更新通知失败", e);
         }
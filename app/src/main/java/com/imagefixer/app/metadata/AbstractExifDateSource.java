@@ -0,0 +1,86 @@
+package com.imagefixer.app.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录文件数、读取字节数和耗时的后端基类
+ */
+public abstract class AbstractExifDateSource implements ExifDateSource {
+    private final String name;
+    private final AtomicLong fileCount = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    protected AbstractExifDateSource(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public final long readDateTime(File file, MetadataInput input, FileType fileType) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return read(file, input, fileType);
+        } finally {
+            nanos.addAndGet(System.nanoTime() - start);
+            fileCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 由子类实现的读取逻辑，耗时和文件数由基类统计
+     */
+    protected abstract long read(File file, MetadataInput input, FileType fileType) throws IOException;
+
+    /**
+     * 子类读取文件后累加字节数；不调用时 {@link #getBytesRead()} 返回 -1
+     */
+    protected void addBytesRead(long count) {
+        bytesRead.addAndGet(count);
+    }
+
+    /**
+     * @return 是否统计读取的字节数
+     */
+    protected boolean isBytesReadTracked() {
+        return true;
+    }
+
+    @Override
+    public long getFileCount() {
+        return fileCount.get();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return isBytesReadTracked() ? bytesRead.get() : -1;
+    }
+
+    @Override
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    /**
+     * @return 统计摘要，用于扫描结束时的日志
+     */
+    public String getSummary() {
+        long files = fileCount.get();
+        StringBuilder summary = new StringBuilder("EXIF读取[").append(name).append("]: ")
+                .append(files).append(" 个文件，耗时 ").append(TimeUnit.NANOSECONDS.toMillis(nanos.get())).append(" ms");
+        if (files > 0) {
+            summary.append("，平均 ").append(TimeUnit.NANOSECONDS.toMicros(nanos.get() / files)).append(" µs");
+            if (isBytesReadTracked()) {
+                summary.append("、").append(bytesRead.get() / files).append(" 字节/文件");
+            }
+        }
+        return summary.toString();
+    }
+}
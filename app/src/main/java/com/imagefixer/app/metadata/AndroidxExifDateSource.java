@@ -0,0 +1,81 @@
+package com.imagefixer.app.metadata;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * androidx ExifInterface 后端，从固定大小的 BufferedInputStream 顺序读取
+ * <p>
+ * 传入的不是 FileInputStream，androidx 实现只能顺序读取流，遇到图像数据前通常即可停止；
+ * 实际从文件读取的字节数由外层计数。支持的格式与系统版本无关。
+ * </p>
+ */
+public final class AndroidxExifDateSource extends AbstractExifDateSource {
+    public static final String NAME = "androidx";
+    // 流缓冲区大小
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    public AndroidxExifDateSource() {
+        super(NAME);
+    }
+
+    @Override
+    public boolean supports(FileType fileType) {
+        return fileType != FileType.UNKNOWN && fileType != FileType.MP4;
+    }
+
+    @Override
+    protected long read(File file, MetadataInput input, FileType fileType) throws IOException {
+        CountingInputStream in = new CountingInputStream(new FileInputStream(file));
+        try {
+            ExifInterface exifInterface = new ExifInterface(new BufferedInputStream(in, BUFFER_SIZE));
+            String dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME);
+            if (dateString == null || dateString.isEmpty()) {
+                dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
+            }
+            if (dateString == null || dateString.isEmpty()) {
+                dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME_DIGITIZED);
+            }
+            return dateString != null && !dateString.isEmpty() ? DateTimeUtils.parseExifDateTime(dateString)
+                    : DateTimeUtils.INVALID;
+        } finally {
+            addBytesRead(in.count);
+            in.close();
+        }
+    }
+
+    // 统计从文件读取的字节数（跳过的字节不计）
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.imagefixer.app.metadata;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 元数据读取用的直接内存缓冲区池
+ * <p>
+ * 所有线程共用一个有界的池，池中是 {@value #BUFFER_SIZE} 字节的直接缓冲区，头部探测用 FileChannel 按位置直接读入，
+ * 处理每个文件时不再分配缓冲区，也没有从内核缓冲区到Java数组的额外复制。
+ * 缓冲区用完放回共用的池中，不属于某个线程，处理线程空闲超时退出、每次扫描换用新的遍历线程都不会丢失缓冲区。
+ * </p>
+ * <p>
+ * 直接缓冲区总量不超过最大堆内存的 1/{@value #MAX_MEMORY_DIVISOR}，池的容量与之相同，放回时总有空位；
+ * 同时使用的缓冲区超出上限后改用堆缓冲区，用完丢弃。放入和取出都不分配对象。
+ * </p>
+ */
+public final class DirectBufferPool {
+    /** 缓冲区大小，与读取窗口一致 */
+    public static final int BUFFER_SIZE = MetadataInput.DEFAULT_WINDOW_SIZE;
+    private static final int MAX_MEMORY_DIVISOR = 256;
+    // 最多分配的直接缓冲区数，至少一个
+    private static final int MAX_DIRECT_BUFFERS = (int) Math.max(1,
+            Runtime.getRuntime().maxMemory() / MAX_MEMORY_DIVISOR / BUFFER_SIZE);
+
+    private static final ArrayBlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(MAX_DIRECT_BUFFERS);
+    // 已分配的直接缓冲区数（只增不减，缓冲区总是回到池中）和缓冲区分配次数（含超出上限后的堆缓冲区）
+    private static final AtomicLong directCount = new AtomicLong();
+    private static final AtomicLong allocationCount = new AtomicLong();
+
+    private DirectBufferPool() {
+    }
+
+    /**
+     * 取出一个缓冲区，池为空时分配新的
+     */
+    public static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        allocationCount.incrementAndGet();
+        if (directCount.incrementAndGet() <= MAX_DIRECT_BUFFERS) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        directCount.decrementAndGet();
+        return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * 放回共用的池中；堆缓冲区直接丢弃
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffer.clear();
+            POOL.offer(buffer);
+        }
+    }
+
+    /**
+     * @return 累计分配的缓冲区数，稳定运行时不应随处理的文件数和线程的创建、退出增长
+     */
+    public static long getAllocationCount() {
+        return allocationCount.get();
+    }
+
+    /**
+     * @return 统计摘要，用于扫描结束时的日志
+     */
+    public static String getSummary() {
+        return "缓冲区池: 累计分配 " + allocationCount.get() + " 个，直接内存 " + directCount.get() * BUFFER_SIZE / 1024
+                + " KB / 上限 " + (long) MAX_DIRECT_BUFFERS * BUFFER_SIZE / 1024 + " KB，池中空闲 " + POOL.size() + " 个";
+    }
+}
@@ -0,0 +1,29 @@
+package com.imagefixer.app.metadata;
+
+import java.io.IOException;
+
+/**
+ * 图片容器的EXIF日期头部探测
+ * <p>
+ * 每种容器格式一个实现，只跟随容器自身的段/块/盒结构找到Exif数据，再交给 TIFF 解析读取日期标签，
+ * 不读取图像数据；视频没有Exif，由 {@link Mp4DateProbe} 读取容器自身记录的创建时间。
+ * 实现不保存状态，可在多个线程之间共享；窗口缓冲区和读取统计由 {@link HeaderDateReader} 管理。
+ * </p>
+ */
+public interface ExifDateProbe {
+
+    /**
+     * @return 格式名称，用于日志和统计
+     */
+    String getFormatName();
+
+    /**
+     * 读取第一个非空的日期时间，优先级为 DateTime、DateTimeOriginal、DateTimeDigitized
+     *
+     * @param input 文件读取器
+     * @return 毫秒时间戳；文件中没有Exif或日期标签、日期无法解析时返回 DateTimeUtils.INVALID
+     * @throws MalformedMetadataException 容器结构异常，调用方应改用完整的解析器
+     * @throws IOException                读取失败
+     */
+    long readDateTime(MetadataInput input) throws IOException;
+}
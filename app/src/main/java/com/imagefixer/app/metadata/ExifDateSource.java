@@ -0,0 +1,52 @@
+package com.imagefixer.app.metadata;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * EXIF日期时间的读取后端
+ * <p>
+ * 同一个文件可以由不同的后端读取：头部探测、系统的 android.media.ExifInterface、
+ * 基于流的 androidx ExifInterface。各后端记录处理的文件数、读取的字节数和耗时，
+ * 用于在不同设备上按格式比较，选择最省的正确实现。实现必须是线程安全的。
+ * </p>
+ */
+public interface ExifDateSource {
+
+    /**
+     * @return 后端名称，用于运行时选择和日志
+     */
+    String getName();
+
+    /**
+     * @return 该后端能否读取此格式
+     */
+    boolean supports(FileType fileType);
+
+    /**
+     * 读取第一个非空的日期时间，优先级为 DateTime、DateTimeOriginal、DateTimeDigitized
+     *
+     * @param file     图片文件
+     * @param input    已打开的头部读取器（格式识别时使用的同一个窗口），不需要时可忽略
+     * @param fileType 按魔数识别出的格式
+     * @return 毫秒时间戳；没有日期标签时返回 DateTimeUtils.INVALID
+     * @throws MalformedMetadataException 文件结构异常
+     * @throws IOException                读取失败
+     */
+    long readDateTime(File file, MetadataInput input, FileType fileType) throws IOException;
+
+    /**
+     * @return 处理过的文件数
+     */
+    long getFileCount();
+
+    /**
+     * @return 读取的字节数；无法统计时返回 -1
+     */
+    long getBytesRead();
+
+    /**
+     * @return 累计耗时（纳秒）
+     */
+    long getNanos();
+}
@@ -0,0 +1,114 @@
+package com.imagefixer.app.metadata;
+
+/**
+ * 按文件开头的魔数识别出的实际容器格式
+ * <p>
+ * 扩展名不可信：改名的视频、下载中断的文件、零字节的占位文件都可能叫 .jpg。
+ * 扫描时先读取文件开头 {@value #SNIFF_LENGTH} 字节识别格式，再交给对应的头部探测；无法识别的文件直接跳过。
+ * </p>
+ */
+public enum FileType {
+    JPEG(new JpegExifDateProbe()),
+    PNG(new PngExifDateProbe()),
+    WEBP(new WebpExifDateProbe()),
+    HEIF(new HeifExifDateProbe()),
+    /** TIFF结构的图片和RAW（DNG、CR2、NEF、ARW等） */
+    TIFF(new TiffExifDateProbe()),
+    /** ISOBMFF/QuickTime视频（MP4、MOV、3GP） */
+    MP4(new Mp4DateProbe()),
+    UNKNOWN(null);
+
+    /** 识别格式需要读取的字节数 */
+    public static final int SNIFF_LENGTH = 16;
+
+    private static final byte[] JPEG_MAGIC = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+    private static final byte[] PNG_MAGIC = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] TIFF_LITTLE_ENDIAN = { 'I', 'I', 42, 0 };
+    private static final byte[] TIFF_BIG_ENDIAN = { 'M', 'M', 0, 42 };
+    // 使用TIFF结构但改写了标识的RAW：Olympus ORF、Panasonic RW2
+    private static final byte[] ORF_MAGIC = { 'I', 'I', 'R', 'O' };
+    private static final byte[] ORF_MAGIC_2 = { 'I', 'I', 'R', 'S' };
+    private static final byte[] RW2_MAGIC = { 'I', 'I', 'U', 0 };
+    // ftyp 中表示HEIF静态图片的主品牌（含基于HEIF的AVIF）
+    private static final String[] HEIF_BRANDS = {
+            "heic", "heix", "heim", "heis", "hevc", "hevx", "hevm", "hevs", "mif1", "msf1", "avif", "avis"
+    };
+    // 没有 ftyp 盒的旧式QuickTime文件，第一个盒的常见类型
+    private static final String[] QUICKTIME_BOXES = { "moov", "mdat", "wide", "free", "skip", "pnot" };
+
+    private final ExifDateProbe probe;
+
+    FileType(ExifDateProbe probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * @return 该格式的头部探测器；没有探测器的格式返回 null
+     */
+    public ExifDateProbe getProbe() {
+        return probe;
+    }
+
+    /**
+     * 根据文件开头的字节识别格式
+     *
+     * @param header 文件开头的字节
+     * @param length 有效字节数（文件不足 {@value #SNIFF_LENGTH} 字节时小于该值）
+     * @return 识别出的格式；无法识别时返回 {@link #UNKNOWN}
+     */
+    public static FileType sniff(byte[] header, int length) {
+        if (startsWith(header, length, 0, JPEG_MAGIC)) {
+            return JPEG;
+        }
+        if (startsWith(header, length, 0, PNG_MAGIC)) {
+            return PNG;
+        }
+        if (matches(header, length, 0, "RIFF") && matches(header, length, 8, "WEBP")) {
+            return WEBP;
+        }
+        if (matches(header, length, 4, "ftyp")) {
+            for (String brand : HEIF_BRANDS) {
+                if (matches(header, length, 8, brand)) {
+                    return HEIF;
+                }
+            }
+            return MP4;
+        }
+        if (startsWith(header, length, 0, TIFF_LITTLE_ENDIAN) || startsWith(header, length, 0, TIFF_BIG_ENDIAN)
+                || startsWith(header, length, 0, ORF_MAGIC) || startsWith(header, length, 0, ORF_MAGIC_2)
+                || startsWith(header, length, 0, RW2_MAGIC)) {
+            return TIFF;
+        }
+        for (String box : QUICKTIME_BOXES) {
+            if (matches(header, length, 4, box)) {
+                return MP4;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, byte[] magic) {
+        if (offset + magic.length > length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[offset + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 比较ASCII四字符码
+    private static boolean matches(byte[] header, int length, int offset, String fourcc) {
+        if (offset + fourcc.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < fourcc.length(); i++) {
+            if (header[offset + i] != fourcc.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,183 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 识别图片格式并读取EXIF日期时间
+ * <p>
+ * 按文件开头的魔数识别格式（{@link FileType}），再交给选定的 {@link ExifDateSource} 读取。
+ * 头部探测后端与格式识别共用同一个窗口，文件头只读取一次。窗口取自 {@link DirectBufferPool}，
+ * {@link MetadataInput} 在文件之间复用，处理文件时除打开文件外不分配内存。记录读取的字节数。
+ * 非线程安全，应在每个工作线程中各建一个。
+ * </p>
+ */
+public final class HeaderDateReader {
+    private final MetadataInput input = new MetadataInput();
+    private final byte[] header = new byte[FileType.SNIFF_LENGTH];
+    // 上一个文件识别出的格式
+    private FileType lastFileType = FileType.UNKNOWN;
+    // 上一个文件在同一次读取中从XMP读到的日期时间
+    private long lastXmpDateTime = DateTimeUtils.INVALID;
+    // 上一个文件和累计读取的字节数
+    private long lastBytesRead;
+    private long totalBytesRead;
+    private long probeCount;
+
+    /**
+     * 识别文件格式并用指定后端读取EXIF日期时间，识别结果通过 {@link #getLastFileType()} 获取
+     *
+     * @param file   图片文件
+     * @param source 读取后端
+     * @return 毫秒时间戳；没有Exif或日期标签、无法识别格式或后端不支持该格式时返回 {@link DateTimeUtils#INVALID}
+     * @throws MalformedMetadataException 文件结构异常
+     * @throws IOException                读取失败
+     */
+    public long read(File file, ExifDateSource source) throws IOException {
+        return read(file, source, source);
+    }
+
+    /**
+     * 识别文件格式后选择后端读取日期时间：视频（MP4/MOV）由 videoSource 读取，其它格式由 source 读取
+     * <p>
+     * 系统和 androidx 的 ExifInterface 都不能读取视频，选择这些后端时视频仍应交给头部探测，
+     * 视频的创建时间不应取决于选择了哪个EXIF后端。
+     * </p>
+     *
+     * @param file        图片或视频文件
+     * @param source      图片使用的后端
+     * @param videoSource 视频使用的后端
+     * @return 毫秒时间戳；没有日期、无法识别格式或所选后端不支持该格式时返回 {@link DateTimeUtils#INVALID}
+     * @throws MalformedMetadataException 文件结构异常
+     * @throws IOException                读取失败
+     * @see #select
+     */
+    public long read(File file, ExifDateSource source, ExifDateSource videoSource) throws IOException {
+        return read(file, source, videoSource, null);
+    }
+
+    /**
+     * 与 {@link #read(File, ExifDateSource, ExifDateSource)} 相同，EXIF中没有日期（包括后端不支持该格式、
+     * 结构异常）时在同一次打开中用 xmpSource 读取XMP，结果通过 {@link #getLastXmpDateTime()} 获取，
+     * 文件不再重新打开和识别格式
+     *
+     * @param xmpSource 读取XMP的后端，为 null 时不读取
+     * @throws MalformedMetadataException EXIF结构异常（XMP已读取）；XMP结构异常时视为没有XMP日期
+     */
+    public long read(File file, ExifDateSource source, ExifDateSource videoSource, ExifDateSource xmpSource)
+            throws IOException {
+        lastFileType = FileType.UNKNOWN;
+        lastXmpDateTime = DateTimeUtils.INVALID;
+        ByteBuffer window = DirectBufferPool.acquire();
+        try {
+            input.open(file, window);
+            int length = (int) Math.min(header.length, input.length());
+            if (length > 0) {
+                input.read(0, header, 0, length);
+            }
+            lastFileType = FileType.sniff(header, length);
+            if (lastFileType == FileType.UNKNOWN) {
+                return DateTimeUtils.INVALID;
+            }
+            ExifDateSource selected = select(lastFileType, source, videoSource);
+            long millis = DateTimeUtils.INVALID;
+            MalformedMetadataException malformed = null;
+            if (selected.supports(lastFileType)) {
+                try {
+                    millis = selected.readDateTime(file, input, lastFileType);
+                } catch (MalformedMetadataException e) {
+                    malformed = e;
+                }
+            }
+            if (millis == DateTimeUtils.INVALID && xmpSource != null && xmpSource.supports(lastFileType)) {
+                try {
+                    lastXmpDateTime = xmpSource.readDateTime(file, input, lastFileType);
+                } catch (MalformedMetadataException e) {
+                    lastXmpDateTime = DateTimeUtils.INVALID;
+                }
+            }
+            if (malformed != null) {
+                throw malformed;
+            }
+            return millis;
+        } finally {
+            finish(window);
+        }
+    }
+
+    /**
+     * 使用指定的探测器读取文件的EXIF日期时间，不识别格式
+     *
+     * @param file  图片文件
+     * @param probe 文件格式对应的探测器
+     * @return 毫秒时间戳；没有Exif或日期标签时返回 {@link DateTimeUtils#INVALID}
+     * @throws MalformedMetadataException 文件结构异常
+     * @throws IOException                读取失败
+     */
+    public long read(File file, ExifDateProbe probe) throws IOException {
+        ByteBuffer window = DirectBufferPool.acquire();
+        try {
+            input.open(file, window);
+            return probe.readDateTime(input);
+        } finally {
+            finish(window);
+        }
+    }
+
+    /**
+     * @return {@link #read(File, ExifDateSource, ExifDateSource)} 对该格式使用的后端
+     */
+    public static ExifDateSource select(FileType fileType, ExifDateSource source, ExifDateSource videoSource) {
+        return fileType == FileType.MP4 ? videoSource : source;
+    }
+
+    private void finish(ByteBuffer window) throws IOException {
+        lastBytesRead = input.getBytesRead();
+        totalBytesRead += lastBytesRead;
+        probeCount++;
+        try {
+            input.close();
+        } finally {
+            DirectBufferPool.release(window);
+        }
+    }
+
+    /**
+     * @return 上一次 {@link #read(File, ExifDateSource)} 识别出的格式
+     */
+    public FileType getLastFileType() {
+        return lastFileType;
+    }
+
+    /**
+     * @return 上一次 {@link #read(File, ExifDateSource, ExifDateSource, ExifDateSource)} 从XMP读到的日期时间；
+     * EXIF中有日期、没有XMP或不支持该格式时为 {@link DateTimeUtils#INVALID}
+     */
+    public long getLastXmpDateTime() {
+        return lastXmpDateTime;
+    }
+
+    /**
+     * @return 上一个文件从磁盘读取的字节数
+     */
+    public long getLastBytesRead() {
+        return lastBytesRead;
+    }
+
+    /**
+     * @return 累计读取的字节数
+     */
+    public long getTotalBytesRead() {
+        return totalBytesRead;
+    }
+
+    /**
+     * @return 累计探测的文件数
+     */
+    public long getProbeCount() {
+        return probeCount;
+    }
+}
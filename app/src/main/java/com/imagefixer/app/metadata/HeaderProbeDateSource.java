@@ -0,0 +1,33 @@
+package com.imagefixer.app.metadata;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 头部探测后端：按格式使用 {@link ExifDateProbe} 只读取文件头部的日期标签
+ * <p>
+ * 复用格式识别时打开的 {@link MetadataInput}，不再重新打开文件。字节数只统计识别之后的读取。
+ * </p>
+ */
+public final class HeaderProbeDateSource extends AbstractExifDateSource {
+    public static final String NAME = "header";
+
+    public HeaderProbeDateSource() {
+        super(NAME);
+    }
+
+    @Override
+    public boolean supports(FileType fileType) {
+        return fileType.getProbe() != null;
+    }
+
+    @Override
+    protected long read(File file, MetadataInput input, FileType fileType) throws IOException {
+        long before = input.getBytesRead();
+        try {
+            return fileType.getProbe().readDateTime(input);
+        } finally {
+            addBytesRead(input.getBytesRead() - before);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.IOException;
+
+/**
+ * HEIF/HEIC文件的EXIF日期头部探测
+ * <p>
+ * HEIF基于ISOBMFF的盒结构：顶层的 meta 盒中，iinf 列出各个条目及其类型，iloc 给出条目数据在文件中的位置。
+ * 这里在 iinf 中找到类型为 "Exif" 的条目，再从 iloc 取得它的偏移量，直接读取其中的IFD；
+ * 图像数据所在的 mdat 盒只按大小跳过，不会读取。
+ * </p>
+ */
+public final class HeifExifDateProbe implements ExifDateProbe {
+    private static final long BOX_FTYP = 0x66747970L; // "ftyp"
+    private static final long BOX_META = 0x6D657461L; // "meta"
+    private static final long BOX_IINF = 0x69696E66L; // "iinf"
+    private static final long BOX_INFE = 0x696E6665L; // "infe"
+    private static final long BOX_ILOC = 0x696C6F63L; // "iloc"
+    private static final long ITEM_TYPE_EXIF = 0x45786966L; // "Exif"
+    private static final int BOX_HEADER_SIZE = 8;
+    // FullBox 的版本和标志
+    private static final int FULL_BOX_HEADER_SIZE = 4;
+
+    @Override
+    public String getFormatName() {
+        return "HEIF";
+    }
+
+    @Override
+    public long readDateTime(MetadataInput input) throws IOException {
+        long length = input.length();
+        if (length < BOX_HEADER_SIZE || input.u32(4, false) != BOX_FTYP) {
+            throw new MalformedMetadataException("不是HEIF文件");
+        }
+        long position = 0;
+        while (position + BOX_HEADER_SIZE <= length) {
+            long end = boxEnd(input, position, length);
+            if (input.u32(position + 4, false) == BOX_META) {
+                return findInMeta(input, contentStart(input, position) + FULL_BOX_HEADER_SIZE, end);
+            }
+            position = end;
+        }
+        return DateTimeUtils.INVALID;
+    }
+
+    // 在 meta 盒的子盒中查找Exif条目
+    private static long findInMeta(MetadataInput input, long position, long end) throws IOException {
+        long exifItemId = -1;
+        long ilocPosition = -1;
+        while (position + BOX_HEADER_SIZE <= end) {
+            long boxEnd = boxEnd(input, position, end);
+            long type = input.u32(position + 4, false);
+            if (type == BOX_IINF) {
+                exifItemId = findExifItem(input, contentStart(input, position), boxEnd);
+            } else if (type == BOX_ILOC) {
+                ilocPosition = position;
+            }
+            position = boxEnd;
+        }
+        if (exifItemId < 0) {
+            return DateTimeUtils.INVALID;
+        }
+        if (ilocPosition < 0) {
+            throw new MalformedMetadataException("缺少iloc盒");
+        }
+        return readExifItem(input, contentStart(input, ilocPosition), boxEnd(input, ilocPosition, end), exifItemId);
+    }
+
+    // 返回 iinf 中类型为 Exif 的条目编号，没有时返回 -1
+    private static long findExifItem(MetadataInput input, long position, long end) throws IOException {
+        int version = input.u8(position);
+        position += FULL_BOX_HEADER_SIZE + (version == 0 ? 2 : 4);
+        while (position + BOX_HEADER_SIZE <= end) {
+            long boxEnd = boxEnd(input, position, end);
+            if (input.u32(position + 4, false) == BOX_INFE) {
+                long content = contentStart(input, position);
+                int infeVersion = input.u8(content);
+                // 版本2以下的 infe 没有条目类型字段
+                if (infeVersion >= 2) {
+                    long itemId;
+                    long typePosition;
+                    if (infeVersion == 2) {
+                        itemId = input.u16(content + 4, false);
+                        typePosition = content + 8;
+                    } else {
+                        itemId = input.u32(content + 4, false);
+                        typePosition = content + 10;
+                    }
+                    if (typePosition + 4 <= boxEnd && input.u32(typePosition, false) == ITEM_TYPE_EXIF) {
+                        return itemId;
+                    }
+                }
+            }
+            position = boxEnd;
+        }
+        return -1;
+    }
+
+    // 在 iloc 中找到条目的位置，读取其中的日期
+    private static long readExifItem(MetadataInput input, long position, long end, long itemId)
+            throws IOException {
+        int version = input.u8(position);
+        int sizes = input.u8(position + 4);
+        int offsetSize = sizes >> 4;
+        int lengthSize = sizes & 0x0F;
+        sizes = input.u8(position + 5);
+        int baseOffsetSize = sizes >> 4;
+        boolean hasIndex = version == 1 || version == 2;
+        int indexSize = hasIndex ? sizes & 0x0F : 0;
+        position += 6;
+        long itemCount;
+        if (version < 2) {
+            itemCount = input.u16(position, false);
+            position += 2;
+        } else {
+            itemCount = input.u32(position, false);
+            position += 4;
+        }
+
+        for (long i = 0; i < itemCount; i++) {
+            long id;
+            if (version < 2) {
+                id = input.u16(position, false);
+                position += 2;
+            } else {
+                id = input.u32(position, false);
+                position += 4;
+            }
+            int constructionMethod = 0;
+            if (hasIndex) {
+                constructionMethod = input.u16(position, false) & 0x0F;
+                position += 2;
+            }
+            // 跳过 data_reference_index
+            position += 2;
+            long baseOffset = readSize(input, position, baseOffsetSize);
+            position += baseOffsetSize;
+            int extentCount = input.u16(position, false);
+            position += 2;
+            if (id == itemId) {
+                // 只支持数据直接位于文件中、且未分段的Exif条目
+                if (constructionMethod != 0 || extentCount != 1) {
+                    throw new MalformedMetadataException("不支持的Exif条目布局: " + constructionMethod + "/" + extentCount);
+                }
+                position += indexSize;
+                long offset = baseOffset + readSize(input, position, offsetSize);
+                long length = readSize(input, position + offsetSize, lengthSize);
+                long itemEnd = length == 0 ? input.length() : offset + length;
+                return readExifPayload(input, offset, itemEnd);
+            }
+            position += (long) extentCount * (indexSize + offsetSize + lengthSize);
+            if (position > end) {
+                throw new MalformedMetadataException("iloc条目越界");
+            }
+        }
+        throw new MalformedMetadataException("iloc中缺少Exif条目: " + itemId);
+    }
+
+    // Exif条目以4字节的TIFF头偏移量开头，之后通常是 "Exif\0\0" 标识和TIFF结构
+    private static long readExifPayload(MetadataInput input, long offset, long end) throws IOException {
+        if (offset < 0 || end > input.length() || offset + 4 > end) {
+            throw new MalformedMetadataException("Exif条目越界: " + offset);
+        }
+        long tiff = offset + 4 + input.u32(offset, false);
+        return TiffDateParser.readDateTime(input, tiff, end);
+    }
+
+    private static long readSize(MetadataInput input, long position, int size) throws IOException {
+        switch (size) {
+            case 0:
+                return 0;
+            case 4:
+                return input.u32(position, false);
+            case 8:
+                return input.u64(position, false);
+            default:
+                throw new MalformedMetadataException("iloc字段长度无效: " + size);
+        }
+    }
+
+    // 盒的结束位置；大小为1时使用64位大小，为0时延伸到上一级盒的末尾
+    private static long boxEnd(MetadataInput input, long position, long limit) throws IOException {
+        long size = input.u32(position, false);
+        if (size == 0) {
+            return limit;
+        }
+        int headerSize = BOX_HEADER_SIZE;
+        if (size == 1) {
+            size = input.u64(position + BOX_HEADER_SIZE, false);
+            headerSize += 8;
+        }
+        if (size < headerSize || size > limit - position) {
+            throw new MalformedMetadataException("盒大小异常: " + size);
+        }
+        return position + size;
+    }
+
+    private static long contentStart(MetadataInput input, long position) throws IOException {
+        return position + (input.u32(position, false) == 1 ? BOX_HEADER_SIZE + 8 : BOX_HEADER_SIZE);
+    }
+}
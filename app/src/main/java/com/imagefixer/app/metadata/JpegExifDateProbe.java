@@ -0,0 +1,84 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.IOException;
+
+/**
+ * JPEG文件的EXIF日期头部探测
+ * <p>
+ * ExifInterface 会解析所有IFD和缩略图，而修正文件时间只需要三个日期标签。这里按段长度跳过
+ * APP0、APP2（ICC）等段，找到 APP1 中的 Exif 后只读取 IFD0 和 EXIF 子IFD的日期条目，
+ * 遇到 SOS（图像数据开始）即停止。通常只需读取一两个窗口（各 {@value MetadataInput#DEFAULT_WINDOW_SIZE} 字节）。
+ * </p>
+ */
+public final class JpegExifDateProbe implements ExifDateProbe {
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int SOI = 0xFFD8;
+    private static final int SOS = 0xDA;
+    private static final int EOI = 0xD9;
+    private static final int APP1 = 0xE1;
+    private static final int TEM = 0x01;
+    private static final int RST0 = 0xD0;
+    private static final int RST7 = 0xD7;
+
+    @Override
+    public String getFormatName() {
+        return "JPEG";
+    }
+
+    @Override
+    public long readDateTime(MetadataInput input) throws IOException {
+        long segment = findApp1(input, TiffDateParser.EXIF_HEADER);
+        if (segment < 0) {
+            return DateTimeUtils.INVALID;
+        }
+        long end = segment + input.u16(segment, false);
+        return TiffDateParser.readDateTime(input, segment + 2 + TiffDateParser.EXIF_HEADER.length, end);
+    }
+
+    /**
+     * 按段长度逐段跳过，查找以指定标识开头的第一个 APP1 段，遇到 SOS 即停止
+     *
+     * @param input      读取器
+     * @param identifier 段数据开头的标识，如 "Exif\0\0"
+     * @return 段长度字段的位置（段数据结束于该位置加上段长度）；没有时返回 -1
+     * @throws MalformedMetadataException 段结构异常
+     */
+    static long findApp1(MetadataInput input, byte[] identifier) throws IOException {
+        if (input.length() < 4 || input.u16(0, false) != SOI) {
+            throw new MalformedMetadataException("不是JPEG文件");
+        }
+        long position = 2;
+        while (true) {
+            if (input.u8(position) != MARKER_PREFIX) {
+                throw new MalformedMetadataException("段标记无效，位置 " + position);
+            }
+            int marker = input.u8(position + 1);
+            // 标记前可以有任意个填充字节 0xFF
+            while (marker == MARKER_PREFIX) {
+                position++;
+                marker = input.u8(position + 1);
+            }
+            position += 2;
+            if (marker == SOS || marker == EOI) {
+                // 图像数据之前没有该段
+                return -1;
+            }
+            if (marker == TEM || (marker >= RST0 && marker <= RST7)) {
+                // 没有长度字段的标记
+                continue;
+            }
+
+            int length = input.u16(position, false);
+            long end = position + length;
+            if (length < 2 || end > input.length()) {
+                throw new MalformedMetadataException("段长度异常: 0x" + Integer.toHexString(marker) + " " + length);
+            }
+            if (marker == APP1 && input.startsWith(position + 2, identifier)) {
+                return position;
+            }
+            position = end;
+        }
+    }
+}
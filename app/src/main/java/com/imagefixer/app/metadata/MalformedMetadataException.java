@@ -0,0 +1,17 @@
+package com.imagefixer.app.metadata;
+
+import java.io.IOException;
+
+/**
+ * 文件头部结构异常（魔数不符、段长度或偏移量越界等）
+ * <p>
+ * 头部探测遇到该异常时，调用方应改用完整的解析器（如 ExifInterface）重新读取。
+ * </p>
+ */
+public class MalformedMetadataException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedMetadataException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,231 @@
+package com.imagefixer.app.metadata;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 元数据随机读取器
+ * <p>
+ * 在文件上维护一个小窗口缓冲区，按位置读取整数和字节；请求的范围不在窗口内时，从该位置起重新读满窗口。
+ * 头部探测只跟随段长度和偏移量读取需要的部分，并记录实际从文件读取的字节数。
+ * 窗口通过 FileChannel 按位置读取（不需要先 seek），通常是 {@link DirectBufferPool} 中的直接缓冲区。
+ * 读取器本身可以依次打开多个文件复用，处理文件时除打开文件外不分配内存。非线程安全。
+ * </p>
+ */
+public final class MetadataInput implements Closeable {
+    /** 默认窗口大小，通常一次即可覆盖 Exif 的 IFD0 和日期字符串 */
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+    /** {@link #readAscii} 最多读取的字节数 */
+    public static final int MAX_TEXT_LENGTH = 64;
+
+    private final AsciiText text = new AsciiText();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private ByteBuffer window;
+    private long length;
+    // 窗口在文件中的起始位置和有效长度
+    private long windowStart;
+    private int windowLength;
+    // 从文件读取的字节数和次数
+    private long bytesRead;
+    private int readCount;
+
+    /**
+     * 打开文件，之前打开的文件会先关闭
+     *
+     * @param file   要读取的文件
+     * @param window 窗口缓冲区，关闭前由读取器使用
+     * @throws IOException 文件无法打开
+     */
+    public void open(File file, ByteBuffer window) throws IOException {
+        close();
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.window = window;
+        this.length = channel.size();
+        windowStart = 0;
+        windowLength = 0;
+        bytesRead = 0;
+        readCount = 0;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int u8(long position) throws IOException {
+        fill(position, 1);
+        return window.get((int) (position - windowStart)) & 0xFF;
+    }
+
+    public int u16(long position, boolean littleEndian) throws IOException {
+        fill(position, 2);
+        int i = (int) (position - windowStart);
+        int a = window.get(i) & 0xFF;
+        int b = window.get(i + 1) & 0xFF;
+        return littleEndian ? a | b << 8 : a << 8 | b;
+    }
+
+    public long u32(long position, boolean littleEndian) throws IOException {
+        fill(position, 4);
+        int i = (int) (position - windowStart);
+        long a = window.get(i) & 0xFF;
+        long b = window.get(i + 1) & 0xFF;
+        long c = window.get(i + 2) & 0xFF;
+        long d = window.get(i + 3) & 0xFF;
+        return littleEndian ? a | b << 8 | c << 16 | d << 24 : a << 24 | b << 16 | c << 8 | d;
+    }
+
+    public long u64(long position, boolean littleEndian) throws IOException {
+        long high = u32(littleEndian ? position + 4 : position, littleEndian);
+        long low = u32(littleEndian ? position : position + 4, littleEndian);
+        return high << 32 | low;
+    }
+
+    /**
+     * 读取 [position, position + count) 的字节，count 不能超过窗口大小
+     *
+     * @throws MalformedMetadataException 范围超出文件末尾
+     */
+    public void read(long position, byte[] destination, int offset, int count) throws IOException {
+        if (count > window.capacity()) {
+            throw new IllegalArgumentException("读取长度超过窗口大小: " + count);
+        }
+        fill(position, count);
+        int i = (int) (position - windowStart);
+        for (int k = 0; k < count; k++) {
+            destination[offset + k] = window.get(i + k);
+        }
+    }
+
+    /**
+     * 读取ASCII字符串，截止到第一个NUL，最多 {@value #MAX_TEXT_LENGTH} 字节
+     * <p>
+     * 返回的字符序列由读取器复用，只在下一次调用本方法之前有效；需要保存时调用 toString()。
+     * </p>
+     *
+     * @throws MalformedMetadataException 范围超出文件末尾
+     */
+    public CharSequence readAscii(long position, int count) throws IOException {
+        count = Math.min(count, MAX_TEXT_LENGTH);
+        fill(position, count);
+        int i = (int) (position - windowStart);
+        int textLength = 0;
+        while (textLength < count) {
+            byte b = window.get(i + textLength);
+            if (b == 0) {
+                break;
+            }
+            text.bytes[textLength++] = b;
+        }
+        text.length = textLength;
+        return text;
+    }
+
+    /**
+     * 判断 position 处的字节是否与 expected 相同；超出文件末尾时返回 false
+     */
+    public boolean startsWith(long position, byte[] expected) throws IOException {
+        if (position < 0 || position + expected.length > length) {
+            return false;
+        }
+        fill(position, expected.length);
+        int i = (int) (position - windowStart);
+        for (int k = 0; k < expected.length; k++) {
+            if (window.get(i + k) != expected[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 从文件实际读取的字节数（窗口命中不计）
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return 从文件读取的次数
+     */
+    public int getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * 关闭当前文件，窗口缓冲区交还调用方；可以再次 {@link #open}
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel = null;
+        if (file != null) {
+            RandomAccessFile opened = file;
+            file = null;
+            opened.close();
+        }
+    }
+
+    // 确保 [position, position + count) 在窗口内，否则从 position 起重新读满窗口；
+    // 文件开头的读取总是从0开始，各格式探测先读标识字段再回读文件头时不必重复读取
+    private void fill(long position, int count) throws IOException {
+        if (position >= windowStart && position + count <= windowStart + windowLength) {
+            return;
+        }
+        checkRange(position, count);
+        long start = position + count <= window.capacity() ? 0 : position;
+        int size = (int) Math.min(window.capacity(), length - start);
+        window.clear();
+        window.limit(size);
+        while (window.hasRemaining()) {
+            if (channel.read(window, start + window.position()) < 0) {
+                throw new MalformedMetadataException("文件在读取过程中被截断: " + start);
+            }
+        }
+        windowStart = start;
+        windowLength = size;
+        bytesRead += size;
+        readCount++;
+    }
+
+    private void checkRange(long position, int count) throws MalformedMetadataException {
+        if (position < 0 || position + count > length) {
+            throw new MalformedMetadataException("读取超出文件末尾: " + position + " + " + count + " > " + length);
+        }
+    }
+
+    // 可复用的ASCII字符序列
+    private static final class AsciiText implements CharSequence {
+        final byte[] bytes = new byte[MAX_TEXT_LENGTH];
+        int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.IOException;
+
+/**
+ * MP4/MOV/3GP视频的创建时间头部探测
+ * <p>
+ * 视频没有Exif，创建时间记录在 moov 盒中：mvhd 的 creation_time（自1904-01-01起的UTC秒数），
+ * 以及部分相机写入 udta 的 ©day（ISO 8601文本，带时区）。这里按盒大小跳过顶层的 mdat，
+ * 直接定位 moov；moov 位于多GB文件末尾时也只读取它所在的窗口，不读取任何媒体数据。
+ * moov 中的 trak 同样只读盒头。有完整的 ©day 时优先使用，剪辑软件导出时常会重写 mvhd。
+ * </p>
+ */
+public final class Mp4DateProbe implements ExifDateProbe {
+    private static final long BOX_MOOV = 0x6D6F6F76L; // "moov"
+    private static final long BOX_MVHD = 0x6D766864L; // "mvhd"
+    private static final long BOX_UDTA = 0x75647461L; // "udta"
+    private static final long BOX_META = 0x6D657461L; // "meta"
+    private static final long BOX_HDLR = 0x68646C72L; // "hdlr"
+    private static final long BOX_ILST = 0x696C7374L; // "ilst"
+    private static final long BOX_DATA = 0x64617461L; // "data"
+    private static final long BOX_DAY = 0xA9646179L; // "©day"
+    private static final int BOX_HEADER_SIZE = 8;
+    // FullBox 的版本和标志
+    private static final int FULL_BOX_HEADER_SIZE = 4;
+    // 1904-01-01 到 1970-01-01 的秒数
+    private static final long MP4_EPOCH_OFFSET_SECONDS = 2082844800L;
+    // ©day 至少包含到分钟："2023-01-01T12:30"
+    private static final int ISO_DATE_TIME_LENGTH = 16;
+
+    @Override
+    public String getFormatName() {
+        return "MP4";
+    }
+
+    @Override
+    public long readDateTime(MetadataInput input) throws IOException {
+        long length = input.length();
+        long position = 0;
+        while (position + BOX_HEADER_SIZE <= length) {
+            long end = boxEnd(input, position, length);
+            if (input.u32(position + 4, false) == BOX_MOOV) {
+                return readMoov(input, contentStart(input, position), end);
+            }
+            position = end;
+        }
+        // 录制中断的文件没有 moov
+        throw new MalformedMetadataException("缺少moov盒");
+    }
+
+    private static long readMoov(MetadataInput input, long position, long end) throws IOException {
+        long creationTime = DateTimeUtils.INVALID;
+        long recordedTime = DateTimeUtils.INVALID;
+        while (position + BOX_HEADER_SIZE <= end) {
+            long boxEnd = boxEnd(input, position, end);
+            long type = input.u32(position + 4, false);
+            if (type == BOX_MVHD) {
+                creationTime = readMvhd(input, contentStart(input, position));
+            } else if (type == BOX_UDTA) {
+                recordedTime = readUdta(input, contentStart(input, position), boxEnd);
+            }
+            position = boxEnd;
+        }
+        return recordedTime != DateTimeUtils.INVALID ? recordedTime : creationTime;
+    }
+
+    // mvhd 版本0为32位时间，版本1为64位；0表示未设置
+    private static long readMvhd(MetadataInput input, long content) throws IOException {
+        int version = input.u8(content);
+        long seconds = version == 1 ? input.u64(content + FULL_BOX_HEADER_SIZE, false)
+                : input.u32(content + FULL_BOX_HEADER_SIZE, false);
+        if (seconds <= MP4_EPOCH_OFFSET_SECONDS) {
+            return DateTimeUtils.INVALID;
+        }
+        return (seconds - MP4_EPOCH_OFFSET_SECONDS) * 1000L;
+    }
+
+    // udta 中的 ©day 有两种写法：QuickTime 的 udta/©day，以及 iTunes 风格的 udta/meta/ilst/©day/data
+    private static long readUdta(MetadataInput input, long position, long end) throws IOException {
+        while (position + BOX_HEADER_SIZE <= end) {
+            long boxEnd = boxEnd(input, position, end);
+            long type = input.u32(position + 4, false);
+            long content = contentStart(input, position);
+            if (type == BOX_DAY) {
+                // 2字节文本长度、2字节语言代码，之后是文本
+                if (content + 4 <= boxEnd) {
+                    int textLength = input.u16(content, false);
+                    return readIsoDateTime(input, content + 4, Math.min(textLength, boxEnd - content - 4));
+                }
+            } else if (type == BOX_META) {
+                // MP4中的 meta 是 FullBox，QuickTime中不是，以紧跟的 hdlr 区分
+                if (content + BOX_HEADER_SIZE <= boxEnd && input.u32(content + 4, false) != BOX_HDLR) {
+                    content += FULL_BOX_HEADER_SIZE;
+                }
+                long ilst = findChild(input, content, boxEnd, BOX_ILST);
+                if (ilst >= 0) {
+                    long ilstEnd = boxEnd(input, ilst, boxEnd);
+                    long day = findChild(input, contentStart(input, ilst), ilstEnd, BOX_DAY);
+                    if (day >= 0) {
+                        long dayEnd = boxEnd(input, day, ilstEnd);
+                        long data = findChild(input, contentStart(input, day), dayEnd, BOX_DATA);
+                        if (data >= 0) {
+                            long dataEnd = boxEnd(input, data, dayEnd);
+                            // 4字节类型、4字节区域，之后是文本
+                            long text = contentStart(input, data) + 8;
+                            return readIsoDateTime(input, text, dataEnd - text);
+                        }
+                    }
+                }
+            }
+            position = boxEnd;
+        }
+        return DateTimeUtils.INVALID;
+    }
+
+    // 返回指定类型的第一个子盒的位置，没有时返回 -1
+    private static long findChild(MetadataInput input, long position, long end, long type) throws IOException {
+        while (position + BOX_HEADER_SIZE <= end) {
+            long boxEnd = boxEnd(input, position, end);
+            if (input.u32(position + 4, false) == type) {
+                return position;
+            }
+            position = boxEnd;
+        }
+        return -1;
+    }
+
+    private static long readIsoDateTime(MetadataInput input, long position, long count) throws IOException {
+        if (count < ISO_DATE_TIME_LENGTH) {
+            // 只有年份或日期的 ©day 不足以修正文件时间
+            return DateTimeUtils.INVALID;
+        }
+        return DateTimeUtils.parseIsoDateTime(input.readAscii(position, (int) Math.min(count, MetadataInput.MAX_TEXT_LENGTH)));
+    }
+
+    // 盒的结束位置；大小为1时使用64位大小，为0时延伸到上一级盒的末尾
+    private static long boxEnd(MetadataInput input, long position, long limit) throws IOException {
+        long size = input.u32(position, false);
+        if (size == 0) {
+            return limit;
+        }
+        int headerSize = BOX_HEADER_SIZE;
+        if (size == 1) {
+            size = input.u64(position + BOX_HEADER_SIZE, false);
+            headerSize += 8;
+        }
+        if (size < headerSize || size > limit - position) {
+            throw new MalformedMetadataException("盒大小异常: " + size);
+        }
+        return position + size;
+    }
+
+    private static long contentStart(MetadataInput input, long position) throws IOException {
+        return position + (input.u32(position, false) == 1 ? BOX_HEADER_SIZE + 8 : BOX_HEADER_SIZE);
+    }
+}
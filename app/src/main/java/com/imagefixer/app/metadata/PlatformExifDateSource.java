@@ -0,0 +1,47 @@
+package com.imagefixer.app.metadata;
+
+import android.media.ExifInterface;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 系统 android.media.ExifInterface 后端
+ * <p>
+ * 按路径打开文件，由系统实现决定读取方式，无法统计读取的字节数。
+ * 支持的格式取决于系统版本（HEIF 需要 Android 9，PNG/WebP 需要 Android 11），不支持时读不到日期。
+ * </p>
+ */
+public final class PlatformExifDateSource extends AbstractExifDateSource {
+    public static final String NAME = "platform";
+
+    public PlatformExifDateSource() {
+        super(NAME);
+    }
+
+    @Override
+    public boolean supports(FileType fileType) {
+        return fileType != FileType.UNKNOWN && fileType != FileType.MP4;
+    }
+
+    @Override
+    protected long read(File file, MetadataInput input, FileType fileType) throws IOException {
+        ExifInterface exifInterface = new ExifInterface(file.getAbsolutePath());
+        String dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME);
+        if (dateString == null || dateString.isEmpty()) {
+            dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
+        }
+        if (dateString == null || dateString.isEmpty()) {
+            dateString = exifInterface.getAttribute(ExifInterface.TAG_DATETIME_DIGITIZED);
+        }
+        return dateString != null && !dateString.isEmpty() ? DateTimeUtils.parseExifDateTime(dateString)
+                : DateTimeUtils.INVALID;
+    }
+
+    @Override
+    protected boolean isBytesReadTracked() {
+        return false;
+    }
+}
@@ -0,0 +1,70 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.IOException;
+
+/**
+ * PNG文件的EXIF日期头部探测
+ * <p>
+ * 按块长度跳过各个块，找到 IDAT 之前的 eXIf 块；遇到 IDAT（图像数据）或 IEND 即停止，
+ * 只读取块头和 eXIf 中的IFD。
+ * </p>
+ */
+public final class PngExifDateProbe implements ExifDateProbe {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final long CHUNK_EXIF = 0x65584966L; // "eXIf"
+    private static final long CHUNK_IDAT = 0x49444154L; // "IDAT"
+    private static final long CHUNK_IEND = 0x49454E44L; // "IEND"
+    // 块头（长度和类型）与CRC的字节数
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int CRC_SIZE = 4;
+
+    @Override
+    public String getFormatName() {
+        return "PNG";
+    }
+
+    @Override
+    public long readDateTime(MetadataInput input) throws IOException {
+        long chunk = findChunk(input, CHUNK_EXIF, null);
+        if (chunk < 0) {
+            return DateTimeUtils.INVALID;
+        }
+        long data = chunk + CHUNK_HEADER_SIZE;
+        return TiffDateParser.readDateTimeInExifBlock(input, data, data + input.u32(chunk, false));
+    }
+
+    /**
+     * 按块长度逐块跳过，查找 IDAT 之前指定类型的第一个块
+     *
+     * @param input  读取器
+     * @param type   块类型
+     * @param prefix 块数据开头须为这些字节（如 iTXt 的关键字），为 null 时不检查
+     * @return 块的位置（长度字段处，数据从其后8字节开始）；没有时返回 -1
+     * @throws MalformedMetadataException 块结构异常
+     */
+    static long findChunk(MetadataInput input, long type, byte[] prefix) throws IOException {
+        if (!input.startsWith(0, SIGNATURE)) {
+            throw new MalformedMetadataException("不是PNG文件");
+        }
+        long position = SIGNATURE.length;
+        while (position + CHUNK_HEADER_SIZE <= input.length()) {
+            long length = input.u32(position, false);
+            long chunkType = input.u32(position + 4, false);
+            long data = position + CHUNK_HEADER_SIZE;
+            if (chunkType == CHUNK_IDAT || chunkType == CHUNK_IEND) {
+                return -1;
+            }
+            if (data + length > input.length()) {
+                throw new MalformedMetadataException("块长度异常: " + length);
+            }
+            if (chunkType == type && (prefix == null
+                    || (length >= prefix.length && input.startsWith(data, prefix)))) {
+                return position;
+            }
+            position = data + length + CRC_SIZE;
+        }
+        throw new MalformedMetadataException("缺少IDAT块");
+    }
+}
@@ -0,0 +1,208 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.IOException;
+
+/**
+ * 从TIFF结构中读取日期时间标签
+ * <p>
+ * JPEG的APP1段、HEIC/WebP/PNG中的Exif块，以及TIFF和RAW文件本身，都是一段TIFF结构。这里只跟随IFD0和EXIF子IFD的偏移量，
+ * 按需读取条目，不读取缩略图、厂商注释（MakerNote）或图像数据。
+ * 标签优先级与 ScanService 使用 ExifInterface 时一致：DateTime、DateTimeOriginal、DateTimeDigitized，
+ * 取第一个非空的值；IFD0中已有非空的 DateTime 时不再读取EXIF子IFD。
+ * </p>
+ */
+final class TiffDateParser {
+    static final int TAG_DATETIME = 0x0132;
+    static final int TAG_EXIF_IFD = 0x8769;
+    static final int TAG_DATETIME_ORIGINAL = 0x9003;
+    static final int TAG_DATETIME_DIGITIZED = 0x9004;
+    // IFD0中XMP数据包所在的条目（类型为BYTE）
+    static final int TAG_XMP = 0x02BC;
+    // JPEG APP1段中Exif数据的标识，部分工具也会把它写进PNG/WebP/HEIF的Exif块
+    static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+
+    private static final int TYPE_ASCII = 2;
+    private static final int TIFF_MAGIC = 42;
+    // 改写了标识的RAW：Olympus ORF（"RO"、"RS"）、Panasonic RW2（0x55）
+    private static final int ORF_MAGIC = 0x4F52;
+    private static final int ORF_MAGIC_2 = 0x5352;
+    private static final int RW2_MAGIC = 0x55;
+    private static final int ENTRY_SIZE = 12;
+    // 单个IFD的条目数上限，超出视为结构异常
+    private static final int MAX_ENTRIES = 1024;
+
+    private TiffDateParser() {
+    }
+
+    /**
+     * 查找第一个非空的日期时间字符串
+     *
+     * @param input 读取器
+     * @param start TIFF头（字节序标记）在文件中的位置
+     * @param end   TIFF结构的结束位置（不含）
+     * @return 日期时间字符串（如 "2023:01:01 12:30:45"）；没有日期标签时返回 null
+     * @throws MalformedMetadataException TIFF头或IFD结构异常
+     */
+    static CharSequence findDateTime(MetadataInput input, long start, long end) throws IOException {
+        boolean littleEndian = readByteOrder(input, start, end);
+
+        // 只记录非空日期条目的位置，最后只解码优先级最高的一个
+        long original = -1;
+        long digitized = -1;
+        long exifIfd = -1;
+        long offset = input.u32(start + 4, littleEndian);
+        // 依次读取IFD0和EXIF子IFD
+        for (int ifd = 0; ifd < 2; ifd++) {
+            long position = start + offset;
+            if (offset < 8 || position + 2 > end) {
+                throw new MalformedMetadataException("IFD偏移量越界: " + offset);
+            }
+            int count = input.u16(position, littleEndian);
+            if (count > MAX_ENTRIES || position + 2 + (long) count * ENTRY_SIZE > end) {
+                throw new MalformedMetadataException("IFD条目数异常: " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                long entry = position + 2 + (long) i * ENTRY_SIZE;
+                int tag = input.u16(entry, littleEndian);
+                switch (tag) {
+                    case TAG_DATETIME:
+                        if (isPresent(input, entry, start, end, littleEndian)) {
+                            // 优先级最高的标签，不必再看其它条目
+                            return readString(input, entry, start, littleEndian);
+                        }
+                        break;
+                    case TAG_DATETIME_ORIGINAL:
+                        if (original < 0 && isPresent(input, entry, start, end, littleEndian)) {
+                            original = entry;
+                        }
+                        break;
+                    case TAG_DATETIME_DIGITIZED:
+                        if (digitized < 0 && isPresent(input, entry, start, end, littleEndian)) {
+                            digitized = entry;
+                        }
+                        break;
+                    case TAG_EXIF_IFD:
+                        if (ifd == 0) {
+                            exifIfd = input.u32(entry + 8, littleEndian);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (exifIfd < 0) {
+                break;
+            }
+            offset = exifIfd;
+            exifIfd = -1;
+        }
+        if (original >= 0) {
+            return readString(input, original, start, littleEndian);
+        }
+        if (digitized >= 0) {
+            return readString(input, digitized, start, littleEndian);
+        }
+        return null;
+    }
+
+    /**
+     * 查找第一个非空的日期时间并换算为毫秒时间戳
+     *
+     * @return 毫秒时间戳；没有日期标签或无法解析时返回 {@link DateTimeUtils#INVALID}
+     * @throws MalformedMetadataException TIFF头或IFD结构异常
+     */
+    static long readDateTime(MetadataInput input, long start, long end) throws IOException {
+        CharSequence date = findDateTime(input, start, end);
+        return date != null ? DateTimeUtils.parseExifDateTime(date) : DateTimeUtils.INVALID;
+    }
+
+    /**
+     * 与 {@link #readDateTime} 相同，但先跳过块开头可选的 "Exif\0\0" 标识
+     */
+    static long readDateTimeInExifBlock(MetadataInput input, long start, long end) throws IOException {
+        if (end - start >= EXIF_HEADER.length && input.startsWith(start, EXIF_HEADER)) {
+            start += EXIF_HEADER.length;
+        }
+        return readDateTime(input, start, end);
+    }
+
+    /**
+     * 读取IFD0中XMP数据包里的日期，见 {@link XmpDateScanner}
+     *
+     * @return 毫秒时间戳；没有XMP条目或其中没有日期时返回 {@link DateTimeUtils#INVALID}
+     * @throws MalformedMetadataException TIFF头或IFD结构异常
+     */
+    static long readXmpDateTime(MetadataInput input, long start, long end) throws IOException {
+        boolean littleEndian = readByteOrder(input, start, end);
+        long offset = input.u32(start + 4, littleEndian);
+        long position = start + offset;
+        if (offset < 8 || position + 2 > end) {
+            throw new MalformedMetadataException("IFD偏移量越界: " + offset);
+        }
+        int count = input.u16(position, littleEndian);
+        if (count > MAX_ENTRIES || position + 2 + (long) count * ENTRY_SIZE > end) {
+            throw new MalformedMetadataException("IFD条目数异常: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            long entry = position + 2 + (long) i * ENTRY_SIZE;
+            if (input.u16(entry, littleEndian) == TAG_XMP) {
+                long length = input.u32(entry + 4, littleEndian);
+                long packet = valuePosition(input, entry, start, length, littleEndian);
+                if (packet < start || packet + length > end) {
+                    throw new MalformedMetadataException("XMP条目越界: " + packet);
+                }
+                return XmpDateScanner.findDateTime(input, packet, packet + length);
+            }
+        }
+        return DateTimeUtils.INVALID;
+    }
+
+    // 校验TIFF头，返回字节序是否为小端
+    private static boolean readByteOrder(MetadataInput input, long start, long end) throws IOException {
+        if (end - start < 8) {
+            throw new MalformedMetadataException("TIFF结构过短: " + (end - start));
+        }
+        int order = input.u16(start, false);
+        boolean littleEndian;
+        if (order == 0x4949) {
+            littleEndian = true;
+        } else if (order == 0x4D4D) {
+            littleEndian = false;
+        } else {
+            throw new MalformedMetadataException("TIFF字节序标记无效: " + Integer.toHexString(order));
+        }
+        int magic = input.u16(start + 2, littleEndian);
+        if (magic != TIFF_MAGIC && magic != ORF_MAGIC && magic != ORF_MAGIC_2 && magic != RW2_MAGIC) {
+            throw new MalformedMetadataException("TIFF标识无效");
+        }
+        return littleEndian;
+    }
+
+    // ASCII类型条目的值是否非空；类型不符或偏移量越界时与 ExifInterface 一样忽略该条目
+    private static boolean isPresent(MetadataInput input, long entry, long start, long end, boolean littleEndian)
+            throws IOException {
+        if (input.u16(entry + 2, littleEndian) != TYPE_ASCII) {
+            return false;
+        }
+        long count = input.u32(entry + 4, littleEndian);
+        long position = valuePosition(input, entry, start, count, littleEndian);
+        int length = (int) Math.min(count, MetadataInput.MAX_TEXT_LENGTH);
+        return length > 0 && position >= start && position + length <= end && input.u8(position) != 0;
+    }
+
+    // 读取ASCII类型条目的值，截止到第一个NUL
+    private static CharSequence readString(MetadataInput input, long entry, long start, boolean littleEndian)
+            throws IOException {
+        long count = input.u32(entry + 4, littleEndian);
+        long position = valuePosition(input, entry, start, count, littleEndian);
+        return input.readAscii(position, (int) Math.min(count, MetadataInput.MAX_TEXT_LENGTH));
+    }
+
+    // 不超过4字节的值直接存放在条目中，否则条目中是相对于TIFF头的偏移量
+    private static long valuePosition(MetadataInput input, long entry, long start, long count, boolean littleEndian)
+            throws IOException {
+        return count <= 4 ? entry + 8 : start + input.u32(entry + 8, littleEndian);
+    }
+}
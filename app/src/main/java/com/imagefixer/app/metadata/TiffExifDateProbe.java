@@ -0,0 +1,24 @@
+package com.imagefixer.app.metadata;
+
+import java.io.IOException;
+
+/**
+ * TIFF结构图片和RAW（DNG、CR2、NEF、ARW等）的EXIF日期头部探测
+ * <p>
+ * 这些文件整体就是一段TIFF结构，从文件开头起只跟随 IFD0 和 EXIF 子IFD 的偏移量读取日期条目。
+ * SubIFD 中的全尺寸图像、预览图、条带数据和 EXIF 子IFD 中的厂商注释（MakerNote）都只是条目中的偏移量，
+ * 不会被读取。RAW文件通常有 25–80MB，而 IFD0 和 EXIF 子IFD 一般位于文件开头，通常只需读取一两个窗口。
+ * </p>
+ */
+public final class TiffExifDateProbe implements ExifDateProbe {
+
+    @Override
+    public String getFormatName() {
+        return "TIFF";
+    }
+
+    @Override
+    public long readDateTime(MetadataInput input) throws IOException {
+        return TiffDateParser.readDateTime(input, 0, input.length());
+    }
+}
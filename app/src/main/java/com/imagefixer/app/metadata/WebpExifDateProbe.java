@@ -0,0 +1,76 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.IOException;
+
+/**
+ * WebP文件的EXIF日期头部探测
+ * <p>
+ * WebP是RIFF容器。只有扩展格式（首块为 VP8X）才能携带Exif，且 VP8X 的标志位会声明是否存在 EXIF 块；
+ * 简单格式（VP8/VP8L）或标志位未置位时直接返回，不再遍历。否则按块大小跳过图像数据找到 EXIF 块。
+ * </p>
+ */
+public final class WebpExifDateProbe implements ExifDateProbe {
+    private static final long FOURCC_RIFF = 0x52494646L; // "RIFF"
+    private static final long FOURCC_WEBP = 0x57454250L; // "WEBP"
+    private static final long CHUNK_VP8X = 0x56503858L; // "VP8X"
+    private static final long CHUNK_EXIF = 0x45584946L; // "EXIF"
+    // VP8X 标志字节中表示存在 EXIF 块的位
+    private static final int FLAG_EXIF = 0x08;
+    private static final int RIFF_HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+
+    @Override
+    public String getFormatName() {
+        return "WebP";
+    }
+
+    @Override
+    public long readDateTime(MetadataInput input) throws IOException {
+        long chunk = findChunk(input, FLAG_EXIF, CHUNK_EXIF);
+        if (chunk < 0) {
+            return DateTimeUtils.INVALID;
+        }
+        long data = chunk + CHUNK_HEADER_SIZE;
+        return TiffDateParser.readDateTimeInExifBlock(input, data, data + input.u32(chunk + 4, true));
+    }
+
+    /**
+     * 在扩展格式中查找指定类型的块；VP8X 未声明该块（flag 未置位）时直接返回
+     *
+     * @param input 读取器
+     * @param flag  VP8X 标志字节中对应的位
+     * @param type  块类型
+     * @return 块的位置（类型字段处，数据从其后8字节开始）；没有时返回 -1
+     * @throws MalformedMetadataException 块结构异常
+     */
+    static long findChunk(MetadataInput input, int flag, long type) throws IOException {
+        if (input.length() < RIFF_HEADER_SIZE + CHUNK_HEADER_SIZE
+                || input.u32(0, false) != FOURCC_RIFF || input.u32(8, false) != FOURCC_WEBP) {
+            throw new MalformedMetadataException("不是WebP文件");
+        }
+        // RIFF大小不含前8字节；以文件长度为上限，兼容被截断或补零的文件
+        long end = Math.min(input.length(), 8 + input.u32(4, true));
+
+        long position = RIFF_HEADER_SIZE;
+        if (input.u32(position, false) != CHUNK_VP8X
+                || (input.u8(position + CHUNK_HEADER_SIZE) & flag) == 0) {
+            return -1;
+        }
+        while (position + CHUNK_HEADER_SIZE <= end) {
+            long chunkType = input.u32(position, false);
+            long size = input.u32(position + 4, true);
+            long data = position + CHUNK_HEADER_SIZE;
+            if (data + size > end) {
+                throw new MalformedMetadataException("块大小异常: " + size);
+            }
+            if (chunkType == type) {
+                return position;
+            }
+            // 块数据按偶数字节对齐
+            position = data + size + (size & 1);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,127 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.IOException;
+
+/**
+ * 在XMP数据包中查找拍摄日期
+ * <p>
+ * 不解析XML：逐字节扫描数据包，用两个KMP状态机同时匹配 "xmp:CreateDate" 和 "photoshop:DateCreated"。
+ * 匹配到名称后只看紧跟的一小段：属性写法 {@code xmp:CreateDate="..."} 取引号内的值，
+ * 元素写法 {@code <xmp:CreateDate>...</xmp:CreateDate>} 取到下一个 '<' 为止。
+ * 第一个能解析的日期即返回，不再读取数据包的剩余部分（常见的缩略图、编辑历史都在后面）。
+ * 约定的命名空间前缀之外的写法（如自定义前缀）不识别。
+ * </p>
+ */
+final class XmpDateScanner {
+    private static final byte[] CREATE_DATE = ascii("xmp:CreateDate");
+    private static final byte[] DATE_CREATED = ascii("photoshop:DateCreated");
+    private static final int[] CREATE_DATE_FAILURE = failureTable(CREATE_DATE);
+    private static final int[] DATE_CREATED_FAILURE = failureTable(DATE_CREATED);
+
+    private XmpDateScanner() {
+    }
+
+    /**
+     * 在 [position, end) 中查找第一个能解析的日期
+     *
+     * @return 毫秒时间戳；没有日期属性时返回 {@link DateTimeUtils#INVALID}
+     */
+    static long findDateTime(MetadataInput input, long position, long end) throws IOException {
+        int createDate = 0;
+        int dateCreated = 0;
+        while (position < end) {
+            int b = input.u8(position++);
+            createDate = advance(CREATE_DATE, CREATE_DATE_FAILURE, createDate, b);
+            dateCreated = advance(DATE_CREATED, DATE_CREATED_FAILURE, dateCreated, b);
+            if (createDate == CREATE_DATE.length || dateCreated == DATE_CREATED.length) {
+                long millis = readValue(input, position, end);
+                if (millis != DateTimeUtils.INVALID) {
+                    return millis;
+                }
+                createDate = 0;
+                dateCreated = 0;
+            }
+        }
+        return DateTimeUtils.INVALID;
+    }
+
+    // 名称之后的属性值或元素内容
+    private static long readValue(MetadataInput input, long position, long end) throws IOException {
+        position = skipWhitespace(input, position, end);
+        if (position >= end) {
+            return DateTimeUtils.INVALID;
+        }
+        int terminator;
+        int b = input.u8(position++);
+        if (b == '=') {
+            position = skipWhitespace(input, position, end);
+            if (position >= end) {
+                return DateTimeUtils.INVALID;
+            }
+            terminator = input.u8(position++);
+            if (terminator != '"' && terminator != '\'') {
+                return DateTimeUtils.INVALID;
+            }
+        } else if (b == '>') {
+            terminator = '<';
+        } else {
+            // 名称只是更长名称的前缀，或是结束标签
+            return DateTimeUtils.INVALID;
+        }
+        long limit = Math.min(end, position + MetadataInput.MAX_TEXT_LENGTH);
+        for (long i = position; i < limit; i++) {
+            if (input.u8(i) == terminator) {
+                return DateTimeUtils.parseIsoDateTime(input.readAscii(position, (int) (i - position)));
+            }
+        }
+        return DateTimeUtils.INVALID;
+    }
+
+    private static long skipWhitespace(MetadataInput input, long position, long end) throws IOException {
+        while (position < end) {
+            int b = input.u8(position);
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    // 读入一个字节后的匹配长度
+    private static int advance(byte[] pattern, int[] failure, int state, int b) {
+        if (state == pattern.length) {
+            state = failure[state - 1];
+        }
+        while (state > 0 && pattern[state] != b) {
+            state = failure[state - 1];
+        }
+        return pattern[state] == b ? state + 1 : 0;
+    }
+
+    // failure[i] 为 pattern[0..i] 的最长真前后缀长度
+    private static int[] failureTable(byte[] pattern) {
+        int[] failure = new int[pattern.length];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = failure[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        return failure;
+    }
+
+    private static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
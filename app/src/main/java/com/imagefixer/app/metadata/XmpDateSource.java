@@ -0,0 +1,108 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * XMP后端：从XMP数据包读取 xmp:CreateDate 或 photoshop:DateCreated
+ * <p>
+ * 编辑软件导出的图片和部分截图只在XMP中保留拍摄时间。在EXIF中没有日期时使用，位于文件名解析之前。
+ * 数据包按容器定位：JPEG 的 XMP APP1 段、PNG 的 iTXt 块（关键字 XML:com.adobe.xmp）、
+ * WebP 的 "XMP " 块、TIFF/RAW 的 IFD0 XMP 条目；定位方式与各格式的头部探测相同，
+ * 再由 {@link XmpDateScanner} 流式扫描，不构建DOM。HEIF和视频中的XMP不读取。
+ * </p>
+ */
+public final class XmpDateSource extends AbstractExifDateSource {
+    public static final String NAME = "xmp";
+
+    // JPEG APP1段中XMP数据包的标识
+    private static final byte[] JPEG_XMP_HEADER = {
+            'h', 't', 't', 'p', ':', '/', '/', 'n', 's', '.', 'a', 'd', 'o', 'b', 'e', '.', 'c', 'o', 'm',
+            '/', 'x', 'a', 'p', '/', '1', '.', '0', '/', 0
+    };
+    // PNG iTXt 块中XMP的关键字
+    private static final byte[] PNG_XMP_KEYWORD = {
+            'X', 'M', 'L', ':', 'c', 'o', 'm', '.', 'a', 'd', 'o', 'b', 'e', '.', 'x', 'm', 'p', 0
+    };
+    private static final long PNG_CHUNK_ITXT = 0x69545874L; // "iTXt"
+    private static final long WEBP_CHUNK_XMP = 0x584D5020L; // "XMP "
+    // VP8X 标志字节中表示存在 XMP 块的位
+    private static final int WEBP_FLAG_XMP = 0x04;
+    private static final int CHUNK_HEADER_SIZE = 8;
+
+    public XmpDateSource() {
+        super(NAME);
+    }
+
+    @Override
+    public boolean supports(FileType fileType) {
+        return fileType == FileType.JPEG || fileType == FileType.PNG || fileType == FileType.WEBP
+                || fileType == FileType.TIFF;
+    }
+
+    @Override
+    protected long read(File file, MetadataInput input, FileType fileType) throws IOException {
+        long before = input.getBytesRead();
+        try {
+            switch (fileType) {
+                case JPEG:
+                    return readJpeg(input);
+                case PNG:
+                    return readPng(input);
+                case WEBP:
+                    return readWebp(input);
+                case TIFF:
+                    return TiffDateParser.readXmpDateTime(input, 0, input.length());
+                default:
+                    return DateTimeUtils.INVALID;
+            }
+        } finally {
+            addBytesRead(input.getBytesRead() - before);
+        }
+    }
+
+    private static long readJpeg(MetadataInput input) throws IOException {
+        long segment = JpegExifDateProbe.findApp1(input, JPEG_XMP_HEADER);
+        if (segment < 0) {
+            return DateTimeUtils.INVALID;
+        }
+        long end = segment + input.u16(segment, false);
+        return XmpDateScanner.findDateTime(input, segment + 2 + JPEG_XMP_HEADER.length, end);
+    }
+
+    // iTXt：关键字、压缩标志、压缩方法、语言标签、翻译后的关键字，之后是文本
+    private static long readPng(MetadataInput input) throws IOException {
+        long chunk = PngExifDateProbe.findChunk(input, PNG_CHUNK_ITXT, PNG_XMP_KEYWORD);
+        if (chunk < 0) {
+            return DateTimeUtils.INVALID;
+        }
+        long position = chunk + CHUNK_HEADER_SIZE + PNG_XMP_KEYWORD.length;
+        long end = chunk + CHUNK_HEADER_SIZE + input.u32(chunk, false);
+        if (position + 2 > end || input.u8(position) != 0) {
+            // 压缩的文本需要解压，不读取
+            return DateTimeUtils.INVALID;
+        }
+        position = skipString(input, position + 2, end);
+        position = skipString(input, position, end);
+        return XmpDateScanner.findDateTime(input, position, end);
+    }
+
+    private static long readWebp(MetadataInput input) throws IOException {
+        long chunk = WebpExifDateProbe.findChunk(input, WEBP_FLAG_XMP, WEBP_CHUNK_XMP);
+        if (chunk < 0) {
+            return DateTimeUtils.INVALID;
+        }
+        long data = chunk + CHUNK_HEADER_SIZE;
+        return XmpDateScanner.findDateTime(input, data, data + input.u32(chunk + 4, true));
+    }
+
+    // 跳过以NUL结尾的字符串
+    private static long skipString(MetadataInput input, long position, long end) throws IOException {
+        while (position < end && input.u8(position) != 0) {
+            position++;
+        }
+        return Math.min(position + 1, end);
+    }
+}
@@ -0,0 +1,42 @@
+package com.imagefixer.app.scan;
+
+import java.io.File;
+
+/**
+ * 基于 {@link File#list()} 的读取：一次列出整个目录，再按块交给读取方
+ * <p>
+ * API 26 以下没有公开的流式目录接口时使用，名称数组仍与目录大小成正比，但省去了 File 对象。
+ * </p>
+ */
+final class ArrayDirectoryReader implements DirectoryReader {
+    private String[] entries;
+    private int position;
+
+    private ArrayDirectoryReader(String[] entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @return 目录不存在或无法读取时返回 null
+     */
+    static DirectoryReader open(File directory) {
+        String[] entries = directory.list();
+        return entries != null ? new ArrayDirectoryReader(entries) : null;
+    }
+
+    @Override
+    public int read(String[] names) {
+        if (entries == null) {
+            return 0;
+        }
+        int count = Math.min(names.length, entries.length - position);
+        System.arraycopy(entries, position, names, 0, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        entries = null;
+    }
+}
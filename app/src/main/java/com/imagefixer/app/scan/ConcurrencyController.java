@@ -0,0 +1,207 @@
+package com.imagefixer.app.scan;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 自适应的I/O并发控制器
+ * <p>
+ * 处理线程处理每个文件前取得一个许可（{@link #acquire}），同时持有许可的线程数不超过当前上限；
+ * 处理完归还许可并记录这个文件的耗时（{@link #record}）。按时间窗口统计完成的文件数（吞吐量）和平均耗时，
+ * 每个窗口结束时与上一个窗口比较，按 AIMD 调整上限：
+ * <ul>
+ * <li>上限未减小，吞吐量却没有明显提高、平均耗时明显变长，说明存储已经饱和，上限乘以 {@link #BACKOFF_RATIO}；</li>
+ * <li>上限刚减小而吞吐量没有下降，说明减掉的并发只是在排队，继续乘以 {@link #BACKOFF_RATIO}；</li>
+ * <li>否则如果窗口内上限被用满，上限加一。</li>
+ * </ul>
+ * 停在最大值时没有变化可供比较，连续 {@link #PROBE_WINDOWS} 个窗口不变后试探性地减一，
+ * 从一开始就饱和的设备也能降下来。
+ * 内部存储（UFS）上上限会逐步升到最大值，慢速SD卡和USB OTG设备上会停在较小的值附近小幅振荡。
+ * 最小值等于最大值时上限固定，不做调整。
+ * </p>
+ */
+public final class ConcurrencyController {
+    // 乘性减小的比例
+    static final double BACKOFF_RATIO = 0.75;
+    // 吞吐量提高不足这个比例视为没有提高
+    private static final double THROUGHPUT_GAIN = 1.05;
+    // 平均耗时增加超过这个比例视为变长
+    private static final double LATENCY_GROWTH = 1.10;
+    // 停在最大值多少个窗口后试探性地减小
+    static final int PROBE_WINDOWS = 10;
+    private static final long DEFAULT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // 一个窗口至少要有这么多个文件才做判断
+    private static final int MIN_WINDOW_SAMPLES = 8;
+    // 等待许可时检查取消状态的间隔
+    private static final long POLL_INTERVAL_MS = 100;
+
+    /**
+     * 时间来源，测试中可以替换
+     */
+    interface Ticker {
+        long nanoTime();
+    }
+
+    private static final Ticker SYSTEM_TICKER = new Ticker() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final Ticker ticker;
+
+    // 以下字段都由 this 保护
+    private int limit;
+    private int inFlight;
+    private int windowMaxInFlight;
+    private long windowStart;
+    private int windowSamples;
+    private long windowLatencyNanos;
+    private double lastThroughput = -1;
+    private double lastLatencyNanos = -1;
+    // 上一个窗口结束时上限的变化方向：1 增加，-1 减小，0 不变
+    private int lastChange;
+    private int steadyWindows;
+    private int increaseCount;
+    private int decreaseCount;
+    private long totalSamples;
+
+    /**
+     * @param initialLimit 初始上限
+     * @param minLimit     最小上限
+     * @param maxLimit     最大上限
+     */
+    public ConcurrencyController(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, DEFAULT_WINDOW_NANOS, SYSTEM_TICKER);
+    }
+
+    ConcurrencyController(int initialLimit, int minLimit, int maxLimit, long windowNanos, Ticker ticker) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("并发上限无效: " + initialLimit + " (" + minLimit + ".." + maxLimit + ")");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = windowNanos;
+        this.ticker = ticker;
+        this.limit = initialLimit;
+        this.windowStart = ticker.nanoTime();
+    }
+
+    /**
+     * 取得一个许可，达到上限时等待
+     *
+     * @param running 为 false 时停止等待
+     * @return 取得许可返回 true；已取消返回 false
+     */
+    public synchronized boolean acquire(AtomicBoolean running) throws InterruptedException {
+        while (inFlight >= limit) {
+            if (!running.get()) {
+                return false;
+            }
+            wait(POLL_INTERVAL_MS);
+        }
+        if (!running.get()) {
+            return false;
+        }
+        inFlight++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        return true;
+    }
+
+    /**
+     * 归还许可
+     */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * 记录一个文件的处理耗时，窗口结束时调整上限
+     *
+     * @return 上限是否改变
+     */
+    public synchronized boolean record(long latencyNanos) {
+        totalSamples++;
+        windowSamples++;
+        windowLatencyNanos += latencyNanos;
+        long now = ticker.nanoTime();
+        long elapsed = now - windowStart;
+        if (elapsed < windowNanos || windowSamples < MIN_WINDOW_SAMPLES) {
+            return false;
+        }
+
+        double throughput = windowSamples * 1e9 / elapsed;
+        double latency = (double) windowLatencyNanos / windowSamples;
+        int previous = limit;
+        boolean compared = lastThroughput > 0;
+        boolean saturated = compared && throughput < lastThroughput * THROUGHPUT_GAIN
+                && latency > lastLatencyNanos * LATENCY_GROWTH;
+        boolean lost = compared && throughput * THROUGHPUT_GAIN < lastThroughput;
+        if (lastChange < 0 && compared && !lost) {
+            // 减小并发没有降低吞吐量，多出的并发只是在排队
+            backOff();
+        } else if (lastChange >= 0 && saturated) {
+            // 存储已饱和：并发增加只带来排队
+            backOff();
+        } else if (windowMaxInFlight >= limit) {
+            if (limit < maxLimit) {
+                limit++;
+            } else if (++steadyWindows >= PROBE_WINDOWS && limit > minLimit) {
+                // 试探：减一后吞吐量不降说明并发过多
+                limit--;
+            }
+        }
+        if (limit != previous) {
+            steadyWindows = 0;
+        }
+        lastChange = Integer.signum(limit - previous);
+        if (limit > previous) {
+            increaseCount++;
+            notifyAll();
+        } else if (limit < previous) {
+            decreaseCount++;
+        }
+
+        lastThroughput = throughput;
+        lastLatencyNanos = latency;
+        windowStart = now;
+        windowSamples = 0;
+        windowLatencyNanos = 0;
+        windowMaxInFlight = inFlight;
+        return limit != previous;
+    }
+
+    private void backOff() {
+        limit = Math.max(minLimit, Math.min(limit - 1, (int) (limit * BACKOFF_RATIO)));
+    }
+
+    /**
+     * @return 当前的并发上限
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @return 上一个窗口的吞吐量（个/秒）；还没有完整的窗口时返回 -1
+     */
+    public synchronized double getLastThroughput() {
+        return lastThroughput;
+    }
+
+    public synchronized String getSummary() {
+        return "并发控制: 当前 " + limit + "（" + minLimit + ".." + maxLimit + "），增加 " + increaseCount
+                + " 次、减小 " + decreaseCount + " 次，共 " + totalSamples + " 个文件"
+                + (lastThroughput < 0 ? "" : String.format("，最近窗口 %.1f 个/秒、平均 %.1fms",
+                        lastThroughput, lastLatencyNanos / 1e6));
+    }
+}
@@ -0,0 +1,21 @@
+package com.imagefixer.app.scan;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 按块读取目录中的条目名称
+ * <p>
+ * 每次最多读取一块，读取方复用同一个数组，条目很多（几万到十几万）的目录不必一次性生成整个
+ * 名称数组和 File 对象，遍历的内存占用与最大目录的大小无关。用完后必须关闭。
+ * </p>
+ */
+public interface DirectoryReader extends Closeable {
+    /**
+     * 读取下一块名称
+     *
+     * @param names 存放名称的数组，最多读取 names.length 个
+     * @return 读取的个数；已读完时返回 0
+     */
+    int read(String[] names) throws IOException;
+}
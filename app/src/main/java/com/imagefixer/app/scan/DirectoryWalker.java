@@ -0,0 +1,293 @@
+package com.imagefixer.app.scan;
+
+import com.imagefixer.app.utils.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并行目录遍历器
+ * <p>
+ * 每个任务（{@link RecursiveAction}）用自己的显式栈遍历一部分目录树，不递归，深度不受限制；
+ * 栈中积压的目录在有空闲线程时拆分为新任务，由 {@link ForkJoinPool} 中的空闲线程窃取执行。
+ * FUSE存储上列目录的耗时主要是等待，多个目录同时列出时总耗时随线程数下降。
+ * </p>
+ * <p>
+ * 同一份数据可能通过多条路径到达：/sdcard 与 /storage/emulated/0、绑定挂载、符号链接、硬链接。
+ * 已访问目录的 (设备号, inode) 记录在 {@link InodeSet} 中，再次遇到时整个子树跳过，符号链接成环也不会死循环；
+ * 文件也按 (设备号, inode) 记录，指向文件的符号链接按目标的 (设备号, inode) 去重：
+ * 链接和目标先遇到哪个就按哪个路径处理一次，目标不在扫描范围内时通过链接处理。
+ * 每个物理目录和文件只处理一次，跳过的次数计入 {@link #getSummary()}。
+ * </p>
+ * <p>
+ * 包含/排除规则由 {@link ScanRules} 编译，每个目录带着自己在规则前缀树中的状态入栈，
+ * 子目录的状态从父目录的状态按名称前进一步得到，被排除的子树不入栈。
+ * </p>
+ * <p>
+ * 文件系统只通过 {@link FileSystemShim} 访问：每个目录打开一次，每个条目 stat 一次，
+ * 读到的类型、大小和修改时间放在 {@link ScanEntry} 中交给回调，之后不再查询。
+ * 目录按固定大小的块读取，读完一块、处理完再读下一块；回调（放入有界流水线）阻塞时读取随之暂停，
+ * 遍历占用的内存与最大目录的条目数无关。
+ * </p>
+ * <p>
+ * 发现的文件（非目录）交给 {@link Listener}，回调在多个工作线程中并发执行，实现必须是线程安全的。
+ * </p>
+ */
+public final class DirectoryWalker {
+    private static final String TAG = "DirectoryWalker";
+    // 每次从目录读取的条目数
+    static final int CHUNK_SIZE = 256;
+
+    /**
+     * 文件发现回调
+     */
+    public interface Listener {
+        /**
+         * 发现一个非目录条目，在遍历线程中调用
+         */
+        void onFile(ScanEntry entry);
+    }
+
+    // 当前线程队列中的任务少于这个数时才拆分，避免拆出过多的小任务
+    private static final int SURPLUS_THRESHOLD = 2;
+    private static final int EXPECTED_DIRECTORIES = 1024;
+
+    private final FileSystemShim fileSystem;
+    private final ScanRules rules;
+    private final int parallelism;
+    private final AtomicBoolean running;
+    private final Listener listener;
+    private final InodeSet visited = new InodeSet(EXPECTED_DIRECTORIES);
+    private final AtomicLong directoryCount = new AtomicLong();
+    private final AtomicLong fileCount = new AtomicLong();
+    private final AtomicLong duplicateDirectoryCount = new AtomicLong();
+    private final AtomicLong duplicateFileCount = new AtomicLong();
+    private final AtomicLong fileLinkCount = new AtomicLong();
+    private final AtomicLong excludedDirectoryCount = new AtomicLong();
+    private volatile long elapsedNanos;
+
+    /**
+     * @param fileSystem  文件系统操作
+     * @param rules       包含/排除规则
+     * @param parallelism 并行线程数
+     * @param running     为 false 时尽快停止遍历
+     * @param listener    文件发现回调
+     */
+    public DirectoryWalker(FileSystemShim fileSystem, ScanRules rules, int parallelism, AtomicBoolean running,
+            Listener listener) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("并行线程数无效: " + parallelism);
+        }
+        this.fileSystem = fileSystem;
+        this.rules = rules;
+        this.parallelism = parallelism;
+        this.running = running;
+        this.listener = listener;
+    }
+
+    /**
+     * 遍历目录树，所有目录处理完（或被取消）后返回
+     */
+    public void walk(File root) {
+        walk(Collections.singletonList(root));
+    }
+
+    /**
+     * 依次遍历多个根目录；同一个目录通过不同的根到达时只遍历一次
+     */
+    public void walk(List<File> roots) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (File root : roots) {
+                if (!running.get()) {
+                    break;
+                }
+                ScanEntry entry = fileSystem.stat(root);
+                if (entry == null || !entry.isDirectory()) {
+                    continue;
+                }
+                if (!visit(entry)) {
+                    duplicateDirectoryCount.incrementAndGet();
+                    continue;
+                }
+                pool.invoke(new DirectoryTask(new PendingDirectory(root, rules.getRootState())));
+            }
+        } finally {
+            pool.shutdown();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getDirectoryCount() {
+        return directoryCount.get();
+    }
+
+    public long getFileCount() {
+        return fileCount.get();
+    }
+
+    /**
+     * @return 因已经访问过而跳过的目录数（其子树都未再遍历）
+     */
+    public long getDuplicateDirectoryCount() {
+        return duplicateDirectoryCount.get();
+    }
+
+    /**
+     * @return 因已经发现过而跳过的文件数
+     */
+    public long getDuplicateFileCount() {
+        return duplicateFileCount.get();
+    }
+
+    /**
+     * @return 按规则排除、未遍历的目录数
+     */
+    public long getExcludedDirectoryCount() {
+        return excludedDirectoryCount.get();
+    }
+
+    /**
+     * @return 遇到的指向文件的符号链接数（目标已处理过的同时计入重复文件数）
+     */
+    public long getFileLinkCount() {
+        return fileLinkCount.get();
+    }
+
+    public String getSummary() {
+        return "目录遍历: " + parallelism + " 线程，" + directoryCount.get() + " 个目录，"
+                + fileCount.get() + " 个文件，排除目录 " + excludedDirectoryCount.get() + " 个，跳过重复目录 " + duplicateDirectoryCount.get() + " 个、重复文件 "
+                + duplicateFileCount.get() + " 个、文件链接 " + fileLinkCount.get() + " 个，耗时 "
+                + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms";
+    }
+
+    // 记录条目的 (设备号, inode)，符号链接为目标的；首次遇到时返回 true；文件系统不提供 inode 时不去重
+    private boolean visit(ScanEntry entry) {
+        return entry.getInode() == 0 || visited.add(entry.getDevice(), entry.getInode());
+    }
+
+    // 目录中的一个条目：目录压入栈，文件交给回调
+    private void onEntry(ScanEntry entry, PendingDirectory parent, ArrayDeque<PendingDirectory> stack) {
+        if (entry.isDirectory()) {
+            ScanRules.State state = rules.enter(parent.state, entry.getName());
+            if (state == null) {
+                excludedDirectoryCount.incrementAndGet();
+                return;
+            }
+            if (!visit(entry)) {
+                duplicateDirectoryCount.incrementAndGet();
+                return;
+            }
+            stack.push(new PendingDirectory(entry.getFile(), state));
+        } else if (!parent.state.isExcluded()) {
+            if (entry.isSymbolicLink()) {
+                fileLinkCount.incrementAndGet();
+            }
+            // 符号链接的目标可能按实际路径只有一个链接，所有文件都要记录
+            if (!visit(entry)) {
+                duplicateFileCount.incrementAndGet();
+                return;
+            }
+            fileCount.incrementAndGet();
+            listener.onFile(entry);
+        }
+    }
+
+    // 待遍历的目录及其规则状态
+    private static final class PendingDirectory {
+        final File directory;
+        final ScanRules.State state;
+
+        PendingDirectory(File directory, ScanRules.State state) {
+            this.directory = directory;
+            this.state = state;
+        }
+    }
+
+    // 遍历一部分目录树：从起始目录开始，用显式栈深度优先遍历，栈中积压的目录拆分给空闲线程
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final PendingDirectory start;
+
+        DirectoryTask(PendingDirectory start) {
+            this.start = start;
+        }
+
+        @Override
+        protected void compute() {
+            ArrayDeque<PendingDirectory> stack = new ArrayDeque<>();
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            String[] names = new String[CHUNK_SIZE];
+            stack.push(start);
+            // 检查服务是否已被停止
+            while (!stack.isEmpty() && running.get()) {
+                scanDirectory(stack.pop(), stack, names);
+                // 栈底的目录离根最近，子树通常最大，优先拆分出去
+                while (stack.size() > 1 && getSurplusQueuedTaskCount() < SURPLUS_THRESHOLD) {
+                    DirectoryTask subtask = new DirectoryTask(stack.removeLast());
+                    subtask.fork();
+                    subtasks.add(subtask);
+                }
+            }
+
+            // 已拆分的子任务总要等待完成，取消时它们会很快返回
+            for (DirectoryTask subtask : subtasks) {
+                subtask.join();
+            }
+        }
+
+        // 读取一个目录，子目录压入栈
+        private void scanDirectory(PendingDirectory pending, ArrayDeque<PendingDirectory> stack, String[] names) {
+            File directory = pending.directory;
+            // 打开目录，无法读取时返回 null
+            DirectoryReader reader = fileSystem.openDirectory(directory);
+            if (reader == null) {
+                return;
+            }
+
+            try {
+                int count = reader.read(names);
+                if (count > 0) {
+                    directoryCount.incrementAndGet();
+                }
+                while (count > 0 && running.get()) {
+                    for (int i = 0; i < count && running.get(); i++) {
+                        ScanEntry entry = fileSystem.stat(new File(directory, names[i]));
+                        // 读取之后被删除，或无权访问
+                        if (entry != null) {
+                            onEntry(entry, pending, stack);
+                        }
+                    }
+                    count = reader.read(names);
+                }
+            } catch (IOException | SecurityException e) {
+                LogUtils.w(TAG, "无法访问目录: " + directory.getAbsolutePath(), e);
+            } finally {
+                closeQuietly(reader);
+            }
+        }
+    }
+
+    private static void closeQuietly(DirectoryReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // 忽略关闭异常
+        }
+    }
+}
+
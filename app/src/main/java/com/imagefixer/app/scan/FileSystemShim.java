@@ -0,0 +1,29 @@
+package com.imagefixer.app.scan;
+
+import java.io.File;
+
+/**
+ * 遍历使用的文件系统操作
+ * <p>
+ * 遍历只通过这两个方法访问文件系统：每个目录打开一次并按块读取名称，每个条目 stat 一次。
+ * 测试中可以包装实现来统计系统调用次数。
+ * </p>
+ */
+public interface FileSystemShim {
+    /**
+     * 打开目录，按块读取其中的条目名称
+     *
+     * @return 目录读取器，用完后关闭；目录不存在或无法读取时返回 null
+     */
+    DirectoryReader openDirectory(File directory);
+
+    /**
+     * 一次读取条目的类型、大小、修改时间、设备号、inode 和链接数
+     * <p>
+     * 符号链接读取其指向的目标的属性并标记为链接，只有符号链接需要第二次系统调用。
+     * </p>
+     *
+     * @return 条目属性；条目不存在或无法访问时返回 null
+     */
+    ScanEntry stat(File file);
+}
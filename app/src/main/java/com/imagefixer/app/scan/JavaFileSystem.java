@@ -0,0 +1,65 @@
+package com.imagefixer.app.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+/**
+ * 基于 java.nio.file 的实现，目录流式读取，每个条目读取一次属性
+ * <p>
+ * 支持 "unix" 属性视图时一次读取类型、大小、修改时间、设备号、inode 和链接数；
+ * 否则读取 {@link BasicFileAttributes}，inode 为0，遍历不去重。
+ * 需要 API 26，应用中使用 {@link PosixFileSystem}；这里用于在JVM上运行的测试。
+ * </p>
+ */
+public final class JavaFileSystem implements FileSystemShim {
+    private static final String UNIX_ATTRIBUTES = "unix:mode,size,lastModifiedTime,dev,ino,nlink";
+    // 文件类型位
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFDIR = 0040000;
+    private static final int S_IFREG = 0100000;
+    private static final int S_IFLNK = 0120000;
+
+    private volatile boolean unixView = true;
+
+    @Override
+    public DirectoryReader openDirectory(File directory) {
+        return NioDirectoryReader.open(directory);
+    }
+
+    @Override
+    public ScanEntry stat(File file) {
+        Path path = file.toPath();
+        try {
+            if (unixView) {
+                try {
+                    Map<String, Object> attributes = Files.readAttributes(path, UNIX_ATTRIBUTES,
+                            LinkOption.NOFOLLOW_LINKS);
+                    boolean symbolicLink = ((Integer) attributes.get("mode") & S_IFMT) == S_IFLNK;
+                    if (symbolicLink) {
+                        attributes = Files.readAttributes(path, UNIX_ATTRIBUTES);
+                    }
+                    int mode = (Integer) attributes.get("mode");
+                    return new ScanEntry(file, (mode & S_IFMT) == S_IFDIR, (mode & S_IFMT) == S_IFREG,
+                            symbolicLink, (Long) attributes.get("size"),
+                            ((FileTime) attributes.get("lastModifiedTime")).toMillis(),
+                            (Long) attributes.get("dev"), (Long) attributes.get("ino"),
+                            ((Number) attributes.get("nlink")).longValue());
+                } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                    unixView = false;
+                }
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new ScanEntry(file, attributes.isDirectory(), attributes.isRegularFile(),
+                    Files.isSymbolicLink(path), attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    0, 0, 1);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.imagefixer.app.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * 基于 {@link DirectoryStream} 的流式读取，底层按需读取目录项，内存占用与目录大小无关
+ * <p>
+ * 需要 API 26。
+ * </p>
+ */
+final class NioDirectoryReader implements DirectoryReader {
+    private final DirectoryStream<Path> stream;
+    private final Iterator<Path> iterator;
+
+    private NioDirectoryReader(DirectoryStream<Path> stream) {
+        this.stream = stream;
+        this.iterator = stream.iterator();
+    }
+
+    /**
+     * @return 目录不存在或无法读取时返回 null
+     */
+    static DirectoryReader open(File directory) {
+        try {
+            return new NioDirectoryReader(Files.newDirectoryStream(directory.toPath()));
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int read(String[] names) throws IOException {
+        int count = 0;
+        try {
+            while (count < names.length && iterator.hasNext()) {
+                names[count++] = iterator.next().getFileName().toString();
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
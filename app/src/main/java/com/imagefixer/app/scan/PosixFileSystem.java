@@ -0,0 +1,53 @@
+package com.imagefixer.app.scan;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+
+import java.io.File;
+
+/**
+ * 基于 {@link Os#lstat} 的实现，一个条目一次系统调用
+ * <p>
+ * java.nio.file 的属性读取需要 API 26，这里直接使用 API 21 起可用的 Os.lstat，
+ * 一次返回类型、大小、修改时间、设备号和 inode；只有符号链接再调用一次 {@link Os#stat} 读取目标。目录在 API 26 起用 {@link java.nio.file.DirectoryStream} 流式读取，
+ * 更早的版本一次列出。
+ * </p>
+ */
+public final class PosixFileSystem implements FileSystemShim {
+
+    @Override
+    public DirectoryReader openDirectory(File directory) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return NioDirectoryReader.open(directory);
+        }
+        return ArrayDirectoryReader.open(directory);
+    }
+
+    @Override
+    public ScanEntry stat(File file) {
+        StructStat stat;
+        boolean symbolicLink;
+        try {
+            stat = Os.lstat(file.getPath());
+            symbolicLink = OsConstants.S_ISLNK(stat.st_mode);
+            if (symbolicLink) {
+                stat = Os.stat(file.getPath());
+            }
+        } catch (ErrnoException e) {
+            // 不存在、无权访问，或链接目标不存在
+            return null;
+        }
+        long lastModified;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            // 与 File.lastModified() 一致的毫秒精度
+            lastModified = stat.st_mtim.tv_sec * 1000 + stat.st_mtim.tv_nsec / 1000000;
+        } else {
+            lastModified = stat.st_mtime * 1000;
+        }
+        return new ScanEntry(file, OsConstants.S_ISDIR(stat.st_mode), OsConstants.S_ISREG(stat.st_mode),
+                symbolicLink, stat.st_size, lastModified, stat.st_dev, stat.st_ino, stat.st_nlink);
+    }
+}
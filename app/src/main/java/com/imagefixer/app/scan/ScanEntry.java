@@ -0,0 +1,88 @@
+package com.imagefixer.app.scan;
+
+import java.io.File;
+
+/**
+ * 遍历发现的一个条目及其属性
+ * <p>
+ * 类型、大小和修改时间在遍历时由一次 stat 读取（见 {@link FileSystemShim#stat}），
+ * 随条目经流水线传给处理线程，处理时不再调用 {@link File#isFile()}、{@link File#length()}、
+ * {@link File#lastModified()} 等方法，每个方法在FUSE存储上都是一次单独的系统调用。
+ * 设备号和 inode 用于识别通过不同路径到达的同一个目录或文件。
+ * </p>
+ */
+public final class ScanEntry {
+    private final File file;
+    private final boolean directory;
+    private final boolean regularFile;
+    private final boolean symbolicLink;
+    private final long size;
+    private final long lastModified;
+    private final long device;
+    private final long inode;
+    private final long linkCount;
+
+    /**
+     * @param file         文件
+     * @param directory    是否为目录
+     * @param regularFile  是否为普通文件
+     * @param symbolicLink 路径本身是否为符号链接（其余属性为链接目标的）
+     * @param size         文件大小（字节）
+     * @param lastModified 修改时间（毫秒时间戳）
+     * @param device       设备号
+     * @param inode        inode，文件系统不提供时为0
+     * @param linkCount    硬链接数
+     */
+    public ScanEntry(File file, boolean directory, boolean regularFile, boolean symbolicLink, long size,
+            long lastModified, long device, long inode, long linkCount) {
+        this.file = file;
+        this.directory = directory;
+        this.regularFile = regularFile;
+        this.symbolicLink = symbolicLink;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.device = device;
+        this.inode = inode;
+        this.linkCount = linkCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getName() {
+        return file.getName();
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public boolean isRegularFile() {
+        return regularFile;
+    }
+
+    public boolean isSymbolicLink() {
+        return symbolicLink;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getDevice() {
+        return device;
+    }
+
+    public long getInode() {
+        return inode;
+    }
+
+    public long getLinkCount() {
+        return linkCount;
+    }
+}
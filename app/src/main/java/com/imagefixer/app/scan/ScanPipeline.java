@@ -0,0 +1,205 @@
+package com.imagefixer.app.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发现与处理之间的有界流水线
+ * <p>
+ * 遍历线程把发现的条目放入有界队列，处理线程同时从队列中按批取出处理，不必等整个目录树遍历完。
+ * 队列满时遍历线程阻塞等待（背压），内存占用与目录树大小无关。遍历结束后调用 {@link #finish()}，
+ * 处理线程处理完剩余条目即返回。取消（running 变为 false）时双方都在一个轮询间隔内退出。
+ * 可以有多个处理线程同时调用 {@link #drain}，每个条目只交给其中一个。
+ * </p>
+ * <p>
+ * 记录首个命中（如第一个被修正的文件）出现的时间和整体吞吐量，用于对比流水线前后的体验。
+ * </p>
+ *
+ * @param <T> 条目类型
+ */
+public final class ScanPipeline<T> {
+    // 阻塞操作检查取消状态的间隔
+    private static final long POLL_INTERVAL_MS = 100;
+
+    /**
+     * 批处理回调
+     */
+    public interface BatchProcessor<T> {
+        /**
+         * 处理一批条目
+         *
+         * @return 这一批中的命中数（如修正的文件数）
+         */
+        int process(List<T> batch);
+    }
+
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final AtomicBoolean running;
+    // 遍历结束的标记
+    private final Object end = new Object();
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong producedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong producerBlockedNanos = new AtomicLong();
+    private volatile long firstProcessedNanos = -1;
+    private volatile long firstHitNanos = -1;
+    private volatile long finishNanos = -1;
+
+    /**
+     * @param capacity  队列容量
+     * @param batchSize 每批最多处理的条目数
+     * @param running   为 false 时双方尽快退出
+     */
+    public ScanPipeline(int capacity, int batchSize, AtomicBoolean running) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.running = running;
+    }
+
+    /**
+     * 放入一个条目，队列满时阻塞；可以在多个遍历线程中并发调用
+     *
+     * @return 已放入返回 true；已取消返回 false
+     */
+    public boolean put(T item) {
+        if (queue.offer(item)) {
+            producedCount.incrementAndGet();
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            while (running.get()) {
+                if (queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    producedCount.incrementAndGet();
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            producerBlockedNanos.addAndGet(System.nanoTime() - start);
+        }
+        return false;
+    }
+
+    /**
+     * 遍历结束，所有 {@link #put} 调用都返回后调用一次
+     */
+    public void finish() {
+        try {
+            while (running.get()) {
+                if (queue.offer(end, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在当前线程中处理条目，直到遍历结束且队列为空，或被取消
+     * <p>
+     * 每次取出当前队列中已有的条目（最多一批）立即处理，不等待凑满一批。
+     * 多个线程同时调用时，取到结束标记的线程把它放回队列，其它线程随后也能看到。
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+    public void drain(BatchProcessor<T> processor) {
+        List<Object> taken = new ArrayList<>(batchSize);
+        List<T> batch = new ArrayList<>(batchSize);
+        try {
+            boolean finished = false;
+            while (!finished && running.get()) {
+                Object first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                taken.add(first);
+                queue.drainTo(taken, batchSize - 1);
+                for (Object item : taken) {
+                    if (item == end) {
+                        finished = true;
+                    } else {
+                        batch.add((T) item);
+                    }
+                }
+                taken.clear();
+                if (finished) {
+                    // 结束标记之后没有其它条目，队列一定有空位
+                    queue.offer(end);
+                }
+                if (!batch.isEmpty()) {
+                    process(processor, batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finishNanos = System.nanoTime();
+        }
+    }
+
+    private void process(BatchProcessor<T> processor, List<T> batch) {
+        int hits = processor.process(batch);
+        long now = System.nanoTime();
+        if (firstProcessedNanos < 0) {
+            firstProcessedNanos = now - startNanos;
+        }
+        if (hits > 0) {
+            hitCount.addAndGet(hits);
+            if (firstHitNanos < 0) {
+                firstHitNanos = now - startNanos;
+            }
+        }
+        processedCount.addAndGet(batch.size());
+    }
+
+    public long getProducedCount() {
+        return producedCount.get();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return 从创建流水线到第一个命中的纳秒数；没有命中时返回 -1
+     */
+    public long getFirstHitNanos() {
+        return firstHitNanos;
+    }
+
+    /**
+     * @return 每秒处理的条目数
+     */
+    public double getThroughput() {
+        long end = finishNanos >= 0 ? finishNanos : System.nanoTime();
+        return processedCount.get() * 1e9 / Math.max(1, end - startNanos);
+    }
+
+    public String getSummary() {
+        long end = finishNanos >= 0 ? finishNanos : System.nanoTime();
+        return "流水线: 发现 " + producedCount.get() + " 个，处理 " + processedCount.get() + " 个，命中 "
+                + hitCount.get() + " 个；首个处理 " + toMillis(firstProcessedNanos) + "，首个命中 "
+                + toMillis(firstHitNanos) + "，总耗时 " + toMillis(end - startNanos)
+                + String.format("，%.1f 个/秒", getThroughput())
+                + "；遍历因队列满等待 " + toMillis(producerBlockedNanos.get());
+    }
+
+    private static String toMillis(long nanos) {
+        return nanos < 0 ? "-" : TimeUnit.NANOSECONDS.toMillis(nanos) + "ms";
+    }
+}
@@ -0,0 +1,360 @@
+package com.imagefixer.app.scan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 扫描根目录和目录包含/排除规则
+ * <p>
+ * 规则在加载时编译成按路径段组织的前缀树，遍历时每进入一个目录，从父目录的状态按目录名前进一步
+ * （{@link #enter}），不拼接、不比较完整路径；被排除且其下不可能再被包含的子树直接剪掉。
+ * </p>
+ * <p>
+ * 配置每行一条，空行和以 # 开头的行被忽略：
+ * <pre>
+ * # 扫描根目录，可以有多个；没有时由调用方决定（通常为外部存储根目录）
+ * root /storage/emulated/0
+ * # 排除和包含目录
+ * exclude Android
+ * include /Android/media
+ * exclude /DCIM/Screenshots*
+ * </pre>
+ * 模式以 / 分隔路径段：以 / 开头的相对扫描根目录匹配（路径前缀），否则在任意深度匹配；
+ * 路径段中可以使用 * 和 ?，单独的 ** 匹配任意多层目录。规则匹配一个目录时也作用于其下的整个子树，
+ * 一个目录同时被多条规则匹配（包括通过父目录匹配）时以最后一条为准：后面的 include 可以重新包含被排除的子目录，
+ * 前面的 include 不能重新包含后面的 exclude 排除的子树。
+ * 内置规则 {@link #DEFAULT_RULES}（隐藏目录、Android、Download）总在配置文件的规则之前。
+ * 规则只作用于目录，被排除目录中的文件不处理。
+ * </p>
+ */
+public final class ScanRules {
+    /**
+     * 内置规则，与原来写死的排除条件一致
+     */
+    public static final String DEFAULT_RULES = "exclude .*\nexclude Android\nexclude Download\n";
+
+    private static final String ANY_DEPTH = "**";
+
+    private final List<File> roots;
+    private final State rootState;
+
+    private ScanRules(List<File> roots, Node root) {
+        this.roots = roots;
+        this.rootState = new State(addClosure(null, root).toArray(new Node[0]), false, -1);
+    }
+
+    /**
+     * @return 只包含内置规则、没有配置根目录的规则
+     */
+    public static ScanRules defaults() {
+        try {
+            return parse(new StringReader(""));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 读取配置，内置规则在前
+     *
+     * @param reader 配置内容，由调用方关闭
+     * @throws IOException              读取失败
+     * @throws IllegalArgumentException 配置有误（消息中包含行号）
+     */
+    public static ScanRules parse(Reader reader) throws IOException {
+        Compiler compiler = new Compiler();
+        compiler.addLines(new StringReader(DEFAULT_RULES));
+        compiler.addLines(reader);
+        compiler.root.computeIncludeBelow();
+        return new ScanRules(Collections.unmodifiableList(compiler.roots), compiler.root);
+    }
+
+    /**
+     * @return 配置的扫描根目录；没有配置时为空
+     */
+    public List<File> getRoots() {
+        return roots;
+    }
+
+    /**
+     * @return 扫描根目录的状态，根目录本身总是包含的
+     */
+    public State getRootState() {
+        return rootState;
+    }
+
+    /**
+     * 进入子目录
+     *
+     * @param parent 父目录的状态
+     * @param name   子目录名
+     * @return 子目录的状态；子目录及其下都被排除时返回 null，不需要再遍历
+     */
+    public State enter(State parent, String name) {
+        List<Node> next = null;
+        for (Node node : parent.nodes) {
+            Node child = node.literals.get(name);
+            if (child != null) {
+                next = addClosure(next, child);
+            }
+            for (int i = 0; i < node.globs.size(); i++) {
+                if (globMatches(node.globs.get(i), name)) {
+                    next = addClosure(next, node.globNodes.get(i));
+                }
+            }
+            if (node.anyDepth) {
+                next = addClosure(next, node);
+            }
+        }
+        if (next == null) {
+            // 没有规则再能匹配，继承父目录
+            return parent.excluded ? null : State.INCLUDED;
+        }
+
+        // 只有比决定父目录状态的规则更靠后的规则才能改变状态，
+        // 例如 "include Camera" 在 "exclude /DCIM" 之前时，/DCIM/Camera 仍被排除
+        int rule = parent.rule;
+        boolean excluded = parent.excluded;
+        int includeBelow = -1;
+        for (Node node : next) {
+            if (node.rule > rule) {
+                rule = node.rule;
+                excluded = !node.include;
+            }
+            includeBelow = Math.max(includeBelow, node.includeBelow);
+        }
+        // 其下的包含规则都不比当前规则靠后时，整个子树都被排除
+        if (excluded && includeBelow <= rule) {
+            return null;
+        }
+        // 最常见的情况：只有任意深度匹配的节点仍然有效，状态与父目录相同
+        if (rule == parent.rule && sameNodes(parent.nodes, next)) {
+            return parent;
+        }
+        return new State(next.toArray(new Node[0]), excluded, rule);
+    }
+
+    // 把配置逐行编译进前缀树
+    private static final class Compiler {
+        final List<File> roots = new ArrayList<>();
+        final Node root = new Node();
+        int ruleCount;
+
+        void addLines(Reader reader) throws IOException {
+            BufferedReader lines = new BufferedReader(reader);
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int space = indexOfWhitespace(line);
+                String keyword = space > 0 ? line.substring(0, space) : line;
+                String value = space > 0 ? line.substring(space + 1).trim() : "";
+                try {
+                    if (value.isEmpty()) {
+                        throw new IllegalArgumentException("缺少路径或模式");
+                    }
+                    switch (keyword) {
+                        case "root":
+                            roots.add(new File(value));
+                            break;
+                        case "include":
+                            addRule(value, true);
+                            break;
+                        case "exclude":
+                            addRule(value, false);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("未知的关键字: " + keyword);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("第 " + lineNumber + " 行: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        void addRule(String pattern, boolean include) {
+            List<String> segments = new ArrayList<>();
+            // 不以 / 开头的模式在任意深度匹配
+            if (!pattern.startsWith("/")) {
+                segments.add(ANY_DEPTH);
+            }
+            for (String segment : pattern.split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                // 连续的 ** 等价于一个
+                if (segment.equals(ANY_DEPTH) && !segments.isEmpty()
+                        && segments.get(segments.size() - 1).equals(ANY_DEPTH)) {
+                    continue;
+                }
+                segments.add(segment);
+            }
+            if (segments.isEmpty() || (segments.size() == 1 && segments.get(0).equals(ANY_DEPTH))) {
+                throw new IllegalArgumentException("模式无效: " + pattern);
+            }
+            Node node = root;
+            for (String segment : segments) {
+                node = node.child(segment);
+            }
+            // 同一模式出现多次时以最后一条为准
+            node.rule = ruleCount++;
+            node.include = include;
+        }
+    }
+
+    /**
+     * 一个目录在规则前缀树中的位置
+     */
+    public static final class State {
+        // 没有规则再能匹配、且包含的目录共用的状态；其下不再有规则，规则序号无关紧要
+        static final State INCLUDED = new State(new Node[0], false, -1);
+
+        final Node[] nodes;
+        final boolean excluded;
+        // 决定此状态的最后一条规则的序号，-1 表示没有规则匹配过
+        final int rule;
+
+        State(Node[] nodes, boolean excluded, int rule) {
+            this.nodes = nodes;
+            this.excluded = excluded;
+            this.rule = rule;
+        }
+
+        /**
+         * @return 目录本身被排除（其中的文件不处理），只是因为其下还有被包含的目录才继续遍历
+         */
+        public boolean isExcluded() {
+            return excluded;
+        }
+    }
+
+    // 前缀树节点，一个节点对应一个路径段
+    static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        final List<String> globs = new ArrayList<>();
+        final List<Node> globNodes = new ArrayList<>();
+        // 以 ** 结尾的路径到达的节点，匹配任意多层目录（包括零层）
+        Node anyDepthChild;
+        boolean anyDepth;
+        // 在此结束的最后一条规则的序号，-1 表示没有规则在此结束
+        int rule = -1;
+        boolean include;
+        // 其下最后一条包含规则的序号，-1 表示没有
+        int includeBelow = -1;
+
+        Node child(String segment) {
+            if (segment.equals(ANY_DEPTH)) {
+                if (anyDepthChild == null) {
+                    anyDepthChild = new Node();
+                    anyDepthChild.anyDepth = true;
+                }
+                return anyDepthChild;
+            }
+            if (segment.indexOf('*') < 0 && segment.indexOf('?') < 0) {
+                Node child = literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    literals.put(segment, child);
+                }
+                return child;
+            }
+            int index = globs.indexOf(segment);
+            if (index >= 0) {
+                return globNodes.get(index);
+            }
+            Node child = new Node();
+            globs.add(segment);
+            globNodes.add(child);
+            return child;
+        }
+
+        // 返回本节点或其下最后一条包含规则的序号，没有时返回 -1
+        int computeIncludeBelow() {
+            int own = rule >= 0 && include ? rule : -1;
+            // 任意深度节点上的规则也匹配更深的目录
+            int below = anyDepth ? own : -1;
+            for (Node child : literals.values()) {
+                below = Math.max(below, child.computeIncludeBelow());
+            }
+            for (Node child : globNodes) {
+                below = Math.max(below, child.computeIncludeBelow());
+            }
+            if (anyDepthChild != null) {
+                below = Math.max(below, anyDepthChild.computeIncludeBelow());
+            }
+            includeBelow = below;
+            return Math.max(below, own);
+        }
+    }
+
+    // 加入节点及其 ** 子节点（匹配零层目录）
+    private static List<Node> addClosure(List<Node> nodes, Node node) {
+        if (nodes == null) {
+            nodes = new ArrayList<>(4);
+        }
+        while (node != null && !nodes.contains(node)) {
+            nodes.add(node);
+            node = node.anyDepthChild;
+        }
+        return nodes;
+    }
+
+    private static boolean sameNodes(Node[] nodes, List<Node> next) {
+        if (nodes.length != next.size()) {
+            return false;
+        }
+        for (Node node : nodes) {
+            if (!next.contains(node)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 路径段通配符匹配：* 匹配任意多个字符，? 匹配一个字符
+    static boolean globMatches(String glob, String name) {
+        int g = 0;
+        int n = 0;
+        int star = -1;
+        int starName = 0;
+        while (n < name.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == name.charAt(n))) {
+                g++;
+                n++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                starName = n;
+            } else if (star >= 0) {
+                g = star + 1;
+                n = ++starName;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    private static int indexOfWhitespace(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,407 @@
+package com.imagefixer.app.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * 日期时间计算工具类
+ * <p>
+ * 不借助 Calendar / SimpleDateFormat，直接用整数运算把本地日期时间字段换算为毫秒时间戳，
+ * 换算过程不分配对象。字段越界时与宽松模式（lenient）的 SimpleDateFormat 行为一致，
+ * 例如 13 月会进位到下一年，0 日表示上个月的最后一天。
+ * </p>
+ * <p>
+ * 本地时间到UTC的换算按自然日缓存时区偏移量，夏令时切换当天单独计算。
+ * 换算使用保存在字段中的默认时区，设备时区改变后由调用方通过 {@link #refreshTimeZone()} 重新读取，
+ * 缓存属于刷新时读取的时区对象，刷新后第一次换算时换用新的缓存。
+ * 所有方法都是线程安全的。
+ * </p>
+ */
+public class DateTimeUtils {
+    /** 无效结果的哨兵值 */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    // 1582-10-15（格里高利历启用日）的本地毫秒数，早于此日期时 Calendar 使用儒略历
+    private static final long GREGORIAN_CUTOVER_LOCAL_MILLIS = -12219292800000L;
+
+    // 默认时区保存在字段中，TimeZone.getDefault() 每次调用都会复制对象；设备时区改变后由 refreshTimeZone() 更新
+    private static volatile TimeZone zone = TimeZone.getDefault();
+
+    // EXIF日期格式: "2023:01:01 12:30:45"
+    private static final String EXIF_DATE_FORMAT = "yyyy:MM:dd HH:mm:ss";
+    private static final int EXIF_DATE_LENGTH = 19;
+    // ISO 8601日期时间包含到分钟: "2023-01-01T12:30"；只有日期: "2023-01-01"；只有年月: "2023-01"
+    private static final int ISO_MINUTE_LENGTH = 16;
+    private static final int ISO_DATE_LENGTH = 10;
+    private static final int ISO_MONTH_LENGTH = 7;
+
+    // 时区偏移量缓存，按自然日（epochDay）取模存放，容量为2的幂
+    private static final int OFFSET_CACHE_SIZE = 1024;
+    // 当前时区的偏移量缓存，时区改变时整体替换
+    private static volatile ZoneOffsetCache offsetCache;
+
+    // 非定宽EXIF字符串的兼容路径，每个线程复用一个 SimpleDateFormat
+    private static final ThreadLocal<SimpleDateFormat> EXIF_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(EXIF_DATE_FORMAT, Locale.getDefault());
+        }
+    };
+
+    // 儒略历日期的慢速路径，每个线程复用一个 Calendar
+    private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return new GregorianCalendar();
+        }
+    };
+
+    private DateTimeUtils() {
+    }
+
+    /**
+     * 重新读取设备的默认时区
+     * <p>
+     * 在每次扫描开始时和收到 {@code ACTION_TIMEZONE_CHANGED} 广播时调用，之后的换算使用新的时区。
+     * </p>
+     */
+    public static void refreshTimeZone() {
+        zone = TimeZone.getDefault();
+    }
+
+    /**
+     * 解析EXIF格式的日期时间字符串
+     * <p>
+     * 对定宽的 "yyyy:MM:dd HH:mm:ss" 按位置直接读取数字并换算，不创建任何对象；
+     * 与 SimpleDateFormat 一样忽略第19个字符之后的内容（如时区、毫秒后缀）。
+     * 其它写法（如位数不足、含空格的占位值）交给 SimpleDateFormat 处理，结果与原实现一致。
+     * </p>
+     *
+     * @param dateString EXIF格式的日期时间字符串
+     * @return 毫秒时间戳；若解析失败则返回 {@link #INVALID}
+     */
+    public static long parseExifDateTime(CharSequence dateString) {
+        if (dateString == null) {
+            return INVALID;
+        }
+        if (isFixedWidthExifDate(dateString)) {
+            return toEpochMillis(
+                    digits(dateString, 0, 4),
+                    digits(dateString, 5, 2),
+                    digits(dateString, 8, 2),
+                    digits(dateString, 11, 2),
+                    digits(dateString, 14, 2),
+                    digits(dateString, 17, 2));
+        }
+        try {
+            // 与定宽路径使用同一个时区，进程运行期间设备时区可能改变
+            SimpleDateFormat format = EXIF_FORMAT.get();
+            format.setTimeZone(zone);
+            return format.parse(dateString.toString()).getTime();
+        } catch (ParseException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * 解析ISO 8601格式的日期时间，如视频 ©day、XMP 中的 "2023-01-01T12:30:45+08:00"
+     * <p>
+     * 日期和时间之间可以是 'T' 或空格；秒可以省略，也可以带小数；时区可以是 Z、±HH:MM、±HHMM 或 ±HH，
+     * 没有时区时按本地时间换算。只有日期（"2023-01-01"）或年月（"2023-01"）时按本地时间当天（当月1日）零点换算，
+     * 与文件名中只有日期时的处理一致。
+     * </p>
+     *
+     * @param text ISO 8601格式的日期时间
+     * @return 毫秒时间戳；格式不符时返回 {@link #INVALID}
+     */
+    public static long parseIsoDateTime(CharSequence text) {
+        int length = text.length();
+        if (length == ISO_DATE_LENGTH || length == ISO_MONTH_LENGTH) {
+            return parseIsoDate(text, length);
+        }
+        if (length < ISO_MINUTE_LENGTH
+                || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || (text.charAt(10) != 'T' && text.charAt(10) != ' ') || text.charAt(13) != ':') {
+            return INVALID;
+        }
+        int year = isoDigits(text, 0, 4);
+        int month = isoDigits(text, 5, 2);
+        int day = isoDigits(text, 8, 2);
+        int hour = isoDigits(text, 11, 2);
+        int minute = isoDigits(text, 14, 2);
+        int second = 0;
+        int i = ISO_MINUTE_LENGTH;
+        if (i < length && text.charAt(i) == ':') {
+            second = isoDigits(text, i + 1, 2);
+            i += 3;
+            if (i < length && text.charAt(i) == '.') {
+                i++;
+                while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                    i++;
+                }
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return INVALID;
+        }
+        if (i == length) {
+            return toEpochMillis(year, month, day, hour, minute, second);
+        }
+
+        char sign = text.charAt(i);
+        int offsetMinutes;
+        if (sign == 'Z' && i + 1 == length) {
+            offsetMinutes = 0;
+        } else if (sign == '+' || sign == '-') {
+            int zoneLength = length - i - 1;
+            int offsetHours = isoDigits(text, i + 1, 2);
+            int offsetRest;
+            if (zoneLength == 2) {
+                offsetRest = 0;
+            } else if (zoneLength == 4) {
+                offsetRest = isoDigits(text, i + 3, 2);
+            } else if (zoneLength == 5 && text.charAt(i + 3) == ':') {
+                offsetRest = isoDigits(text, i + 4, 2);
+            } else {
+                return INVALID;
+            }
+            if (offsetHours < 0 || offsetRest < 0) {
+                return INVALID;
+            }
+            offsetMinutes = offsetHours * 60 + offsetRest;
+            if (sign == '-') {
+                offsetMinutes = -offsetMinutes;
+            }
+        } else {
+            return INVALID;
+        }
+        return toUtcEpochMillis(year, month, day, hour, minute, second) - offsetMinutes * MILLIS_PER_MINUTE;
+    }
+
+    // 只有日期或年月，按本地时间零点换算
+    private static long parseIsoDate(CharSequence text, int length) {
+        if (text.charAt(4) != '-' || (length == ISO_DATE_LENGTH && text.charAt(7) != '-')) {
+            return INVALID;
+        }
+        int year = isoDigits(text, 0, 4);
+        int month = isoDigits(text, 5, 2);
+        int day = length == ISO_DATE_LENGTH ? isoDigits(text, 8, 2) : 1;
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return INVALID;
+        }
+        return toEpochMillis(year, month, day, 0, 0, 0);
+    }
+
+    /**
+     * 将本地时区的日期时间字段换算为毫秒时间戳
+     * <p>
+     * 使用最近一次 {@link #refreshTimeZone()} 读取的默认时区，设备时区改变（用户修改设置或跨时区旅行）后需先刷新。
+     * </p>
+     *
+     * @param year   年
+     * @param month  月（1-12，越界时进位）
+     * @param day    日（越界时进位）
+     * @param hour   时
+     * @param minute 分
+     * @param second 秒
+     * @return 毫秒时间戳
+     */
+    public static long toEpochMillis(int year, int month, int day, int hour, int minute, int second) {
+        long localMillis = toLocalMillis(year, month, day, hour, minute, second);
+        TimeZone zone = DateTimeUtils.zone;
+        if (localMillis < GREGORIAN_CUTOVER_LOCAL_MILLIS) {
+            // 1582年以前的日期极少出现，交给 Calendar 按儒略历计算
+            Calendar calendar = CALENDAR.get();
+            calendar.setTimeZone(zone);
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, minute, second);
+            return calendar.getTimeInMillis();
+        }
+        return localToUtc(localMillis, zone);
+    }
+
+    /**
+     * 将UTC的日期时间字段换算为毫秒时间戳（前推格里高利历，不经过本地时区）
+     * <p>
+     * 用于自带时区的时间，如视频中ISO 8601格式的录制时间，调用方再减去其中的时区偏移量。
+     * </p>
+     */
+    public static long toUtcEpochMillis(int year, int month, int day, int hour, int minute, int second) {
+        return toLocalMillis(year, month, day, hour, minute, second);
+    }
+
+    /**
+     * 将日期时间字段换算为"本地毫秒数"（即把本地时间当作UTC时间计算出的毫秒数）
+     */
+    static long toLocalMillis(int year, int month, int day, int hour, int minute, int second) {
+        // 月份越界时进位到年
+        long monthIndex = month - 1L;
+        long yearCarry = floorDiv(monthIndex, 12);
+        long y = year + yearCarry;
+        int m = (int) (monthIndex - yearCarry * 12) + 1;
+        long epochDay = daysFromCivil(y, m, 1) + (day - 1L);
+        return epochDay * MILLIS_PER_DAY
+                + hour * MILLIS_PER_HOUR
+                + minute * MILLIS_PER_MINUTE
+                + second * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * 将本地毫秒数换算为UTC毫秒时间戳
+     * <p>
+     * 先按标准时间估算偏移量，再用估算出的时刻校验一次；夏令时切换点附近两次结果不一致时以第二次为准，
+     * 与 Calendar 在夏令时缺口、重叠时段的处理方式一致。
+     * </p>
+     */
+    static long localToUtc(long localMillis, TimeZone zone) {
+        DayOffset[] days = offsetCache(zone);
+        long epochDay = floorDiv(localMillis, MILLIS_PER_DAY);
+        int index = (int) (epochDay & (OFFSET_CACHE_SIZE - 1));
+        DayOffset cached = days[index];
+        if (cached == null || cached.epochDay != epochDay) {
+            cached = new DayOffset(epochDay, zone);
+            // 多线程同时写入同一位置时以最后一次为准，DayOffset 不可变，读到哪个都是正确的
+            days[index] = cached;
+        }
+        if (cached.uniform) {
+            return localMillis - cached.offset;
+        }
+        // 夏令时切换当天逐个时刻计算
+        return computeLocalToUtc(localMillis, zone);
+    }
+
+    private static long computeLocalToUtc(long localMillis, TimeZone zone) {
+        int offset = zone.getOffset(localMillis - zone.getRawOffset());
+        long utcMillis = localMillis - offset;
+        int checkedOffset = zone.getOffset(utcMillis);
+        return checkedOffset == offset ? utcMillis : localMillis - checkedOffset;
+    }
+
+    // 取得指定时区的偏移量缓存；时区对象只在刷新时更换，按引用比较即可，不是同一个对象时换用新的缓存
+    private static DayOffset[] offsetCache(TimeZone zone) {
+        ZoneOffsetCache cache = offsetCache;
+        if (cache == null || cache.zone != zone) {
+            // 并发替换时以最后一次为准，各线程用的都是与自己的时区一致的缓存
+            cache = new ZoneOffsetCache(zone);
+            offsetCache = cache;
+        }
+        return cache.days;
+    }
+
+    /**
+     * 计算公历日期距 1970-01-01 的天数（前推格里高利历）
+     */
+    static long daysFromCivil(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static boolean isFixedWidthExifDate(CharSequence s) {
+        if (s.length() < EXIF_DATE_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_DATE_LENGTH; i++) {
+            char c = s.charAt(i);
+            switch (i) {
+                case 4:
+                case 7:
+                case 13:
+                case 16:
+                    if (c != ':') {
+                        return false;
+                    }
+                    break;
+                case 10:
+                    if (c != ' ') {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (c < '0' || c > '9') {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private static int digits(CharSequence s, int pos, int count) {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    // 读取定长的十进制数字，越界或含非数字字符时返回 -1
+    private static int isoDigits(CharSequence s, int pos, int count) {
+        if (pos + count > s.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // 向下取整的除法（Math.floorDiv 在 API 24 以下不可用）
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+
+    // 一个时区的按日偏移量缓存
+    private static final class ZoneOffsetCache {
+        final TimeZone zone;
+        final DayOffset[] days = new DayOffset[OFFSET_CACHE_SIZE];
+
+        ZoneOffsetCache(TimeZone zone) {
+            this.zone = zone;
+        }
+    }
+
+    /**
+     * 某个自然日的时区偏移量
+     * <p>
+     * 分别计算当天起止时刻的偏移量，两者相同则认为全天一致（uniform），否则当天包含夏令时切换。
+     * </p>
+     */
+    private static final class DayOffset {
+        final long epochDay;
+        final int offset;
+        final boolean uniform;
+
+        DayOffset(long epochDay, TimeZone zone) {
+            long dayStart = epochDay * MILLIS_PER_DAY;
+            int startOffset = (int) (dayStart - computeLocalToUtc(dayStart, zone));
+            long dayEnd = dayStart + MILLIS_PER_DAY - 1;
+            int endOffset = (int) (dayEnd - computeLocalToUtc(dayEnd, zone));
+            this.epochDay = epochDay;
+            this.offset = startOffset;
+            this.uniform = startOffset == endOffset;
+        }
+    }
+}
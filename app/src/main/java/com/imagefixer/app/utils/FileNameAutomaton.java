@@ -0,0 +1,391 @@
+package com.imagefixer.app.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 文件名多模式确定有限自动机（DFA）
+ * <p>
+ * 把所有文件名模板（{@link FileNameTemplate}，从文件名开头匹配）和通用规则的"必要条件"
+ * （如"存在连续8位数字"，可出现在任意位置）合并编译成一个DFA。每个文件名只需从左到右扫描一遍，
+ * 就能得到所有模式的匹配结果（按模式序号排列的位掩码），耗时与模式数量无关。
+ * </p>
+ * <p>
+ * 字符按类别处理：数字为一类，模式中出现过的每个字面字符各为一类，其余字符为一类。
+ * 构建完成后只读，可在多线程间共享。最多支持 {@value #MAX_PATTERNS} 个模式。
+ * </p>
+ */
+final class FileNameAutomaton {
+    /** 最多支持的模式数量（位掩码为 long） */
+    static final int MAX_PATTERNS = 64;
+
+    // DFA状态数量上限，超出时说明模板过多或过于复杂
+    private static final int MAX_STATES = 8192;
+
+    // 与正则表达式 \s 相同的空白字符集合
+    static final String WHITESPACE = " \t\n\u000B\f\r";
+
+    // 字符类别：0 为数字，1 为其它字符，2 起为各字面字符
+    private static final int DIGIT_CLASS = 0;
+    private static final int OTHER_CLASS = 1;
+
+    private final byte[] asciiClasses = new byte[128];
+    private final char[] extraChars;
+    private final int[] extraClasses;
+    private final int classCount;
+
+    // transitions[row + class] 为下一状态的行起点（状态序号 * classCount），-1 表示死状态；
+    // 预先乘好行宽，扫描时每个字符只需一次加法和一次读取
+    private final int[] transitions;
+    // transitionMasks[row + class]：经过该转移进入下一状态时确定匹配的模式（带任意后缀的模板、任意位置的通用条件）
+    private final long[] transitionMasks;
+    // 在某状态结束时匹配的模式，按状态序号存放
+    private final long[] endMasks;
+
+    private FileNameAutomaton(Builder builder) {
+        // 收集所有字面字符，建立字符类别表
+        TreeSet<Character> literals = new TreeSet<>();
+        for (Pattern pattern : builder.patterns) {
+            for (Step step : pattern.steps) {
+                for (int i = 0; i < step.chars.length(); i++) {
+                    literals.add(step.chars.charAt(i));
+                }
+            }
+        }
+        Arrays.fill(asciiClasses, (byte) OTHER_CLASS);
+        for (char c = '0'; c <= '9'; c++) {
+            asciiClasses[c] = DIGIT_CLASS;
+        }
+        List<Character> extra = new ArrayList<>();
+        int next = 2;
+        Map<Character, Integer> classOf = new HashMap<>();
+        for (char c : literals) {
+            classOf.put(c, next);
+            if (c < 128) {
+                asciiClasses[c] = (byte) next;
+            } else {
+                extra.add(c);
+            }
+            next++;
+        }
+        classCount = next;
+        extraChars = new char[extra.size()];
+        extraClasses = new int[extra.size()];
+        for (int i = 0; i < extra.size(); i++) {
+            extraChars[i] = extra.get(i);
+            extraClasses[i] = classOf.get(extra.get(i));
+        }
+
+        // 构建NFA后用子集构造法转换为DFA
+        Nfa nfa = new Nfa(builder.patterns, classOf, classCount);
+        Map<StateKey, Integer> ids = new HashMap<>();
+        List<StateKey> states = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>();
+
+        StateKey start = new StateKey(nfa.startSet(), 0);
+        ids.put(start, 0);
+        states.add(start);
+        for (int index = 0; index < states.size(); index++) {
+            StateKey state = states.get(index);
+            int[] row = new int[classCount];
+            for (int c = 0; c < classCount; c++) {
+                StateKey target = nfa.step(state.set, c);
+                if (target == null) {
+                    row[c] = -1;
+                    continue;
+                }
+                Integer id = ids.get(target);
+                if (id == null) {
+                    if (states.size() >= MAX_STATES) {
+                        throw new IllegalArgumentException("文件名模板过多或过于复杂，自动机状态超过 " + MAX_STATES);
+                    }
+                    id = states.size();
+                    ids.put(target, id);
+                    states.add(target);
+                }
+                row[c] = id;
+            }
+            rows.add(row);
+        }
+
+        transitions = new int[states.size() * classCount];
+        transitionMasks = new long[states.size() * classCount];
+        endMasks = new long[states.size()];
+        for (int i = 0; i < states.size(); i++) {
+            int[] row = rows.get(i);
+            for (int c = 0; c < classCount; c++) {
+                int target = row[c];
+                transitions[i * classCount + c] = target < 0 ? -1 : target * classCount;
+                transitionMasks[i * classCount + c] = target < 0 ? 0 : states.get(target).enterMask;
+            }
+            endMasks[i] = nfa.endMask(states.get(i).set);
+        }
+    }
+
+    /**
+     * 扫描文件名，返回所有匹配的模式
+     *
+     * @param name 文件名
+     * @param end  去掉扩展名后的结束位置
+     * @return 位掩码，第 i 位表示第 i 个模式匹配
+     */
+    long match(String name, int end) {
+        int row = 0;
+        long mask = 0;
+        for (int i = 0; i < end; i++) {
+            int index = row + classOf(name.charAt(i));
+            row = transitions[index];
+            if (row < 0) {
+                // 只有从开头匹配的模板时可能进入死状态
+                return mask;
+            }
+            mask |= transitionMasks[index];
+        }
+        return mask | endMasks[row / classCount];
+    }
+
+    /**
+     * @return DFA状态数量
+     */
+    int getStateCount() {
+        return endMasks.length;
+    }
+
+    private int classOf(char c) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        int index = Arrays.binarySearch(extraChars, c);
+        return index >= 0 ? extraClasses[index] : OTHER_CLASS;
+    }
+
+    /**
+     * 匹配步骤：一个字符集合，可重复一次或多次
+     */
+    static final class Step {
+        final boolean digit;
+        final String chars;
+        final boolean repeat;
+
+        private Step(boolean digit, String chars, boolean repeat) {
+            this.digit = digit;
+            this.chars = chars;
+            this.repeat = repeat;
+        }
+
+        /** 一位数字 */
+        static Step digit() {
+            return new Step(true, "", false);
+        }
+
+        /** 一位 chars 中的字符 */
+        static Step anyOf(String chars) {
+            return new Step(false, chars, false);
+        }
+
+        /** 一个或多个相同类别的字符 */
+        Step oneOrMore() {
+            return new Step(digit, chars, true);
+        }
+    }
+
+    private static final class Pattern {
+        final List<Step> steps;
+        final boolean anchored;
+        final boolean anySuffix;
+
+        Pattern(List<Step> steps, boolean anchored, boolean anySuffix) {
+            this.steps = steps;
+            this.anchored = anchored;
+            this.anySuffix = anySuffix;
+        }
+    }
+
+    /**
+     * 自动机构建器，模式序号即添加顺序
+     */
+    static final class Builder {
+        private final List<Pattern> patterns = new ArrayList<>();
+
+        /**
+         * 添加从文件名开头匹配的模板
+         *
+         * @return 模式序号
+         */
+        int addTemplate(FileNameTemplate template) {
+            List<Step> steps = new ArrayList<>(template.length());
+            for (int i = 0; i < template.length(); i++) {
+                steps.add(template.isDigitAt(i) ? Step.digit() : Step.anyOf(String.valueOf(template.literalAt(i))));
+            }
+            return add(new Pattern(steps, true, template.hasAnySuffix()));
+        }
+
+        /**
+         * 添加可出现在任意位置的步骤序列
+         *
+         * @return 模式序号
+         */
+        int addSearch(Step... steps) {
+            return add(new Pattern(Arrays.asList(steps), false, true));
+        }
+
+        private int add(Pattern pattern) {
+            if (patterns.size() >= MAX_PATTERNS) {
+                throw new IllegalArgumentException("文件名模式不能超过 " + MAX_PATTERNS + " 个");
+            }
+            patterns.add(pattern);
+            return patterns.size() - 1;
+        }
+
+        FileNameAutomaton build() {
+            return new FileNameAutomaton(this);
+        }
+    }
+
+    // DFA状态：NFA状态集合 + 进入该状态时确定匹配的模式
+    private static final class StateKey {
+        final BitSet set;
+        final long enterMask;
+
+        StateKey(BitSet set, long enterMask) {
+            this.set = set;
+            this.enterMask = enterMask;
+        }
+
+        @Override
+        public int hashCode() {
+            return set.hashCode() * 31 + Long.valueOf(enterMask).hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StateKey)) {
+                return false;
+            }
+            StateKey other = (StateKey) o;
+            return enterMask == other.enterMask && set.equals(other.set);
+        }
+    }
+
+    /**
+     * 非确定有限自动机
+     * <p>
+     * 每个模式的第 i 个NFA状态表示"已匹配前 i 步"。重复步骤在其后的状态上加自环；
+     * 任意位置的模式在起始状态上加全字符自环。匹配完成后可确定结果的模式不再保留NFA状态，
+     * 而是记入DFA状态的 enterMask，避免状态数量随已匹配模式的组合增长。
+     * </p>
+     */
+    private static final class Nfa {
+        // 每个NFA状态所属的模式、在模式中的步骤位置
+        private final int[] patternOf;
+        private final int[] positionOf;
+        private final int[] firstState;
+        private final List<Pattern> patterns;
+        // stepClasses[pattern][step][class]
+        private final boolean[][][] stepClasses;
+        private final int stateCount;
+
+        Nfa(List<Pattern> patterns, Map<Character, Integer> classOf, int classCount) {
+            this.patterns = patterns;
+            firstState = new int[patterns.size()];
+            stepClasses = new boolean[patterns.size()][][];
+            int count = 0;
+            for (int p = 0; p < patterns.size(); p++) {
+                firstState[p] = count;
+                List<Step> steps = patterns.get(p).steps;
+                count += steps.size() + 1;
+                stepClasses[p] = new boolean[steps.size()][classCount];
+                for (int s = 0; s < steps.size(); s++) {
+                    Step step = steps.get(s);
+                    if (step.digit) {
+                        stepClasses[p][s][DIGIT_CLASS] = true;
+                    }
+                    for (int i = 0; i < step.chars.length(); i++) {
+                        stepClasses[p][s][classOf.get(step.chars.charAt(i))] = true;
+                    }
+                }
+            }
+            stateCount = count;
+            patternOf = new int[count];
+            positionOf = new int[count];
+            for (int p = 0; p < patterns.size(); p++) {
+                for (int s = 0; s <= patterns.get(p).steps.size(); s++) {
+                    patternOf[firstState[p] + s] = p;
+                    positionOf[firstState[p] + s] = s;
+                }
+            }
+        }
+
+        BitSet startSet() {
+            BitSet set = new BitSet(stateCount);
+            for (int p = 0; p < patterns.size(); p++) {
+                set.set(firstState[p]);
+            }
+            return set;
+        }
+
+        // 读入一个字符类别后的状态；所有模式都失败时返回 null
+        StateKey step(BitSet current, int c) {
+            BitSet next = new BitSet(stateCount);
+            long enterMask = 0;
+            for (int state = current.nextSetBit(0); state >= 0; state = current.nextSetBit(state + 1)) {
+                int p = patternOf[state];
+                int position = positionOf[state];
+                Pattern pattern = patterns.get(p);
+                List<Step> steps = pattern.steps;
+
+                if (position == 0 && !pattern.anchored) {
+                    // 任意位置的模式：起始状态始终保留
+                    next.set(state);
+                }
+                if (position > 0 && steps.get(position - 1).repeat && stepClasses[p][position - 1][c]) {
+                    // 重复步骤的自环
+                    next.set(state);
+                }
+                if (position < steps.size()) {
+                    if (stepClasses[p][position][c]) {
+                        int target = state + 1;
+                        if (position + 1 == steps.size() && completesOnEnter(pattern)) {
+                            enterMask |= 1L << p;
+                        } else {
+                            next.set(target);
+                        }
+                    }
+                } else if (pattern.anySuffix && c != DIGIT_CLASS) {
+                    // 末尾为数字的模板：后面跟一个非数字字符即确定匹配
+                    enterMask |= 1L << p;
+                }
+            }
+            if (next.isEmpty() && enterMask == 0) {
+                return null;
+            }
+            return new StateKey(next, enterMask);
+        }
+
+        // 结束时仍处于完成状态的模式
+        long endMask(BitSet set) {
+            long mask = 0;
+            for (int state = set.nextSetBit(0); state >= 0; state = set.nextSetBit(state + 1)) {
+                int p = patternOf[state];
+                if (positionOf[state] == patterns.get(p).steps.size()) {
+                    mask |= 1L << p;
+                }
+            }
+            return mask;
+        }
+
+        // 读完最后一步即可确定匹配：任意位置的模式，或带任意后缀且最后一步不是数字的模板
+        private static boolean completesOnEnter(Pattern pattern) {
+            if (!pattern.anchored) {
+                return true;
+            }
+            Step last = pattern.steps.get(pattern.steps.size() - 1);
+            return pattern.anySuffix && !last.digit;
+        }
+    }
+}
@@ -1,20 +1,156 @@
 package com.imagefixer.app.utils;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.Locale;
-
-import com.imagefixer.app.utils.LogUtils;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 文件名字符串日期时间解析器
  * <p>
  * 用于从文件名中提取日期时间信息，支持多种日期时间格式。
+ * 解析逻辑由一组有序的规则（{@link Rule}）组成，每条规则的正则表达式只编译一次，
+ * 规则本身无状态，仅记录命中/未命中次数，可安全地在多线程间共享。
+ * </p>
+ * <p>
+ * 每条规则分为两步：先用正则表达式找出各字段的位置（{@link Rule#find}），再按位置换算时间（{@link Rule#decode}）。
+ * 规则只区分"数字"与"其它字符"，因此把数字统一折叠后"形状"相同的文件名，各规则找到的字段位置也完全相同。
+ * 解析器按形状缓存各规则的字段位置（LRU），同一目录中命名方式相同的文件名只在第一次使用正则表达式。
+ * </p>
+ * <p>
+ * 微信、WhatsApp、Pixel 等应用的文件名格式固定，由厂商规则（{@link FileNameTemplate}）直接按位置换算（可精确到毫秒）；
+ * 用户还可以通过配置文件（{@link #loadUserPatterns}）添加自己的模板。所有模板与通用规则的必要条件一起编译成
+ * 一个 {@link FileNameAutomaton}，每个文件名只需扫描一遍即可知道哪些模板匹配、哪些通用规则不可能匹配（跳过其正则表达式）。
+ * 优先级依次为：用户模板（按配置文件中的顺序）、厂商模板、通用规则链。
  * </p>
  */
 public class FileNameDateTimeParser {
-    private static final String TAG = "FileNameDateTimeParser";
+    // 自适应排序开启时，每解析多少个文件名重新排序一次规则链
+    private static final int REORDER_INTERVAL = 4096;
+
+    // 形状缓存的默认容量
+    private static final int DEFAULT_SHAPE_CACHE_SIZE = 256;
+
+    // 批量解析时，数组长度超过该值才拆分到多个线程
+    private static final int BATCH_SPLIT_THRESHOLD = 4096;
+    // 批量解析线程池的最大线程数
+    private static final int BATCH_POOL_SIZE = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    // 中文上午/下午格式中按整数直接换算的最大位数，超出时按原始字符串解析
+    private static final int MAX_FIELD_DIGITS = 9;
+
+    // 日期时间分隔符：- / : _ . 空白字符
+    private static final String DATE_SEPARATOR = "[-\\/\\:_\\.\\s]";
+
+    // 匹配 .2023_02_17 下午9_30 Office Lens (16) 格式
+    private static final Pattern CHINESE_AM_PM_PATTERN = Pattern
+            .compile("\\.(\\d{4})_(\\d{2})_(\\d{2})\\s+([上下午]+)(\\d+)_(\\d+)");
+
+    // 匹配 ***20230101_123045*** 或 ***20230101*** 或 ***20230101126040***
+    // 格式，支持任意前后缀，时间部分可选
+    private static final Pattern COMPACT_PATTERN = Pattern.compile("[^\\d]*(\\d{8})(?:[_\\s]?+(\\d{6}))?[^\\d]*",
+            Pattern.CASE_INSENSITIVE);
+
+    // 匹配 灵活的日期时间格式，支持多种分隔符，时间、秒和毫秒都是可选的
+    // 支持格式示例：2022-06-25_12.13.07.326、2022/06/25 12:13、2022_06_25-12.13.07等
+    private static final Pattern SEPARATED_PATTERN = Pattern.compile(String.format(
+            "^.*?(\\d{4})%s(\\d{2})%s(\\d{2})%s+?(?:(\\d{2})%s(\\d{2})(?:%s(\\d{2})(?:%s(\\d{1,3}))?)?)?.*$",
+            DATE_SEPARATOR, DATE_SEPARATOR, DATE_SEPARATOR, DATE_SEPARATOR, DATE_SEPARATOR, DATE_SEPARATOR,
+            DATE_SEPARATOR));
+
+    // 匹配Unix时间戳格式 (10位秒级或13位毫秒级)，支持前后带有非数字字符串
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("[^\\d]*(\\d{10}|\\d{13})[^\\d]*");
+
+    // 匹配 2023-01-01、2023-01或2023格式，分隔符支持-、/、.、_和空格
+    private static final Pattern YEAR_MONTH_DAY_PATTERN = Pattern
+            .compile("(\\d{4})([-\\/\\._\\s])?(\\d{2})?([-\\/\\._\\s])?(\\d{2})?");
+
+    // 常见应用、设备的文件名格式：{规则名, 模板}，多个模板同时匹配时按声明顺序尝试
+    private static final String[][] VENDOR_TEMPLATES = {
+            { "WeChatExportRule", "'mmexport'TTTTTTTTTTTTT*" }, // mmexport1600000000000.jpg
+            { "WeChatCameraRule", "'wx_camera_'TTTTTTTTTTTTT*" }, // wx_camera_1600000000000.jpg
+            { "FacebookRule", "'FB_IMG_'TTTTTTTTTTTTT*" }, // FB_IMG_1600000000000.jpg
+            { "PixelRule", "'PXL_'yyyyMMdd'_'HHmmssSSS*" }, // PXL_20230101_123045123.jpg
+            { "CameraImageRule", "'IMG_'yyyyMMdd'_'HHmmss*" }, // IMG_20230101_123045.jpg
+            { "CameraVideoRule", "'VID_'yyyyMMdd'_'HHmmss*" }, // VID_20230101_123045.mp4
+            { "WhatsAppImageRule", "'IMG-'yyyyMMdd'-WA'####*" }, // IMG-20230101-WA0001.jpg
+            { "WhatsAppVideoRule", "'VID-'yyyyMMdd'-WA'####*" }, // VID-20230101-WA0001.mp4
+            // Screenshot_2023-01-01-12-30-45-123_com.tencent.mm.jpg
+            { "ScreenshotMillisRule", "'Screenshot_'yyyy'-'MM'-'dd'-'HH'-'mm'-'ss'-'SSS*" },
+            { "ScreenshotRule", "'Screenshot_'yyyy'-'MM'-'dd'-'HH'-'mm'-'ss*" }, // Screenshot_2023-01-01-12-30-45.png
+            { "SamsungScreenshotRule", "'Screenshot_'yyyyMMdd'-'HHmmss*" } // Screenshot_20230101-123045_Chrome.jpg
+    };
+
+    // 当前规则链（按尝试顺序排列），重排时整体替换数组，读取方无需加锁
+    private volatile Rule[] rules;
+    // 规则总数，形状缓存中按规则序号（Rule.index）存放字段位置
+    private final int ruleCount;
+    // 是否根据命中率自动重排规则链
+    private volatile boolean adaptiveOrdering = false;
+    // 已解析的文件名数量
+    private final AtomicLong parseCount = new AtomicLong();
+    // 厂商规则（按声明顺序）
+    private final TemplateRule[] vendorRules;
+    // 当前的模板规则和自动机，加载用户模板时整体替换
+    private volatile TemplateSet templateSet;
+    // 是否先尝试模板规则
+    private volatile boolean vendorDispatch = true;
+    // 形状缓存，关闭时为null
+    private volatile ShapeCache shapeCache = new ShapeCache(DEFAULT_SHAPE_CACHE_SIZE);
+
+    // 批量解析共用的线程池，第一次拆分任务时创建
+    private static ForkJoinPool batchPool;
+
+    public FileNameDateTimeParser() {
+        // 声明顺序即默认优先级
+        rules = new Rule[] {
+                new ChineseAmPmRule(),
+                new CompactRule(),
+                new SeparatedRule(),
+                new TimestampRule(),
+                new YearMonthDayRule()
+        };
+        ruleCount = rules.length;
+        for (int i = 0; i < ruleCount; i++) {
+            rules[i].index = i;
+        }
+
+        vendorRules = new TemplateRule[VENDOR_TEMPLATES.length];
+        for (int i = 0; i < vendorRules.length; i++) {
+            vendorRules[i] = new TemplateRule(VENDOR_TEMPLATES[i][0], FileNameTemplate.compile(VENDOR_TEMPLATES[i][1]));
+        }
+        templateSet = buildTemplateSet(new TemplateRule[0]);
+    }
+
+    // 按优先级编译用户模板、厂商模板和通用规则的必要条件
+    private TemplateSet buildTemplateSet(TemplateRule[] userRules) {
+        TemplateRule[] templateRules = new TemplateRule[userRules.length + vendorRules.length];
+        System.arraycopy(userRules, 0, templateRules, 0, userRules.length);
+        System.arraycopy(vendorRules, 0, templateRules, userRules.length, vendorRules.length);
+
+        FileNameAutomaton.Builder builder = new FileNameAutomaton.Builder();
+        long[] templateBits = new long[templateRules.length];
+        for (int i = 0; i < templateRules.length; i++) {
+            templateBits[i] = 1L << builder.addTemplate(templateRules[i].template);
+        }
+        long[] conditionBits = new long[ruleCount];
+        for (Rule rule : rules) {
+            conditionBits[rule.index] = 1L << builder.addSearch(rule.condition());
+        }
+        return new TemplateSet(templateRules, userRules.length, templateBits, conditionBits, builder.build());
+    }
 
     /**
      * 从文件名中提取日期时间信息
@@ -28,228 +164,1088 @@ public class FileNameDateTimeParser {
      * 6) .2023_02_17 下午9_30 Office Lens (16) - 中文上午/下午格式
      * 7) 1748512965775.jpg - Unix时间戳格式(10位秒级或13位毫秒级)
      * </p>
-     * 
+     *
      * @param fileName 文件名（包含扩展名）
      * @return 解析出的 Date 对象；若无法解析则返回 null
      */
     public Date getFileNameDateTime(String fileName) {
-        // 验证时间戳的合理性（1970-01-01 到 2100-12-31）
-        long minTimestamp = 0; // 1970-01-01
-        long maxTimestamp = System.currentTimeMillis(); // 当前时间戳
+        long timestamp = getFileNameDateTimeMillis(fileName);
+        return timestamp == DateTimeUtils.INVALID ? null : new Date(timestamp);
+    }
 
+    /**
+     * 从文件名中提取日期时间信息，返回毫秒时间戳
+     * <p>
+     * 支持的格式与 {@link #getFileNameDateTime(String)} 相同。形状缓存命中时不使用正则表达式，
+     * 也不创建子字符串。
+     * </p>
+     *
+     * @param fileName 文件名（包含扩展名）
+     * @return 毫秒时间戳；若无法解析则返回 {@link DateTimeUtils#INVALID}
+     */
+    public long getFileNameDateTimeMillis(String fileName) {
         if (fileName == null || fileName.isEmpty())
+            return DateTimeUtils.INVALID;
+
+        // 去掉扩展名（只记录结束位置）
+        int end = baseNameEnd(fileName);
+
+        // 验证时间戳的合理性（1970-01-01 到 当前时间）
+        long maxTimestamp = System.currentTimeMillis();
+
+        if (adaptiveOrdering && parseCount.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorderByHitRate();
+        }
+
+        // 一次扫描得到匹配的模板和满足必要条件的通用规则
+        TemplateSet templates = templateSet;
+        long mask = templates.automaton.match(fileName, end);
+        if (vendorDispatch) {
+            long timestamp = templates.decode(fileName, mask, maxTimestamp);
+            if (timestamp != DateTimeUtils.INVALID) {
+                return timestamp;
+            }
+        }
+
+        Rule[] chain = rules;
+        ShapeCache cache = shapeCache;
+        if (cache == null) {
+            // 不使用缓存时逐条匹配，第一个给出合理结果的规则之后不再匹配；不满足必要条件的规则不使用正则表达式
+            String baseName = null;
+            for (Rule rule : chain) {
+                long timestamp = DateTimeUtils.INVALID;
+                if ((mask & templates.conditionBits[rule.index]) != 0) {
+                    if (baseName == null) {
+                        baseName = fileName.substring(0, end);
+                    }
+                    int[] spans = rule.find(baseName);
+                    if (spans != null) {
+                        timestamp = rule.decode(baseName, spans, maxTimestamp);
+                    }
+                }
+                if (timestamp != DateTimeUtils.INVALID) {
+                    rule.hitCount.incrementAndGet();
+                    return timestamp;
+                }
+                rule.missCount.incrementAndGet();
+            }
+            return DateTimeUtils.INVALID;
+        }
+
+        int[][] spansByRule = cache.get(fileName, end);
+        if (spansByRule == null) {
+            spansByRule = findAll(chain, templates, mask, fileName.substring(0, end));
+            cache.put(fileName, end, spansByRule);
+        }
+        return decode(chain, fileName, spansByRule, maxTimestamp);
+    }
+
+    /**
+     * 批量解析同一目录列表中的文件名
+     * <p>
+     * 结果与逐个调用 {@link #getFileNameDateTimeMillis(String)} 相同。整批文件名共用同一个当前时间，
+     * 相邻文件名形状相同时直接复用上一个文件名的字段位置，不再查询形状缓存。
+     * 数组长度超过 {@value #BATCH_SPLIT_THRESHOLD} 时拆分到线程池中并行解析，调用线程会等待全部完成。
+     * </p>
+     *
+     * @param fileNames 文件名数组（包含扩展名），元素可以为null
+     * @param results   输出数组，长度不小于 fileNames，第 i 个元素为第 i 个文件名的毫秒时间戳，
+     *                  无法解析时为 {@link DateTimeUtils#INVALID}
+     */
+    public void parseBatch(String[] fileNames, long[] results) {
+        if (results.length < fileNames.length) {
+            throw new IllegalArgumentException("results 长度不足: " + results.length + " < " + fileNames.length);
+        }
+        // 验证时间戳的合理性（1970-01-01 到 当前时间）
+        long maxTimestamp = System.currentTimeMillis();
+
+        if (adaptiveOrdering) {
+            long before = parseCount.getAndAdd(fileNames.length);
+            if (before / REORDER_INTERVAL != (before + fileNames.length) / REORDER_INTERVAL) {
+                reorderByHitRate();
+            }
+        }
+
+        if (fileNames.length <= BATCH_SPLIT_THRESHOLD) {
+            parseRange(fileNames, results, 0, fileNames.length, rules, templateSet, shapeCache, vendorDispatch,
+                    maxTimestamp);
+        } else {
+            getBatchPool().invoke(new BatchTask(fileNames, results, 0, fileNames.length, rules, templateSet,
+                    shapeCache, vendorDispatch, maxTimestamp));
+        }
+    }
+
+    // 顺序解析 [from, to) 范围内的文件名
+    private void parseRange(String[] fileNames, long[] results, int from, int to, Rule[] chain,
+            TemplateSet templates, ShapeCache cache, boolean dispatch, long maxTimestamp) {
+        // 上一个文件名的形状、自动机结果和字段位置，同一目录中相邻文件名的形状通常相同
+        ShapeKey lastShape = null;
+        long lastMask = 0;
+        int[][] lastSpans = null;
+        // 上一个形状中优先级最高、且没有更高优先级模板可能同时匹配的模板规则；
+        // 文件名符合它的结构时即可直接换算，不必比较形状
+        TemplateRule lastTemplate = null;
+        long reusedCount = 0;
+
+        for (int i = from; i < to; i++) {
+            String fileName = fileNames[i];
+            if (fileName == null || fileName.isEmpty()) {
+                results[i] = DateTimeUtils.INVALID;
+                continue;
+            }
+            int end = baseNameEnd(fileName);
+
+            if (dispatch && lastTemplate != null) {
+                long timestamp = lastTemplate.applyIfMatches(fileName, end, maxTimestamp);
+                if (timestamp != DateTimeUtils.INVALID) {
+                    results[i] = timestamp;
+                    continue;
+                }
+            }
+
+            if (lastShape == null || !lastShape.matches(fileName, end)) {
+                lastShape = new ShapeKey(fileName, end);
+                lastMask = templates.automaton.match(fileName, end);
+                lastSpans = null;
+                lastTemplate = templates.exclusiveFirst(lastMask);
+            }
+
+            if (dispatch) {
+                long timestamp = templates.decode(fileName, lastMask, maxTimestamp);
+                if (timestamp != DateTimeUtils.INVALID) {
+                    results[i] = timestamp;
+                    continue;
+                }
+            }
+
+            if (lastSpans != null) {
+                reusedCount++;
+            } else {
+                lastSpans = cache != null ? cache.get(fileName, end) : null;
+                if (lastSpans == null) {
+                    lastSpans = findAll(chain, templates, lastMask, fileName.substring(0, end));
+                    if (cache != null) {
+                        cache.put(fileName, end, lastSpans);
+                    }
+                }
+            }
+            results[i] = decode(chain, fileName, lastSpans, maxTimestamp);
+        }
+
+        // 复用上一个形状也计入缓存命中
+        if (cache != null && reusedCount > 0) {
+            cache.hitCount.addAndGet(reusedCount);
+        }
+    }
+
+    private static synchronized ForkJoinPool getBatchPool() {
+        if (batchPool == null) {
+            batchPool = new ForkJoinPool(BATCH_POOL_SIZE);
+        }
+        return batchPool;
+    }
+
+    // 去掉扩展名后的结束位置
+    private static int baseNameEnd(String fileName) {
+        int end = fileName.lastIndexOf('.');
+        return end > 0 ? end : fileName.length();
+    }
+
+    // 同一形状下，前面的规则可能因数值超出范围而落选，因此一次记录所有规则的字段位置；
+    // 不满足必要条件的规则一定不匹配，不使用正则表达式
+    private int[][] findAll(Rule[] chain, TemplateSet templates, long mask, String baseName) {
+        int[][] spansByRule = new int[ruleCount][];
+        for (Rule rule : chain) {
+            if ((mask & templates.conditionBits[rule.index]) != 0) {
+                spansByRule[rule.index] = rule.find(baseName);
+            }
+        }
+        return spansByRule;
+    }
+
+    // 按规则链顺序用已知的字段位置换算时间，第一个给出合理结果的规则胜出
+    private static long decode(Rule[] chain, String fileName, int[][] spansByRule, long maxTimestamp) {
+        for (Rule rule : chain) {
+            int[] spans = spansByRule[rule.index];
+            long timestamp = spans != null ? rule.decode(fileName, spans, maxTimestamp) : DateTimeUtils.INVALID;
+            if (timestamp != DateTimeUtils.INVALID) {
+                rule.hitCount.incrementAndGet();
+                return timestamp;
+            }
+            rule.missCount.incrementAndGet();
+        }
+        return DateTimeUtils.INVALID;
+    }
+
+    /**
+     * 解析EXIF格式的日期时间字符串
+     * <p>
+     * EXIF日期格式: "2023:01:01 12:30:45"
+     * </p>
+     *
+     * @param dateString EXIF格式的日期时间字符串
+     * @return 解析出的 Date 对象；若解析失败则返回 null
+     */
+    public Date parseExifDateTime(String dateString) {
+        long timestamp = parseExifDateTimeMillis(dateString);
+        return timestamp == DateTimeUtils.INVALID ? null : new Date(timestamp);
+    }
+
+    /**
+     * 解析EXIF格式的日期时间字符串，返回毫秒时间戳
+     * <p>
+     * 定宽字符串按位置直接换算，不创建 Date 或 SimpleDateFormat，可在多线程中同时调用。
+     * </p>
+     *
+     * @param dateString EXIF格式的日期时间字符串
+     * @return 毫秒时间戳；若解析失败则返回 {@link DateTimeUtils#INVALID}
+     */
+    public long parseExifDateTimeMillis(String dateString) {
+        return DateTimeUtils.parseExifDateTime(dateString);
+    }
+
+    /**
+     * 设置是否根据命中率自动重排规则链
+     * <p>
+     * 默认关闭，规则按声明顺序尝试。开启后，每解析 {@value #REORDER_INTERVAL} 个文件名，
+     * 命中次数最多的规则会被移到链首。注意：同一个文件名若能被多条规则匹配，
+     * 重排后可能由另一条规则给出结果，因此只建议在文件命名方式单一的目录中开启。
+     * </p>
+     *
+     * @param enabled true开启自适应排序
+     */
+    public void setAdaptiveOrdering(boolean enabled) {
+        adaptiveOrdering = enabled;
+    }
+
+    /**
+     * 设置是否先尝试模板规则（用户模板和厂商模板），默认开启
+     * <p>
+     * 关闭后只使用通用规则链，结果与早期版本完全一致（例如 mmexport1600000000123 只精确到秒）。
+     * </p>
+     *
+     * @param enabled true开启模板规则
+     */
+    public void setVendorDispatch(boolean enabled) {
+        vendorDispatch = enabled;
+    }
+
+    /**
+     * 获取厂商规则（按声明顺序）
+     *
+     * @return 厂商规则的只读列表
+     */
+    public List<Rule> getVendorRules() {
+        return Collections.<Rule>unmodifiableList(Arrays.<Rule>asList(vendorRules));
+    }
+
+    /**
+     * 从配置文件加载用户模板，替换之前加载的用户模板
+     * <p>
+     * 每行一个模板，语法见 {@link FileNameTemplate}，可写作 "规则名 = 模板" 或只写模板（规则名为 UserRule1、UserRule2...）；
+     * 空行和以 # 开头的行被忽略。用户模板的优先级高于厂商模板，多个用户模板同时匹配时按文件中的顺序尝试。
+     * 例如：
+     * <pre>
+     * # 行车记录仪
+     * DashCamRule = 'REC_'yyyy'_'MM'_'dd'_'HH'_'mm'_'ss*
+     * 'scan-'yyyyMMdd*
+     * </pre>
+     * 配置有误时抛出异常，已加载的用户模板保持不变。加载成功后形状缓存中之前的结果不再使用。
+     * </p>
+     *
+     * @param reader 配置内容，由调用方关闭
+     * @throws IOException              读取失败
+     * @throws IllegalArgumentException 模板语法错误（消息中包含行号），或模板数量过多
+     */
+    public void loadUserPatterns(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        List<TemplateRule> userRules = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String name = null;
+            String pattern = line;
+            int equals = line.indexOf('=');
+            if (equals > 0 && isRuleName(line.substring(0, equals).trim())) {
+                name = line.substring(0, equals).trim();
+                pattern = line.substring(equals + 1).trim();
+            }
+            if (name == null) {
+                name = "UserRule" + (userRules.size() + 1);
+            }
+            try {
+                userRules.add(new TemplateRule(name, FileNameTemplate.compile(pattern)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("第 " + lineNumber + " 行: " + e.getMessage(), e);
+            }
+        }
+        templateSet = buildTemplateSet(userRules.toArray(new TemplateRule[0]));
+    }
+
+    // 规则名只能由字母、数字和下划线组成，否则整行按模板处理
+    private static boolean isRuleName(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取已加载的用户模板规则（按优先级）
+     *
+     * @return 用户模板规则的只读列表
+     */
+    public List<Rule> getUserRules() {
+        TemplateSet templates = templateSet;
+        return Collections.<Rule>unmodifiableList(
+                Arrays.<Rule>asList(Arrays.copyOf(templates.templateRules, templates.userCount)));
+    }
+
+    /**
+     * 获取在通用规则链之前尝试的模板（用户模板在前、厂商模板在后，按优先级）
+     * <p>
+     * 供 {@link FileNameDateTimeScanner} 使用相同的模板，与本解析器的结果保持一致。
+     * </p>
+     *
+     * @return 模板的只读列表；关闭前缀分派时为空
+     */
+    List<FileNameTemplate> getTemplates() {
+        if (!vendorDispatch) {
+            return Collections.emptyList();
+        }
+        TemplateRule[] templateRules = templateSet.templateRules;
+        List<FileNameTemplate> templates = new ArrayList<>(templateRules.length);
+        for (TemplateRule rule : templateRules) {
+            templates.add(rule.template);
+        }
+        return Collections.unmodifiableList(templates);
+    }
+
+    /**
+     * 编译内置的厂商模板（按优先级）
+     *
+     * @return 新编译的模板列表
+     */
+    static List<FileNameTemplate> compileVendorTemplates() {
+        List<FileNameTemplate> templates = new ArrayList<>(VENDOR_TEMPLATES.length);
+        for (String[] vendor : VENDOR_TEMPLATES) {
+            templates.add(FileNameTemplate.compile(vendor[1]));
+        }
+        return Collections.unmodifiableList(templates);
+    }
+
+    /**
+     * 设置形状缓存的容量，默认 {@value #DEFAULT_SHAPE_CACHE_SIZE}
+     * <p>
+     * 超出容量时淘汰最久未使用的形状。设置后已缓存的形状和命中统计会被清空。
+     * </p>
+     *
+     * @param maxEntries 最多缓存的形状数量，0表示关闭缓存
+     */
+    public void setShapeCacheSize(int maxEntries) {
+        shapeCache = maxEntries > 0 ? new ShapeCache(maxEntries) : null;
+    }
+
+    /**
+     * @return 形状缓存的命中率，未开启缓存或尚未解析时返回0
+     */
+    public double getShapeCacheHitRate() {
+        ShapeCache cache = shapeCache;
+        if (cache == null) {
+            return 0;
+        }
+        long hits = cache.hitCount.get();
+        long total = hits + cache.missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 获取形状缓存的统计，便于日志输出
+     *
+     * @return 形如 "形状缓存 命中 980 / 未命中 20, 已缓存 12 个形状" 的统计字符串
+     */
+    public String getShapeCacheStatistics() {
+        ShapeCache cache = shapeCache;
+        if (cache == null) {
+            return "形状缓存 未开启";
+        }
+        return "形状缓存 命中 " + cache.hitCount.get()
+                + " / 未命中 " + cache.missCount.get()
+                + ", 已缓存 " + cache.size() + " 个形状";
+    }
+
+    /**
+     * 按命中率（命中次数 / 解析总次数）从高到低重排规则链，命中次数相同时保持原有顺序
+     */
+    public synchronized void reorderByHitRate() {
+        Rule[] sorted = Arrays.copyOf(rules, rules.length);
+        // Arrays.sort 对对象数组是稳定排序
+        Arrays.sort(sorted, new Comparator<Rule>() {
+            @Override
+            public int compare(Rule a, Rule b) {
+                return Long.compare(b.getHitCount(), a.getHitCount());
+            }
+        });
+        rules = sorted;
+    }
+
+    /**
+     * 获取当前规则链（按尝试顺序）
+     *
+     * @return 规则列表的只读快照
+     */
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(rules)));
+    }
+
+    /**
+     * 获取规则链的命中统计，便于日志输出
+     *
+     * @return 形如 "CompactRule 命中 120 / 未命中 3, ..." 的统计字符串
+     */
+    public String getRuleStatistics() {
+        StringBuilder builder = new StringBuilder();
+        // 模板规则只输出尝试过的
+        for (Rule rule : templateSet.templateRules) {
+            if (rule.getHitCount() + rule.getMissCount() == 0) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(rule.getName())
+                    .append(" 命中 ").append(rule.getHitCount())
+                    .append(" / 未命中 ").append(rule.getMissCount());
+        }
+        for (Rule rule : rules) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(rule.getName())
+                    .append(" 命中 ").append(rule.getHitCount())
+                    .append(" / 未命中 ").append(rule.getMissCount());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 文件名日期规则
+     * <p>
+     * 每条规则持有一个预编译的正则表达式，匹配和解析过程不修改规则状态，
+     * 仅通过原子计数器记录命中/未命中次数。
+     * </p>
+     */
+    public abstract class Rule {
+        private final String name;
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+        // 规则在默认顺序中的序号，不随重排变化
+        private int index;
+
+        Rule(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 用正则表达式查找各字段的位置
+         *
+         * @param baseName 去掉扩展名的文件名
+         * @return 各捕获组的 [起始, 结束) 位置（未参与匹配的组为 -1）；不匹配时返回 null
+         */
+        abstract int[] find(String baseName);
+
+        /**
+         * 按字段位置换算时间
+         * <p>
+         * name 可以是与 find 时形状相同的任意文件名（可包含扩展名），字段位置对它同样有效。
+         * </p>
+         *
+         * @param name         文件名
+         * @param spans        {@link #find} 返回的字段位置
+         * @param maxTimestamp 允许的最大时间戳（当前时间）
+         * @return 毫秒时间戳；若结果不合理则返回 {@link DateTimeUtils#INVALID}，交给下一条规则
+         */
+        abstract long decode(String name, int[] spans, long maxTimestamp);
+
+        /**
+         * 规则匹配的必要条件，用于在使用正则表达式之前排除不可能匹配的文件名
+         * <p>
+         * 默认没有条件（空序列），任何文件名都会交给 {@link #find}；通用规则应覆盖此方法以便跳过正则表达式。
+         * </p>
+         *
+         * @return 必须在文件名中某处出现的步骤序列
+         */
+        FileNameAutomaton.Step[] condition() {
+            return new FileNameAutomaton.Step[0];
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getHitCount() {
+            return hitCount.get();
+        }
+
+        public long getMissCount() {
+            return missCount.get();
+        }
+
+        /**
+         * @return 命中次数占尝试次数的比例，尚未尝试时返回0
+         */
+        public double getHitRate() {
+            long hits = hitCount.get();
+            long total = hits + missCount.get();
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    // 验证时间戳的合理性（1970-01-01 到 当前时间）
+    private static long checkRange(long timestamp, long maxTimestamp) {
+        return timestamp >= 0 && timestamp <= maxTimestamp ? timestamp : DateTimeUtils.INVALID;
+    }
+
+    // 查找并记录各捕获组的位置
+    private static int[] findSpans(Pattern pattern, String baseName) {
+        Matcher m = pattern.matcher(baseName);
+        if (!m.find()) {
             return null;
+        }
+        int groupCount = m.groupCount();
+        int[] spans = new int[groupCount * 2];
+        for (int group = 1; group <= groupCount; group++) {
+            spans[(group - 1) * 2] = m.start(group);
+            spans[(group - 1) * 2 + 1] = m.end(group);
+        }
+        return spans;
+    }
+
+    private static boolean hasGroup(int[] spans, int group) {
+        return spans[(group - 1) * 2] >= 0;
+    }
+
+    private static int groupLength(int[] spans, int group) {
+        return spans[(group - 1) * 2 + 1] - spans[(group - 1) * 2];
+    }
+
+    // 读取捕获组中从 offset 开始的 count 位数字
+    private static int groupDigits(String name, int[] spans, int group, int offset, int count) {
+        int start = spans[(group - 1) * 2] + offset;
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            value = value * 10 + (name.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static int groupDigits(String name, int[] spans, int group) {
+        return groupDigits(name, spans, group, 0, groupLength(spans, group));
+    }
+
+    private static String groupText(String name, int[] spans, int group) {
+        return name.substring(spans[(group - 1) * 2], spans[(group - 1) * 2 + 1]);
+    }
+
+    // 捕获组中是否包含指定的两个连续字符
+    private static boolean groupContains(String name, int[] spans, int group, char first, char second) {
+        for (int i = spans[(group - 1) * 2]; i + 1 < spans[(group - 1) * 2 + 1]; i++) {
+            if (name.charAt(i) == first && name.charAt(i + 1) == second) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 连续 count 位数字
+    private static FileNameAutomaton.Step[] digits(int count) {
+        FileNameAutomaton.Step[] steps = new FileNameAutomaton.Step[count];
+        Arrays.fill(steps, FileNameAutomaton.Step.digit());
+        return steps;
+    }
 
-        // 去掉扩展名
-        int dotIndex = fileName.lastIndexOf('.');
-        if (dotIndex > 0) {
-            fileName = fileName.substring(0, dotIndex);
+    // .2023_02_17 下午9_30 Office Lens (16)
+    private class ChineseAmPmRule extends Rule {
+        ChineseAmPmRule() {
+            super("ChineseAmPmRule");
         }
 
-        // 匹配 .2023_02_17 下午9_30 Office Lens (16) 格式
-        java.util.regex.Pattern p4 = java.util.regex.Pattern
-                .compile("\\.(\\d{4})_(\\d{2})_(\\d{2})\\s+([上下午]+)(\\d+)_(\\d+)");
-        java.util.regex.Matcher m4 = p4.matcher(fileName);
-        if (m4.find()) {
-            int hour = Integer.parseInt(m4.group(5));
+        @Override
+        int[] find(String baseName) {
+            return findSpans(CHINESE_AM_PM_PATTERN, baseName);
+        }
+
+        @Override
+        FileNameAutomaton.Step[] condition() {
+            FileNameAutomaton.Step digit = FileNameAutomaton.Step.digit();
+            FileNameAutomaton.Step underscore = FileNameAutomaton.Step.anyOf("_");
+            return new FileNameAutomaton.Step[] {
+                    FileNameAutomaton.Step.anyOf("."), digit, digit, digit, digit, underscore, digit, digit,
+                    underscore, digit, digit, FileNameAutomaton.Step.anyOf(FileNameAutomaton.WHITESPACE).oneOrMore(),
+                    FileNameAutomaton.Step.anyOf("上下午").oneOrMore(), digit.oneOrMore(), underscore,
+                    digit.oneOrMore()
+            };
+        }
+
+        @Override
+        long decode(String name, int[] spans, long maxTimestamp) {
+            if (groupLength(spans, 5) > MAX_FIELD_DIGITS || groupLength(spans, 6) > MAX_FIELD_DIGITS) {
+                // 超长的小时、分钟按原始字符串交给 SimpleDateFormat 宽松解析
+                return decodeText(name, spans);
+            }
+            int hour = groupDigits(name, spans, 5);
             // 处理上午/下午
-            if (m4.group(4).contains("下午") && hour < 12) {
+            if (groupContains(name, spans, 4, '下', '午') && hour < 12) {
+                hour += 12;
+            } else if (groupContains(name, spans, 4, '上', '午') && hour == 12) {
+                hour = 0;
+            }
+
+            return DateTimeUtils.toEpochMillis(
+                    groupDigits(name, spans, 1), // yyyy
+                    groupDigits(name, spans, 2), // MM
+                    groupDigits(name, spans, 3), // dd
+                    hour, // HH
+                    groupDigits(name, spans, 6), // mm
+                    0); // ss
+        }
+
+        private long decodeText(String name, int[] spans) {
+            int hour = Integer.parseInt(groupText(name, spans, 5));
+            String marker = groupText(name, spans, 4);
+            if (marker.contains("下午") && hour < 12) {
                 hour += 12;
-            } else if (m4.group(4).contains("上午") && hour == 12) {
+            } else if (marker.contains("上午") && hour == 12) {
                 hour = 0;
             }
 
-            return parseExifDateTime(
+            return parseExifDateTimeMillis(
                     new StringBuilder()
-                            .append(m4.group(1)).append(':') // yyyy
-                            .append(m4.group(2)).append(':') // MM
-                            .append(m4.group(3)).append(' ') // dd
+                            .append(groupText(name, spans, 1)).append(':') // yyyy
+                            .append(groupText(name, spans, 2)).append(':') // MM
+                            .append(groupText(name, spans, 3)).append(' ') // dd
                             .append(String.format("%02d", hour)).append(':') // HH
-                            .append(m4.group(6)).append(':') // mm
+                            .append(groupText(name, spans, 6)).append(':') // mm
                             .append("00") // ss
                             .toString());
         }
+    }
 
-        // 匹配 ***20230101_123045*** 或 ***20230101*** 或 ***20230101126040***
-        // 格式，支持任意前后缀，时间部分可选
-        java.util.regex.Pattern p1 = java.util.regex.Pattern.compile("[^\\d]*(\\d{8})(?:[_\\s]?+(\\d{6}))?[^\\d]*",
-                java.util.regex.Pattern.CASE_INSENSITIVE);
-        java.util.regex.Matcher m1 = p1.matcher(fileName);
-        if (m1.find()) {
-            String date = m1.group(1); // 20230101
-            String time = m1.group(2); // 123045 或 null（如果时间部分不存在）
-
-            StringBuilder dateTimeBuilder = new StringBuilder()
-                    .append(date, 0, 4).append(':')
-                    .append(date, 4, 6).append(':')
-                    .append(date, 6, 8).append(' ');
-
-            // 如果时间部分存在，则添加时间信息，否则默认为 00:00:00
-            if (time != null) {
-                dateTimeBuilder.append(time, 0, 2).append(':')
-                        .append(time, 2, 4).append(':')
-                        .append(time, 4, 6);
-            } else {
-                dateTimeBuilder.append("00:00:00");
-            }
+    // IMG_20230101_123045、20230101、20230101123045
+    private class CompactRule extends Rule {
+        CompactRule() {
+            super("CompactRule");
+        }
 
-            // 验证时间戳的合理性（1970-01-01 到 ）
-            Date parsedDate = parseExifDateTime(dateTimeBuilder.toString());
-            if (parsedDate != null) {
-                long timestamp = parsedDate.getTime();
-                if (timestamp >= minTimestamp && timestamp <= maxTimestamp) {
-                    return parsedDate;
-                }
+        @Override
+        int[] find(String baseName) {
+            return findSpans(COMPACT_PATTERN, baseName);
+        }
+
+        @Override
+        FileNameAutomaton.Step[] condition() {
+            return digits(8);
+        }
+
+        @Override
+        long decode(String name, int[] spans, long maxTimestamp) {
+            // 组1: 20230101，组2: 123045 或不存在（此时默认为 00:00:00）
+            int hour = 0;
+            int minute = 0;
+            int second = 0;
+            if (hasGroup(spans, 2)) {
+                hour = groupDigits(name, spans, 2, 0, 2);
+                minute = groupDigits(name, spans, 2, 2, 2);
+                second = groupDigits(name, spans, 2, 4, 2);
             }
+
+            return checkRange(DateTimeUtils.toEpochMillis(
+                    groupDigits(name, spans, 1, 0, 4),
+                    groupDigits(name, spans, 1, 4, 2),
+                    groupDigits(name, spans, 1, 6, 2),
+                    hour, minute, second), maxTimestamp);
+        }
+    }
+
+    // 2022-06-25_12.13.07.326、2022/06/25 12:13、2022_06_25-12.13.07
+    private class SeparatedRule extends Rule {
+        SeparatedRule() {
+            super("SeparatedRule");
         }
 
-        // 匹配 灵活的日期时间格式，支持多种分隔符，时间、秒和毫秒都是可选的
-        // 支持格式示例：2022-06-25_12.13.07.326、2022/06/25 12:13、2022_06_25-12.13.07等
-        // 支持分隔符：- / _ . 空格
-        // 使用更简洁可读的正则表达式格式
-        // "(\\d{4})[-\\/\\:_\\.\\s]+(\\d{2})[-\\/\\:_\\.\\s]+(\\d{2})\\s*?(?:(\\d{2})[-\\/\\:_\\.\\s]+(\\d{2})(?:[-\\/\\:_\\.\\s]+(\\d{2})(?:[-\\/\\:_\\.\\s]+(\\d{1,3}))?)?)?");
-        String dateSeparator = "[-\\/\\:_\\.\\s]";
-        String p3Pattern = String.format(
-                "^.*?(\\d{4})%s(\\d{2})%s(\\d{2})%s+?(?:(\\d{2})%s(\\d{2})(?:%s(\\d{2})(?:%s(\\d{1,3}))?)?)?.*$",
-                dateSeparator, dateSeparator, dateSeparator, dateSeparator, dateSeparator, dateSeparator);
-        java.util.regex.Pattern p3 = java.util.regex.Pattern.compile(p3Pattern);
-        java.util.regex.Matcher m3 = p3.matcher(fileName);
-        if (m3.find()) {
-            // 构建日期时间字符串
-            StringBuilder dateTimeStrBuilder = new StringBuilder()
-                    .append(m3.group(1)).append(':') // yyyy
-                    .append(m3.group(2)).append(':') // MM
-                    .append(m3.group(3)).append(' '); // dd
-
-            // 时间部分是可选的
-            String hourGroup = m3.group(4);
-            String minuteGroup = m3.group(5);
-            String secondGroup = m3.group(6);
-            String millisecondGroup = m3.group(7);
-
-            // 如果有时间部分（小时和分钟）
-            if (hourGroup != null && minuteGroup != null) {
-                dateTimeStrBuilder
-                        .append(hourGroup).append(':') // HH
-                        .append(minuteGroup); // mm
-
-                // 秒部分是可选的
-                if (secondGroup != null) {
-                    dateTimeStrBuilder.append(':').append(secondGroup); // ss
-                } else {
-                    dateTimeStrBuilder.append(':').append("00"); // 默认秒为00
-                }
-            } else {
-                // 如果没有时间部分，添加默认时间 00:00:00
-                dateTimeStrBuilder.append("00:00:00");
-            }
-
-            String dateTimeStr = dateTimeStrBuilder.toString();
-            Date date = parseExifDateTime(dateTimeStr);
-
-            if (date != null && millisecondGroup != null) {
-                // 添加毫秒（处理1-3位毫秒）
-                try {
-                    // 确保毫秒是3位数
-                    String paddedMillis = String.format("%3s", millisecondGroup).replace(' ', '0');
-                    int milliseconds = Integer.parseInt(paddedMillis);
-                    return new Date(date.getTime() + milliseconds);
-                } catch (NumberFormatException e) {
-                    // 忽略毫秒部分，返回不带毫秒的时间
+        @Override
+        int[] find(String baseName) {
+            return findSpans(SEPARATED_PATTERN, baseName);
+        }
+
+        @Override
+        FileNameAutomaton.Step[] condition() {
+            FileNameAutomaton.Step digit = FileNameAutomaton.Step.digit();
+            FileNameAutomaton.Step separator = FileNameAutomaton.Step.anyOf("-/:_." + FileNameAutomaton.WHITESPACE);
+            return new FileNameAutomaton.Step[] {
+                    digit, digit, digit, digit, separator, digit, digit, separator, digit, digit, separator
+            };
+        }
+
+        @Override
+        long decode(String name, int[] spans, long maxTimestamp) {
+            // 时间部分是可选的：没有小时和分钟时为 00:00:00，没有秒时秒为00
+            int hour = 0;
+            int minute = 0;
+            int second = 0;
+            if (hasGroup(spans, 4) && hasGroup(spans, 5)) {
+                hour = groupDigits(name, spans, 4);
+                minute = groupDigits(name, spans, 5);
+                if (hasGroup(spans, 6)) {
+                    second = groupDigits(name, spans, 6);
                 }
             }
 
-            // 验证时间戳的合理性（1970-01-01 到 2100-12-31）
-            if (date != null) {
-                long timestamp = date.getTime();
-                if (timestamp >= minTimestamp && timestamp <= maxTimestamp) {
-                    return date;
-                }
+            long timestamp = DateTimeUtils.toEpochMillis(
+                    groupDigits(name, spans, 1), // yyyy
+                    groupDigits(name, spans, 2), // MM
+                    groupDigits(name, spans, 3), // dd
+                    hour, minute, second);
+
+            if (hasGroup(spans, 7)) {
+                // 添加毫秒（1-3位按数值处理，如 "5" 即 005），带毫秒时不做范围校验
+                return timestamp + groupDigits(name, spans, 7);
             }
+
+            return checkRange(timestamp, maxTimestamp);
         }
+    }
 
-        // 匹配Unix时间戳格式 (10位秒级或13位毫秒级)，支持前后带有非数字字符串
-        java.util.regex.Pattern timestampPattern = java.util.regex.Pattern.compile("[^\\d]*(\\d{10}|\\d{13})[^\\d]*");
-        java.util.regex.Matcher timestampMatcher = timestampPattern.matcher(fileName);
-        if (timestampMatcher.find()) {
-            try {
-                String timestampStr = timestampMatcher.group(1);
-                long timestamp;
-                // 判断是秒级还是毫秒级时间戳
-                if (timestampStr.length() == 10) {
-                    // 秒级时间戳，转换为毫秒
-                    timestamp = Long.parseLong(timestampStr) * 1000;
-                } else {
-                    // 毫秒级时间戳
-                    timestamp = Long.parseLong(timestampStr);
-                }
+    // 1748512965.jpg、1748512965775.jpg
+    private class TimestampRule extends Rule {
+        TimestampRule() {
+            super("TimestampRule");
+        }
 
-                // 验证时间戳的合理性（1970-01-01 到 2100-12-31）
-                if (timestamp >= minTimestamp && timestamp <= maxTimestamp) {
-                    return new Date(timestamp);
-                }
-            } catch (NumberFormatException e) {
-                // 解析失败，继续尝试其他格式
-                LogUtils.w(TAG, "解析Unix时间戳失败: " + timestampMatcher.group(1), e);
+        @Override
+        int[] find(String baseName) {
+            return findSpans(TIMESTAMP_PATTERN, baseName);
+        }
+
+        @Override
+        FileNameAutomaton.Step[] condition() {
+            return digits(10);
+        }
+
+        @Override
+        long decode(String name, int[] spans, long maxTimestamp) {
+            long timestamp = 0;
+            for (int i = spans[0]; i < spans[1]; i++) {
+                timestamp = timestamp * 10 + (name.charAt(i) - '0');
             }
+            // 判断是秒级还是毫秒级时间戳，秒级转换为毫秒
+            if (groupLength(spans, 1) == 10) {
+                timestamp *= 1000;
+            }
+            return checkRange(timestamp, maxTimestamp);
         }
+    }
 
-        // 匹配 2023-01-01、2023-01或2023格式，分隔符支持-、/、.、_和空格
-        java.util.regex.Pattern p2 = java.util.regex.Pattern
-                .compile(
-                        "(\\d{4})([-\\/\\._\\s])?(\\d{2})?([-\\/\\._\\s])?(\\d{2})?");
-        java.util.regex.Matcher m2 = p2.matcher(fileName);
-        if (m2.find()) {
-            StringBuilder dateTimeBuilder = new StringBuilder()
-                    .append(m2.group(1)).append(':'); // yyyy
+    // 2023-01-01、2023-01、2023
+    private class YearMonthDayRule extends Rule {
+        YearMonthDayRule() {
+            super("YearMonthDayRule");
+        }
 
-            // 如果有月份，添加月份，否则默认为01
-            if (m2.group(3) != null) {
-                dateTimeBuilder.append(m2.group(3)).append(':');
+        @Override
+        int[] find(String baseName) {
+            return findSpans(YEAR_MONTH_DAY_PATTERN, baseName);
+        }
+
+        @Override
+        FileNameAutomaton.Step[] condition() {
+            return digits(4);
+        }
+
+        @Override
+        long decode(String name, int[] spans, long maxTimestamp) {
+            // 没有月份或日期时默认为01，时间部分默认为00:00:00
+            return checkRange(DateTimeUtils.toEpochMillis(
+                    groupDigits(name, spans, 1),
+                    hasGroup(spans, 3) ? groupDigits(name, spans, 3) : 1,
+                    hasGroup(spans, 5) ? groupDigits(name, spans, 5) : 1,
+                    0, 0, 0), maxTimestamp);
+        }
+    }
+
+    // 按 FileNameTemplate 匹配的模板规则（厂商模板或用户模板）
+    private class TemplateRule extends Rule {
+        private final FileNameTemplate template;
+
+        TemplateRule(String name, FileNameTemplate template) {
+            super(name);
+            this.template = template;
+        }
+
+        @Override
+        int[] find(String baseName) {
+            return template.matches(baseName, baseName.length()) ? new int[] { 0, template.length() } : null;
+        }
+
+        @Override
+        long decode(String name, int[] spans, long maxTimestamp) {
+            return template.decode(name, maxTimestamp);
+        }
+
+        // 自动机已确认结构匹配，直接换算，不创建字段位置数组
+        long apply(String name, long maxTimestamp) {
+            long timestamp = template.decode(name, maxTimestamp);
+            if (timestamp != DateTimeUtils.INVALID) {
+                super.hitCount.incrementAndGet();
             } else {
-                dateTimeBuilder.append("01:");
+                super.missCount.incrementAndGet();
             }
+            return timestamp;
+        }
 
-            // 如果有日期，添加日期，否则默认为01
-            if (m2.group(5) != null) {
-                dateTimeBuilder.append(m2.group(5)).append(' ');
-            } else {
-                dateTimeBuilder.append("01 ");
+        // 结构符合且结果合理时换算并计入命中；否则返回 INVALID 且不计数，由调用方按完整流程处理
+        long applyIfMatches(String name, int end, long maxTimestamp) {
+            if (!template.matches(name, end)) {
+                return DateTimeUtils.INVALID;
+            }
+            long timestamp = template.decode(name, maxTimestamp);
+            if (timestamp != DateTimeUtils.INVALID) {
+                super.hitCount.incrementAndGet();
+            }
+            return timestamp;
+        }
+    }
+
+    /**
+     * 模板规则及其自动机
+     * <p>
+     * 自动机中每个模板、每条通用规则的必要条件各占一位，加载用户模板时整体替换，读取方无需加锁。
+     * </p>
+     */
+    private static final class TemplateSet {
+        // 按优先级排列：用户模板在前，厂商模板在后
+        final TemplateRule[] templateRules;
+        final int userCount;
+        // 各模板规则在自动机结果中的位
+        final long[] templateBits;
+        // 各通用规则（按 Rule.index）的必要条件在自动机结果中的位
+        final long[] conditionBits;
+        final FileNameAutomaton automaton;
+        // 所有模板规则的位
+        private final long templateMask;
+        // 各模板规则是否不会与更高优先级的模板匹配同一个文件名
+        private final boolean[] exclusive;
+
+        TemplateSet(TemplateRule[] templateRules, int userCount, long[] templateBits, long[] conditionBits,
+                FileNameAutomaton automaton) {
+            this.templateRules = templateRules;
+            this.userCount = userCount;
+            this.templateBits = templateBits;
+            this.conditionBits = conditionBits;
+            this.automaton = automaton;
+            long mask = 0;
+            for (long bit : templateBits) {
+                mask |= bit;
+            }
+            this.templateMask = mask;
+            exclusive = new boolean[templateRules.length];
+            for (int i = 0; i < templateRules.length; i++) {
+                exclusive[i] = true;
+                for (int j = 0; j < i; j++) {
+                    if (templateRules[i].template.overlaps(templateRules[j].template)) {
+                        exclusive[i] = false;
+                        break;
+                    }
+                }
             }
+        }
 
-            // 时间部分默认为00:00:00
-            dateTimeBuilder.append("00:00:00");
+        // 自动机结果中优先级最高的模板规则；它可能被更高优先级的模板覆盖时返回 null
+        TemplateRule exclusiveFirst(long mask) {
+            if ((mask & templateMask) == 0) {
+                return null;
+            }
+            for (int i = 0; i < templateRules.length; i++) {
+                if ((mask & templateBits[i]) != 0) {
+                    return exclusive[i] ? templateRules[i] : null;
+                }
+            }
+            return null;
+        }
 
-            // 验证时间戳的合理性（1970-01-01 到 ）
-            Date parsedDate = parseExifDateTime(dateTimeBuilder.toString());
-            if (parsedDate != null) {
-                long timestamp = parsedDate.getTime();
-                if (timestamp >= minTimestamp && timestamp <= maxTimestamp) {
-                    return parsedDate;
+        // 按优先级尝试自动机结果中匹配的模板规则，都不合理时返回 INVALID
+        long decode(String name, long mask, long maxTimestamp) {
+            if ((mask & templateMask) == 0) {
+                return DateTimeUtils.INVALID;
+            }
+            for (int i = 0; i < templateRules.length; i++) {
+                if ((mask & templateBits[i]) != 0) {
+                    long timestamp = templateRules[i].apply(name, maxTimestamp);
+                    if (timestamp != DateTimeUtils.INVALID) {
+                        return timestamp;
+                    }
                 }
             }
+            return DateTimeUtils.INVALID;
+        }
+    }
+
+    // 批量解析任务，按二分拆分到不超过 BATCH_SPLIT_THRESHOLD 个文件名后顺序解析
+    private class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] fileNames;
+        private final long[] results;
+        private final int from;
+        private final int to;
+        private final Rule[] chain;
+        private final TemplateSet templates;
+        private final ShapeCache cache;
+        private final boolean dispatch;
+        private final long maxTimestamp;
 
+        BatchTask(String[] fileNames, long[] results, int from, int to, Rule[] chain, TemplateSet templates,
+                ShapeCache cache, boolean dispatch, long maxTimestamp) {
+            this.fileNames = fileNames;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chain = chain;
+            this.templates = templates;
+            this.cache = cache;
+            this.dispatch = dispatch;
+            this.maxTimestamp = maxTimestamp;
         }
 
-        return null;
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+                parseRange(fileNames, results, from, to, chain, templates, cache, dispatch, maxTimestamp);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(fileNames, results, from, middle, chain, templates, cache, dispatch, maxTimestamp),
+                    new BatchTask(fileNames, results, middle, to, chain, templates, cache, dispatch, maxTimestamp));
+        }
     }
 
     /**
-     * 解析EXIF格式的日期时间字符串
+     * 文件名形状到各规则字段位置的LRU缓存
      * <p>
-     * EXIF日期格式: "2023:01:01 12:30:45"
+     * 形状即把 0-9 折叠为同一类字符后的文件名（不含扩展名），如 IMG_########_######。
+     * 查找时直接在原文件名上比较形状，不创建子字符串。
      * </p>
-     * 
-     * @param dateString EXIF格式的日期时间字符串
-     * @return 解析出的 Date 对象；若解析失败则返回 null
      */
-    public Date parseExifDateTime(String dateString) {
-        try {
-            // EXIF日期格式: "2023:01:01 12:30:45"
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.getDefault());
-            return sdf.parse(dateString);
-        } catch (ParseException e) {
-            return null;
+    private static final class ShapeCache {
+        private final Map<ShapeKey, int[][]> entries;
+        final AtomicLong hitCount = new AtomicLong();
+        final AtomicLong missCount = new AtomicLong();
+
+        ShapeCache(final int maxEntries) {
+            // 按访问顺序排列，超出容量时淘汰最久未使用的形状
+            entries = new LinkedHashMap<ShapeKey, int[][]>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ShapeKey, int[][]> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        int[][] get(String fileName, int end) {
+            ShapeKey probe = new ShapeKey(fileName, end);
+            int[][] spansByRule;
+            synchronized (entries) {
+                spansByRule = entries.get(probe);
+            }
+            if (spansByRule != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+            }
+            return spansByRule;
+        }
+
+        void put(String fileName, int end, int[][] spansByRule) {
+            synchronized (entries) {
+                entries.put(new ShapeKey(fileName, end), spansByRule);
+            }
+        }
+
+        int size() {
+            synchronized (entries) {
+                return entries.size();
+            }
+        }
+    }
+
+    // 以文件名前 length 个字符的形状作为键：长度相同、数字位置相同且其它字符完全相同时视为相等
+    private static final class ShapeKey {
+        private final String name;
+        private final int length;
+        private final int hash;
+
+        ShapeKey(String name, int length) {
+            this.name = name;
+            this.length = length;
+            int h = length;
+            for (int i = 0; i < length; i++) {
+                char c = name.charAt(i);
+                h = 31 * h + (isDigit(c) ? '0' : c);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ShapeKey)) {
+                return false;
+            }
+            ShapeKey other = (ShapeKey) o;
+            return hash == other.hash && matches(other.name, other.length);
+        }
+
+        // 与 otherName 的前 otherLength 个字符形状是否相同
+        boolean matches(String otherName, int otherLength) {
+            if (length != otherLength) {
+                return false;
+            }
+            // 同一目录中相邻文件名的数字各不相同，逐字符分支难以预测，这里不用分支累计差异
+            int mismatch = 0;
+            for (int i = 0; i < length; i++) {
+                char a = name.charAt(i);
+                char b = otherName.charAt(i);
+                // 任一方不是数字时为1（非数字减 '0' 后按无符号比较大于9）
+                int notDigits = ((9 - (char) (a - '0')) | (9 - (char) (b - '0'))) >>> 31;
+                // 两个字符不同时为1
+                int differ = ((a ^ b) | -(a ^ b)) >>> 31;
+                mismatch |= differ & notDigits;
+            }
+            return mismatch == 0;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
         }
     }
-}
\ No newline at end of file
+}
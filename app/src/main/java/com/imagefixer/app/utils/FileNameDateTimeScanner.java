@@ -0,0 +1,386 @@
+package com.imagefixer.app.utils;
+
+import java.util.List;
+
+/**
+ * 不依赖正则表达式的文件名日期时间扫描器
+ * <p>
+ * 与 {@link FileNameDateTimeParser} 支持相同的格式和相同的优先级，但只从左到右扫描一遍文件名，
+ * 在扫描过程中记录各格式候选数字串的位置，扫描结束后按优先级取第一个合理的结果。
+ * 解析过程不创建 Date、Matcher、StringBuilder 或子字符串，结果以毫秒时间戳（long）返回，
+ * 适合在低端设备上连续解析海量文件名。
+ * </p>
+ * <p>
+ * 与解析器的前缀分派一样，先按顺序尝试模板（{@link FileNameTemplate}，默认为内置的厂商模板），
+ * 都不匹配或字段不合法时再扫描通用格式。
+ * </p>
+ * <p>
+ * 该类创建后不可变，可在多线程间共享。
+ * </p>
+ */
+public class FileNameDateTimeScanner {
+    /** 无法解析时的返回值 */
+    public static final long NO_MATCH = DateTimeUtils.INVALID;
+
+    // 中文上午/下午格式中小时、分钟允许的最大位数，超出后视为不匹配
+    private static final int MAX_FIELD_DIGITS = 9;
+
+    // 在通用格式之前按顺序尝试的模板
+    private final FileNameTemplate[] templates;
+
+    /**
+     * 使用内置的厂商模板，与默认配置的 {@link FileNameDateTimeParser} 一致
+     */
+    public FileNameDateTimeScanner() {
+        this(FileNameDateTimeParser.compileVendorTemplates());
+    }
+
+    /**
+     * @param templates 在通用格式之前按顺序尝试的模板，为空时只扫描通用格式
+     */
+    public FileNameDateTimeScanner(List<FileNameTemplate> templates) {
+        this.templates = templates.toArray(new FileNameTemplate[0]);
+    }
+
+    /**
+     * 从文件名中提取日期时间
+     *
+     * @param fileName 文件名（包含扩展名）
+     * @return 毫秒时间戳；若无法解析则返回 {@link #NO_MATCH}
+     */
+    public long parse(String fileName) {
+        return parse(fileName, System.currentTimeMillis());
+    }
+
+    /**
+     * 从文件名中提取日期时间
+     *
+     * @param fileName     文件名（包含扩展名）
+     * @param maxTimestamp 允许的最大时间戳，超出范围的候选结果会被跳过
+     * @return 毫秒时间戳；若无法解析则返回 {@link #NO_MATCH}
+     */
+    public long parse(String fileName, long maxTimestamp) {
+        if (fileName == null || fileName.isEmpty()) {
+            return NO_MATCH;
+        }
+
+        // 去掉扩展名（只移动结束位置，不创建子字符串）
+        int end = fileName.lastIndexOf('.');
+        if (end <= 0) {
+            end = fileName.length();
+        }
+
+        for (FileNameTemplate template : templates) {
+            if (template.matches(fileName, end)) {
+                long result = template.decode(fileName, maxTimestamp);
+                if (result != NO_MATCH) {
+                    return result;
+                }
+            }
+        }
+
+        // 各格式候选数字串的起始位置，-1 表示尚未发现
+        int compactStart = -1;
+        int compactLength = 0;
+        int separatedStart = -1;
+        int timestampStart = -1;
+        int yearStart = -1;
+
+        int i = 0;
+        while (i < end) {
+            if (!isDigit(fileName.charAt(i))) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            while (i < end && isDigit(fileName.charAt(i))) {
+                i++;
+            }
+            int runLength = i - runStart;
+
+            // .2023_02_17 下午9_30 格式优先级最高，匹配即返回
+            if (runLength == 4 && runStart > 0 && fileName.charAt(runStart - 1) == '.') {
+                long result = matchChineseAmPm(fileName, runStart, end);
+                if (result != NO_MATCH) {
+                    return result;
+                }
+            }
+            // 20230101_123045：第一个不少于8位的数字串
+            if (compactStart < 0 && runLength >= 8) {
+                compactStart = runStart;
+                compactLength = runLength;
+            }
+            // 2023-01-01-12-30-45：年份是数字串的最后4位，后面紧跟 分隔符+2位+分隔符+2位+分隔符
+            if (separatedStart < 0 && runLength >= 4 && isSeparatedDate(fileName, i, end)) {
+                separatedStart = i - 4;
+            }
+            // 1748512965：第一个不少于10位的数字串
+            if (timestampStart < 0 && runLength >= 10) {
+                timestampStart = runStart;
+            }
+            // 2023-01-01、2023：第一个不少于4位的数字串
+            if (yearStart < 0 && runLength >= 4) {
+                yearStart = runStart;
+            }
+        }
+
+        long result;
+        if (compactStart >= 0) {
+            result = decodeCompact(fileName, compactStart, compactLength, end);
+            if (isInRange(result, maxTimestamp)) {
+                return result;
+            }
+        }
+        if (separatedStart >= 0) {
+            result = decodeSeparated(fileName, separatedStart, end, maxTimestamp);
+            if (result != NO_MATCH) {
+                return result;
+            }
+        }
+        if (timestampStart >= 0) {
+            result = parseLongDigits(fileName, timestampStart, 10) * 1000L;
+            if (isInRange(result, maxTimestamp)) {
+                return result;
+            }
+        }
+        if (yearStart >= 0) {
+            result = decodeYearMonthDay(fileName, yearStart, end);
+            if (isInRange(result, maxTimestamp)) {
+                return result;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    // .2023_02_17 下午9_30，start 指向年份第一位；不匹配时返回 NO_MATCH
+    private static long matchChineseAmPm(String s, int start, int end) {
+        int pos = start + 4;
+        if (!isCharAt(s, pos, '_', end) || !isDigits(s, pos + 1, 2, end)
+                || !isCharAt(s, pos + 3, '_', end) || !isDigits(s, pos + 4, 2, end)) {
+            return NO_MATCH;
+        }
+        pos += 6;
+
+        // 至少一个空白字符
+        int whitespaceStart = pos;
+        while (pos < end && isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        if (pos == whitespaceStart) {
+            return NO_MATCH;
+        }
+
+        // 至少一个 上/下/午 字符，同时记录是否包含"上午"或"下午"
+        int markerStart = pos;
+        boolean morning = false;
+        boolean afternoon = false;
+        char previous = 0;
+        while (pos < end) {
+            char c = s.charAt(pos);
+            if (c != '上' && c != '下' && c != '午') {
+                break;
+            }
+            if (c == '午' && previous == '上') {
+                morning = true;
+            } else if (c == '午' && previous == '下') {
+                afternoon = true;
+            }
+            previous = c;
+            pos++;
+        }
+        if (pos == markerStart) {
+            return NO_MATCH;
+        }
+
+        int hourLength = digitRunLength(s, pos, end);
+        if (hourLength == 0 || hourLength > MAX_FIELD_DIGITS) {
+            return NO_MATCH;
+        }
+        int hour = parseDigits(s, pos, hourLength);
+        pos += hourLength;
+        if (!isCharAt(s, pos, '_', end)) {
+            return NO_MATCH;
+        }
+        pos++;
+        int minuteLength = digitRunLength(s, pos, end);
+        if (minuteLength == 0 || minuteLength > MAX_FIELD_DIGITS) {
+            return NO_MATCH;
+        }
+        int minute = parseDigits(s, pos, minuteLength);
+
+        // 处理上午/下午
+        if (afternoon && hour < 12) {
+            hour += 12;
+        } else if (morning && hour == 12) {
+            hour = 0;
+        }
+
+        return DateTimeUtils.toEpochMillis(
+                parseDigits(s, start, 4),
+                parseDigits(s, start + 5, 2),
+                parseDigits(s, start + 8, 2),
+                hour, minute, 0);
+    }
+
+    // 20230101、20230101123045、20230101_123045，start 指向日期第一位
+    private static long decodeCompact(String s, int start, int length, int end) {
+        int timeStart = -1;
+        if (length >= 14) {
+            timeStart = start + 8;
+        } else if (length == 8) {
+            int separator = start + 8;
+            if (separator < end && (s.charAt(separator) == '_' || isWhitespace(s.charAt(separator)))
+                    && isDigits(s, separator + 1, 6, end)) {
+                timeStart = separator + 1;
+            }
+        }
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (timeStart >= 0) {
+            hour = parseDigits(s, timeStart, 2);
+            minute = parseDigits(s, timeStart + 2, 2);
+            second = parseDigits(s, timeStart + 4, 2);
+        }
+        return DateTimeUtils.toEpochMillis(
+                parseDigits(s, start, 4),
+                parseDigits(s, start + 4, 2),
+                parseDigits(s, start + 6, 2),
+                hour, minute, second);
+    }
+
+    // 年份后面是否紧跟 分隔符 + 2位数字 + 分隔符 + 2位数字 + 分隔符
+    private static boolean isSeparatedDate(String s, int yearEnd, int end) {
+        return isSeparatorAt(s, yearEnd, end)
+                && isDigits(s, yearEnd + 1, 2, end)
+                && isSeparatorAt(s, yearEnd + 3, end)
+                && isDigits(s, yearEnd + 4, 2, end)
+                && isSeparatorAt(s, yearEnd + 6, end);
+    }
+
+    // 2022-06-25_12.13.07.326，start 指向年份第一位；带毫秒时不做范围校验（与正则实现一致）
+    private static long decodeSeparated(String s, int start, int end, long maxTimestamp) {
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millis = -1;
+
+        // 日期后只允许一个分隔符，再跟 时+分隔符+分
+        int time = start + 11;
+        if (isDigits(s, time, 2, end) && isSeparatorAt(s, time + 2, end) && isDigits(s, time + 3, 2, end)) {
+            hour = parseDigits(s, time, 2);
+            minute = parseDigits(s, time + 3, 2);
+            // 秒是可选的
+            if (isSeparatorAt(s, time + 5, end) && isDigits(s, time + 6, 2, end)) {
+                second = parseDigits(s, time + 6, 2);
+                // 毫秒是可选的（1-3位）
+                if (isSeparatorAt(s, time + 8, end)) {
+                    int millisLength = Math.min(3, digitRunLength(s, time + 9, end));
+                    if (millisLength > 0) {
+                        millis = parseDigits(s, time + 9, millisLength);
+                    }
+                }
+            }
+        }
+
+        long result = DateTimeUtils.toEpochMillis(
+                parseDigits(s, start, 4),
+                parseDigits(s, start + 5, 2),
+                parseDigits(s, start + 8, 2),
+                hour, minute, second);
+        if (millis >= 0) {
+            return result + millis;
+        }
+        return isInRange(result, maxTimestamp) ? result : NO_MATCH;
+    }
+
+    // 2023-01-01、2023-01、2023，缺省的月、日按01处理
+    private static long decodeYearMonthDay(String s, int start, int end) {
+        int pos = start + 4;
+        int month = 1;
+        int day = 1;
+        if (pos < end && isDateSeparator(s.charAt(pos))) {
+            pos++;
+        }
+        if (isDigits(s, pos, 2, end)) {
+            month = parseDigits(s, pos, 2);
+            pos += 2;
+        }
+        if (pos < end && isDateSeparator(s.charAt(pos))) {
+            pos++;
+        }
+        if (isDigits(s, pos, 2, end)) {
+            day = parseDigits(s, pos, 2);
+        }
+        return DateTimeUtils.toEpochMillis(parseDigits(s, start, 4), month, day, 0, 0, 0);
+    }
+
+    // 验证时间戳的合理性（1970-01-01 到 maxTimestamp）
+    private static boolean isInRange(long timestamp, long maxTimestamp) {
+        return timestamp >= 0 && timestamp <= maxTimestamp;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // 与正则表达式 \s 相同的空白字符集合
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // 日期时间分隔符：- / : _ . 空白字符
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == '/' || c == ':' || c == '_' || c == '.' || isWhitespace(c);
+    }
+
+    // 年月日分隔符：- / . _ 空白字符（不含冒号）
+    private static boolean isDateSeparator(char c) {
+        return c == '-' || c == '/' || c == '.' || c == '_' || isWhitespace(c);
+    }
+
+    private static boolean isSeparatorAt(String s, int pos, int end) {
+        return pos < end && isSeparator(s.charAt(pos));
+    }
+
+    private static boolean isCharAt(String s, int pos, char expected, int end) {
+        return pos < end && s.charAt(pos) == expected;
+    }
+
+    private static boolean isDigits(String s, int pos, int count, int end) {
+        if (pos + count > end) {
+            return false;
+        }
+        for (int i = pos; i < pos + count; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digitRunLength(String s, int pos, int end) {
+        int i = pos;
+        while (i < end && isDigit(s.charAt(i))) {
+            i++;
+        }
+        return i - pos;
+    }
+
+    private static long parseLongDigits(String s, int pos, int count) {
+        long value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static int parseDigits(String s, int pos, int count) {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,330 @@
+package com.imagefixer.app.utils;
+
+/**
+ * 定宽文件名日期模板
+ * <p>
+ * 写法与 SimpleDateFormat 类似，用于描述某个应用或设备固定的文件名格式，例如：
+ * <ul>
+ * <li>'IMG_'yyyyMMdd'_'HHmmss* - IMG_20230101_123045.jpg</li>
+ * <li>'PXL_'yyyyMMdd'_'HHmmssSSS* - PXL_20230101_123045123.MP.jpg</li>
+ * <li>'mmexport'TTTTTTTTTTTTT* - mmexport1600000000000.jpg</li>
+ * </ul>
+ * 字段字母：y 年、M 月、d 日、H 时、m 分、s 秒、S 毫秒、T Unix时间戳（10位秒级或13位毫秒级），
+ * 每个字母重复几次就匹配几位数字；# 匹配任意一位数字（不参与换算）；
+ * 单引号内的文本和其它非字母字符按原样匹配，两个单引号表示单引号本身；
+ * 末尾的 * 表示允许任意后缀，否则模板必须匹配到文件名（不含扩展名）结尾。
+ * </p>
+ * <p>
+ * 模板从文件名开头匹配，不使用正则表达式，匹配和换算都不创建对象。
+ * 与宽松的 SimpleDateFormat 不同，字段必须是合法的日期时间（如月份 1-12），否则视为不匹配。
+ * 该类不可变，可在多线程间共享。
+ * </p>
+ */
+public final class FileNameTemplate {
+    // 每个位置的类型：字面字符，或以下数字字段
+    static final byte LITERAL = 0;
+    static final byte YEAR = 1;
+    static final byte MONTH = 2;
+    static final byte DAY = 3;
+    static final byte HOUR = 4;
+    static final byte MINUTE = 5;
+    static final byte SECOND = 6;
+    static final byte MILLIS = 7;
+    static final byte EPOCH = 8;
+    static final byte ANY_DIGIT = 9;
+
+    private static final int FIELD_COUNT = 10;
+
+    private final String pattern;
+    // 各位置的类型和字面字符
+    private final byte[] kinds;
+    private final char[] literals;
+    // 是否允许任意后缀
+    private final boolean anySuffix;
+    // 各字段的位数，0表示模板中没有该字段
+    private final int[] fieldWidths = new int[FIELD_COUNT];
+    // 各字段的数字所在位置（按从高位到低位的顺序）
+    private final int[][] fieldPositions = new int[FIELD_COUNT][];
+    // 开头连续字面字符的长度
+    private final int literalPrefixLength;
+
+    private FileNameTemplate(String pattern, byte[] kinds, char[] literals, boolean anySuffix) {
+        this.pattern = pattern;
+        this.kinds = kinds;
+        this.literals = literals;
+        this.anySuffix = anySuffix;
+        for (byte kind : kinds) {
+            fieldWidths[kind]++;
+        }
+        for (int kind = 0; kind < FIELD_COUNT; kind++) {
+            fieldPositions[kind] = new int[fieldWidths[kind]];
+        }
+        int[] filled = new int[FIELD_COUNT];
+        for (int i = 0; i < kinds.length; i++) {
+            fieldPositions[kinds[i]][filled[kinds[i]]++] = i;
+        }
+        int prefix = 0;
+        while (prefix < kinds.length && kinds[prefix] == LITERAL) {
+            prefix++;
+        }
+        this.literalPrefixLength = prefix;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param pattern 模板字符串
+     * @return 编译后的模板
+     * @throws IllegalArgumentException 模板语法错误，或缺少日期字段
+     */
+    public static FileNameTemplate compile(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("模板不能为空");
+        }
+        int length = pattern.length();
+        boolean anySuffix = pattern.charAt(length - 1) == '*';
+        if (anySuffix) {
+            length--;
+        }
+
+        byte[] kinds = new byte[length];
+        char[] literals = new char[length];
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < length && pattern.charAt(i + 1) == '\'') {
+                    // 两个单引号表示单引号本身
+                    literals[count++] = '\'';
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+                continue;
+            }
+            if (quoted) {
+                literals[count++] = c;
+                continue;
+            }
+            byte kind = kindOf(c);
+            if (kind < 0) {
+                throw new IllegalArgumentException("模板中的未知字段 '" + c + "': " + pattern);
+            }
+            if (c == '*') {
+                throw new IllegalArgumentException("* 只能出现在模板末尾: " + pattern);
+            }
+            kinds[count] = kind;
+            literals[count] = kind == LITERAL ? c : 0;
+            count++;
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("模板中的单引号未闭合: " + pattern);
+        }
+
+        byte[] trimmedKinds = new byte[count];
+        char[] trimmedLiterals = new char[count];
+        System.arraycopy(kinds, 0, trimmedKinds, 0, count);
+        System.arraycopy(literals, 0, trimmedLiterals, 0, count);
+        FileNameTemplate template = new FileNameTemplate(pattern, trimmedKinds, trimmedLiterals, anySuffix);
+        template.validate();
+        return template;
+    }
+
+    // 字段字母对应的类型；非字母字符为字面字符；其它字母返回 -1
+    private static byte kindOf(char c) {
+        switch (c) {
+            case 'y':
+                return YEAR;
+            case 'M':
+                return MONTH;
+            case 'd':
+                return DAY;
+            case 'H':
+                return HOUR;
+            case 'm':
+                return MINUTE;
+            case 's':
+                return SECOND;
+            case 'S':
+                return MILLIS;
+            case 'T':
+                return EPOCH;
+            case '#':
+                return ANY_DIGIT;
+            default:
+                return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ? -1 : LITERAL;
+        }
+    }
+
+    private void validate() {
+        int epoch = fieldWidths[EPOCH];
+        if (epoch != 0) {
+            if (epoch != 10 && epoch != 13) {
+                throw new IllegalArgumentException("时间戳字段必须是10位或13位: " + pattern);
+            }
+            for (byte kind = YEAR; kind <= MILLIS; kind++) {
+                if (fieldWidths[kind] != 0) {
+                    throw new IllegalArgumentException("时间戳字段不能与日期字段同时使用: " + pattern);
+                }
+            }
+            return;
+        }
+        if (fieldWidths[YEAR] != 4) {
+            throw new IllegalArgumentException("模板必须包含4位年份 yyyy: " + pattern);
+        }
+        int[] maxWidths = { 0, 4, 2, 2, 2, 2, 2, 3 };
+        for (byte kind = MONTH; kind <= MILLIS; kind++) {
+            if (fieldWidths[kind] > maxWidths[kind]) {
+                throw new IllegalArgumentException("字段位数过多: " + pattern);
+            }
+        }
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return 模板开头的字面文本（如 "IMG_"）
+     */
+    public String getLiteralPrefix() {
+        return new String(literals, 0, literalPrefixLength);
+    }
+
+    /**
+     * @return 模板匹配的固定长度（不含任意后缀）
+     */
+    int length() {
+        return kinds.length;
+    }
+
+    /**
+     * @return 第 i 个位置是否匹配数字（否则匹配字面字符 {@link #literalAt}）
+     */
+    boolean isDigitAt(int i) {
+        return kinds[i] != LITERAL;
+    }
+
+    char literalAt(int i) {
+        return literals[i];
+    }
+
+    boolean hasAnySuffix() {
+        return anySuffix;
+    }
+
+    /**
+     * 判断文件名开头是否符合模板的结构（只检查字符类别，不检查数值）
+     *
+     * @param name 文件名
+     * @param end  去掉扩展名后的结束位置
+     * @return 是否符合
+     */
+    public boolean matches(String name, int end) {
+        int length = kinds.length;
+        if (end < length || (!anySuffix && end != length)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (kinds[i] == LITERAL ? c != literals[i] : !isDigit(c)) {
+                return false;
+            }
+        }
+        // 末尾数字字段后面不能紧跟数字，避免把更长的数字串截断
+        return length == 0 || end == length || kinds[length - 1] == LITERAL || !isDigit(name.charAt(length));
+    }
+
+    /**
+     * 判断是否存在同时符合两个模板结构的文件名（只比较字符类别）
+     *
+     * @param other 另一个模板
+     * @return 两个模板可能匹配同一个文件名时返回 true
+     */
+    boolean overlaps(FileNameTemplate other) {
+        FileNameTemplate shorter = kinds.length <= other.kinds.length ? this : other;
+        FileNameTemplate longer = shorter == this ? other : this;
+        int common = shorter.kinds.length;
+        for (int i = 0; i < common; i++) {
+            if (isDigitAt(i) != other.isDigitAt(i) || (!isDigitAt(i) && literals[i] != other.literals[i])) {
+                return false;
+            }
+        }
+        if (common == longer.kinds.length) {
+            return true;
+        }
+        // 较短的模板必须允许任意后缀，且末尾数字字段后面不能紧跟较长模板的数字
+        return shorter.anySuffix && (common == 0 || !shorter.isDigitAt(common - 1) || !longer.isDigitAt(common));
+    }
+
+    /**
+     * 按模板换算文件名中的日期时间
+     *
+     * @param name         已通过 {@link #matches} 检查的文件名
+     * @param maxTimestamp 允许的最大时间戳
+     * @return 毫秒时间戳；字段不合法或超出范围时返回 {@link DateTimeUtils#INVALID}
+     */
+    public long decode(String name, long maxTimestamp) {
+        long timestamp;
+        if (fieldWidths[EPOCH] != 0) {
+            long epoch = 0;
+            for (int position : fieldPositions[EPOCH]) {
+                epoch = epoch * 10 + (name.charAt(position) - '0');
+            }
+            timestamp = fieldWidths[EPOCH] == 10 ? epoch * 1000 : epoch;
+        } else {
+            int year = field(name, YEAR);
+            // 模板中没有月、日时按01处理
+            int month = fieldWidths[MONTH] != 0 ? field(name, MONTH) : 1;
+            int day = fieldWidths[DAY] != 0 ? field(name, DAY) : 1;
+            int hour = field(name, HOUR);
+            int minute = field(name, MINUTE);
+            int second = field(name, SECOND);
+            if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                    || hour > 23 || minute > 59 || second > 59) {
+                return DateTimeUtils.INVALID;
+            }
+            // 1-2位毫秒按小数位换算（如 "5" 表示 500 毫秒）
+            int millis = field(name, MILLIS);
+            for (int width = fieldWidths[MILLIS]; width > 0 && width < 3; width++) {
+                millis *= 10;
+            }
+            timestamp = DateTimeUtils.toEpochMillis(year, month, day, hour, minute, second) + millis;
+        }
+        return timestamp >= 0 && timestamp <= maxTimestamp ? timestamp : DateTimeUtils.INVALID;
+    }
+
+    // 读取字段的数值，模板中没有该字段时为0
+    private int field(String name, int kind) {
+        int value = 0;
+        for (int position : fieldPositions[kind]) {
+            value = value * 10 + (name.charAt(position) - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,190 @@
+package com.imagefixer.app.utils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件名日期解析的影子模式对比器
+ * <p>
+ * 以 {@link FileNameDateTimeParser} 作为主解析器，对每个文件名同时运行一个候选实现，
+ * 记录两者结果不一致的文件名以及各自的单次调用耗时，扫描结束后输出汇总。
+ * 调用方始终拿到主解析器的结果，候选实现只用于对比，不影响修复行为。
+ * </p>
+ * <p>
+ * 在确认候选实现（如 {@link FileNameDateTimeScanner}）在真实数据上与主解析器完全一致之前，
+ * 不应替换主解析器。该类可在多线程间共享。
+ * </p>
+ */
+public class ShadowFileNameParser {
+    private static final String TAG = "ShadowFileNameParser";
+
+    // 最多保留的不一致样本数量，避免大量不一致时占用过多内存
+    private static final int MAX_DISAGREEMENT_SAMPLES = 20;
+
+    /**
+     * 候选解析实现
+     */
+    public interface Candidate {
+        /**
+         * @return 候选实现的名称，用于日志输出
+         */
+        String getName();
+
+        /**
+         * 从文件名中提取日期时间
+         *
+         * @param fileName 文件名（包含扩展名）
+         * @return 毫秒时间戳；若无法解析则返回 {@link DateTimeUtils#INVALID}
+         */
+        long parse(String fileName);
+    }
+
+    private final FileNameDateTimeParser primary;
+    private final Candidate candidate;
+
+    private final AtomicLong comparedCount = new AtomicLong();
+    private final AtomicLong disagreementCount = new AtomicLong();
+    private final AtomicLong primaryNanos = new AtomicLong();
+    private final AtomicLong candidateNanos = new AtomicLong();
+    private final AtomicLong primaryMaxNanos = new AtomicLong();
+    private final AtomicLong candidateMaxNanos = new AtomicLong();
+    private final List<String> disagreements = new ArrayList<>();
+
+    /**
+     * 以 {@link FileNameDateTimeScanner} 作为候选实现，扫描器使用与主解析器相同的模板（用户模板和厂商模板）
+     * <p>
+     * 之后再加载用户模板或切换前缀分派时需要重新创建。
+     * </p>
+     *
+     * @param primary 主解析器
+     */
+    public ShadowFileNameParser(FileNameDateTimeParser primary) {
+        this(primary, new Candidate() {
+            private final FileNameDateTimeScanner scanner = new FileNameDateTimeScanner(primary.getTemplates());
+
+            @Override
+            public String getName() {
+                return "FileNameDateTimeScanner";
+            }
+
+            @Override
+            public long parse(String fileName) {
+                return scanner.parse(fileName);
+            }
+        });
+    }
+
+    /**
+     * @param primary   主解析器
+     * @param candidate 候选实现
+     */
+    public ShadowFileNameParser(FileNameDateTimeParser primary, Candidate candidate) {
+        this.primary = primary;
+        this.candidate = candidate;
+    }
+
+    /**
+     * 用主解析器解析文件名，同时运行候选实现并记录对比结果
+     *
+     * @param fileName 文件名（包含扩展名）
+     * @return 主解析器的结果；若无法解析则返回 null
+     */
+    public Date getFileNameDateTime(String fileName) {
+        long start = System.nanoTime();
+        Date primaryDate = primary.getFileNameDateTime(fileName);
+        long primaryElapsed = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long candidateResult;
+        try {
+            candidateResult = candidate.parse(fileName);
+        } catch (RuntimeException e) {
+            LogUtils.w(TAG, candidate.getName() + " 解析异常: " + fileName, e);
+            candidateResult = DateTimeUtils.INVALID;
+        }
+        long candidateElapsed = System.nanoTime() - start;
+
+        comparedCount.incrementAndGet();
+        primaryNanos.addAndGet(primaryElapsed);
+        candidateNanos.addAndGet(candidateElapsed);
+        updateMax(primaryMaxNanos, primaryElapsed);
+        updateMax(candidateMaxNanos, candidateElapsed);
+
+        long primaryResult = primaryDate != null ? primaryDate.getTime() : DateTimeUtils.INVALID;
+        if (primaryResult != candidateResult) {
+            recordDisagreement(fileName, primaryResult, candidateResult);
+        }
+        return primaryDate;
+    }
+
+    public long getComparedCount() {
+        return comparedCount.get();
+    }
+
+    public long getDisagreementCount() {
+        return disagreementCount.get();
+    }
+
+    /**
+     * 获取不一致的样本（最多 {@value #MAX_DISAGREEMENT_SAMPLES} 条）
+     *
+     * @return 形如 "文件名: 主=..., 候选=..." 的列表快照
+     */
+    public List<String> getDisagreements() {
+        synchronized (disagreements) {
+            return new ArrayList<>(disagreements);
+        }
+    }
+
+    /**
+     * 获取对比汇总，便于在扫描结束时输出日志
+     *
+     * @return 汇总字符串
+     */
+    public String getSummary() {
+        long compared = comparedCount.get();
+        StringBuilder builder = new StringBuilder()
+                .append("影子对比 ").append(candidate.getName())
+                .append(": 对比 ").append(compared)
+                .append(" 个文件名，不一致 ").append(disagreementCount.get()).append(" 个")
+                .append("; 主解析器平均 ").append(formatMicros(average(primaryNanos.get(), compared)))
+                .append(" / 最大 ").append(formatMicros(primaryMaxNanos.get()))
+                .append("; 候选实现平均 ").append(formatMicros(average(candidateNanos.get(), compared)))
+                .append(" / 最大 ").append(formatMicros(candidateMaxNanos.get()));
+        for (String sample : getDisagreements()) {
+            builder.append("\n  ").append(sample);
+        }
+        return builder.toString();
+    }
+
+    private void recordDisagreement(String fileName, long primaryResult, long candidateResult) {
+        disagreementCount.incrementAndGet();
+        synchronized (disagreements) {
+            if (disagreements.size() < MAX_DISAGREEMENT_SAMPLES) {
+                disagreements.add(fileName + ": 主=" + formatResult(primaryResult)
+                        + ", 候选=" + formatResult(candidateResult));
+            }
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static long average(long total, long count) {
+        return count == 0 ? 0 : total / count;
+    }
+
+    private static String formatMicros(long nanos) {
+        return (nanos / 1000) + "." + (nanos % 1000 / 100) + "µs";
+    }
+
+    private static String formatResult(long timestamp) {
+        return timestamp == DateTimeUtils.INVALID ? "null" : String.valueOf(timestamp);
+    }
+}
@@ -0,0 +1,476 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * HEIF、WebP、PNG、TIFF/RAW、MP4头部探测、XMP日期和格式识别的单元测试类
+ * <p>
+ * 测试文件中的图像数据都远大于读取窗口，用读取的字节数确认探测只访问了容器头部和Exif所在的位置。
+ * </p>
+ */
+public class ContainerExifDateProbeTest {
+
+    private static final int IMAGE_DATA_SIZE = 2 * 1024 * 1024;
+    private static final long EXPECTED = DateTimeUtils.toEpochMillis(2023, 1, 1, 12, 30, 45);
+    // 2023-01-01T04:30:45Z 自1904-01-01起的秒数
+    private static final long MP4_CREATION_TIME = 3755392245L;
+    private static final long EXPECTED_UTC = DateTimeUtils.toUtcEpochMillis(2023, 1, 1, 4, 30, 45);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSniffRoutesByContent() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        HeaderProbeDateSource source = new HeaderProbeDateSource();
+        // 扩展名与内容不符时按内容选择探测器
+        File file = write("renamed.jpg", buildPng(exifTiff(ByteOrder.BIG_ENDIAN), true));
+        assertEquals(EXPECTED, reader.read(file, source));
+        assertEquals(FileType.PNG, reader.getLastFileType());
+
+        file = write("IMG_0001.jpg", buildHeif(exifTiff(ByteOrder.BIG_ENDIAN), true));
+        assertEquals(EXPECTED, reader.read(file, source));
+        assertEquals(FileType.HEIF, reader.getLastFileType());
+
+        file = write("IMG_0002.jpg", buildWebp(exifTiff(ByteOrder.LITTLE_ENDIAN)));
+        assertEquals(EXPECTED, reader.read(file, source));
+        assertEquals(FileType.WEBP, reader.getLastFileType());
+
+        // 改名的视频按MP4读取创建时间
+        file = writeMp4("VID_0001.jpg", 1024, mvhd(MP4_CREATION_TIME), null);
+        assertEquals(EXPECTED_UTC, reader.read(file, source));
+        assertEquals(FileType.MP4, reader.getLastFileType());
+
+        // 零字节占位文件、下载中断的文件：只读取文件头
+
+        file = write("placeholder.jpg", new byte[0]);
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, source));
+        assertEquals(FileType.UNKNOWN, reader.getLastFileType());
+        assertEquals(0, reader.getLastBytesRead());
+
+        file = write("partial.jpg", new byte[64 * 1024]);
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, source));
+        assertEquals(FileType.UNKNOWN, reader.getLastFileType());
+        assertEquals(MetadataInput.DEFAULT_WINDOW_SIZE, reader.getLastBytesRead());
+
+        // 后端只处理了识别出的四个文件
+        assertEquals(4, source.getFileCount());
+        assertTrue(source.getBytesRead() > 0);
+    }
+
+    @Test
+    public void testSniff() {
+        assertEquals(FileType.JPEG, sniff(0xFF, 0xD8, 0xFF, 0xE1));
+        assertEquals(FileType.TIFF, sniff('I', 'I', 42, 0, 8, 0, 0, 0));
+        assertEquals(FileType.TIFF, sniff('M', 'M', 0, 42, 0, 0, 0, 8));
+        assertEquals(FileType.TIFF, sniff('I', 'I', 'U', 0, 0x18, 0, 0, 0));
+        assertEquals(FileType.HEIF, FileType.sniff(TestImages.ascii("\0\0\0\30ftypmif1\0\0\0\0"), 16));
+        assertEquals(FileType.HEIF, FileType.sniff(TestImages.ascii("\0\0\0\34ftypavif\0\0\0\0"), 16));
+        assertEquals(FileType.MP4, FileType.sniff(TestImages.ascii("\0\0\0\24ftypqt  \0\0\2\0"), 16));
+        assertEquals(FileType.MP4, FileType.sniff(TestImages.ascii("\0\0\0\10wide\0\0\0\0mdat"), 16));
+        // 文件过短时不越界
+        assertEquals(FileType.UNKNOWN, sniff(0xFF, 0xD8));
+        assertEquals(FileType.UNKNOWN, FileType.sniff(TestImages.ascii("RIFF\0\0\0\0WAVE"), 12));
+        assertEquals(FileType.UNKNOWN, FileType.sniff(TestImages.ascii("<!DOCTYPE html>\n"), 16));
+    }
+
+    @Test
+    public void testHeif() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        File file = write("IMG_0001.heic", buildHeif(exifTiff(ByteOrder.BIG_ENDIAN), true));
+        assertEquals(EXPECTED, reader.read(file, new HeifExifDateProbe()));
+        // Exif位于2MB图像数据之后，只读取文件头和Exif两处
+        assertTrue("读取了 " + reader.getLastBytesRead() + " 字节",
+                reader.getLastBytesRead() <= 2 * MetadataInput.DEFAULT_WINDOW_SIZE);
+
+        file = write("IMG_0002.heic", buildHeif(exifTiff(ByteOrder.LITTLE_ENDIAN), false));
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, new HeifExifDateProbe()));
+
+        byte[] heif = buildHeif(exifTiff(ByteOrder.BIG_ENDIAN), true);
+        assertMalformed(write("truncated.heic", Arrays.copyOf(heif, 200)), new HeifExifDateProbe());
+    }
+
+    @Test
+    public void testWebp() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        File file = write("IMG_0001.webp", buildWebp(TestImages.withExifHeader(exifTiff(ByteOrder.LITTLE_ENDIAN))));
+        assertEquals(EXPECTED, reader.read(file, new WebpExifDateProbe()));
+        assertTrue("读取了 " + reader.getLastBytesRead() + " 字节",
+                reader.getLastBytesRead() <= 2 * MetadataInput.DEFAULT_WINDOW_SIZE);
+
+        // EXIF块没有 "Exif\0\0" 标识
+        file = write("IMG_0002.webp", buildWebp(exifTiff(ByteOrder.BIG_ENDIAN)));
+        assertEquals(EXPECTED, reader.read(file, new WebpExifDateProbe()));
+
+        // VP8X 未声明EXIF时只读取文件头
+        file = write("IMG_0003.webp", buildWebp(null));
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, new WebpExifDateProbe()));
+        assertEquals(MetadataInput.DEFAULT_WINDOW_SIZE, reader.getLastBytesRead());
+
+        assertMalformed(write("not.webp", TestImages.ascii("RIFF\0\0\0\0WAVEfmt \0\0\0\0")), new WebpExifDateProbe());
+    }
+
+    @Test
+    public void testPng() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        File file = write("Screenshot_1.png", buildPng(exifTiff(ByteOrder.BIG_ENDIAN), true));
+        assertEquals(EXPECTED, reader.read(file, new PngExifDateProbe()));
+        assertTrue(reader.getLastBytesRead() <= MetadataInput.DEFAULT_WINDOW_SIZE);
+
+        // IDAT之后的eXIf不读取
+        file = write("Screenshot_2.png", buildPng(exifTiff(ByteOrder.BIG_ENDIAN), false));
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, new PngExifDateProbe()));
+        assertTrue(reader.getLastBytesRead() <= MetadataInput.DEFAULT_WINDOW_SIZE);
+
+        assertMalformed(write("truncated.png", Arrays.copyOf(buildPng(null, true), 40)), new PngExifDateProbe());
+    }
+
+    @Test
+    public void testRaw() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        HeaderProbeDateSource source = new HeaderProbeDateSource();
+        // IFD之后是模拟预览图和条带数据的大块填充，只读取文件头所在的窗口
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(0x010F, "NIKON CORPORATION");
+        Map<Integer, String> exif = new LinkedHashMap<>();
+        exif.put(TiffDateParser.TAG_DATETIME_ORIGINAL, "2023:01:01 12:30:45");
+        byte[] raw = TestImages.buildTiff(ByteOrder.LITTLE_ENDIAN, ifd0, exif, 8 * IMAGE_DATA_SIZE);
+        File file = write("DSC_0001.NEF", raw);
+        assertEquals(EXPECTED, reader.read(file, source));
+        assertEquals(FileType.TIFF, reader.getLastFileType());
+        assertEquals(MetadataInput.DEFAULT_WINDOW_SIZE, reader.getLastBytesRead());
+
+        file = write("IMG_0001.CR2", TestImages.buildTiff(ByteOrder.BIG_ENDIAN, ifd0, exif, IMAGE_DATA_SIZE));
+        assertEquals(EXPECTED, reader.read(file, new TiffExifDateProbe()));
+
+        // Panasonic RW2 改写了TIFF标识
+        raw[2] = 'U';
+        file = write("P1000001.RW2", raw);
+        assertEquals(EXPECTED, reader.read(file, source));
+        assertEquals(FileType.TIFF, reader.getLastFileType());
+
+        assertMalformed(write("truncated.dng", Arrays.copyOf(raw, 20)), new TiffExifDateProbe());
+    }
+
+    @Test
+    public void testVideoUsesHeaderProbeWithAnyExifSource() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        HeaderProbeDateSource header = new HeaderProbeDateSource();
+        // 系统 ExifInterface 后端不支持视频，视频仍由头部探测读取
+        PlatformExifDateSource platform = new PlatformExifDateSource();
+        assertFalse(platform.supports(FileType.MP4));
+
+        File file = writeMp4("VID_0001.mp4", 1024, mvhd(MP4_CREATION_TIME), null);
+        assertEquals(EXPECTED_UTC, reader.read(file, platform, header));
+        assertEquals(FileType.MP4, reader.getLastFileType());
+        assertSame(header, HeaderDateReader.select(FileType.MP4, platform, header));
+        assertSame(platform, HeaderDateReader.select(FileType.JPEG, platform, header));
+        assertEquals(0, platform.getFileCount());
+        assertEquals(1, header.getFileCount());
+
+        // 只用图片后端时视频不被读取
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, platform));
+    }
+
+    @Test
+    public void testMp4() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        // moov 位于64位大小的 mdat 之后，只读取文件头和 moov 两处
+        File file = writeMp4("VID_0001.mp4", 32L * 1024 * 1024, mvhd(MP4_CREATION_TIME), null);
+        assertEquals(EXPECTED_UTC, reader.read(file, new Mp4DateProbe()));
+        assertTrue("读取了 " + reader.getLastBytesRead() + " 字节",
+                reader.getLastBytesRead() <= 2 * MetadataInput.DEFAULT_WINDOW_SIZE);
+
+        // 有完整的 ©day 时优先于 mvhd
+        byte[] day = concat(new byte[] { 0, 24, 0x15, (byte) 0xC7 }, TestImages.ascii("2023-01-01T12:30:45+0800"));
+        file = writeMp4("VID_0002.mov", 1024, mvhd(0), box("udta", box("\u00A9day", day)));
+        assertEquals(EXPECTED_UTC, reader.read(file, new Mp4DateProbe()));
+
+        // iTunes 风格的 udta/meta/ilst/©day/data
+        byte[] data = box("data", concat(new byte[] { 0, 0, 0, 1 }, new byte[4], TestImages.ascii("2023-01-01T04:30:45Z")));
+        byte[] hdlr = box("hdlr", concat(new byte[8], TestImages.ascii("mdir"), new byte[13]));
+        byte[] meta = box("meta", concat(new byte[4], hdlr, box("ilst", box("\u00A9day", data))));
+        file = writeMp4("VID_0003.mp4", 1024, mvhd(MP4_CREATION_TIME + 3600), box("udta", meta));
+        assertEquals(EXPECTED_UTC, reader.read(file, new Mp4DateProbe()));
+
+        // 只有年份的 ©day 不足以修正时间，使用 mvhd；mvhd 未设置时没有日期
+        byte[] year = concat(new byte[] { 0, 4, 0x15, (byte) 0xC7 }, TestImages.ascii("2023"));
+        file = writeMp4("VID_0004.mp4", 1024, mvhd(MP4_CREATION_TIME), box("udta", box("\u00A9day", year)));
+        assertEquals(EXPECTED_UTC, reader.read(file, new Mp4DateProbe()));
+        file = writeMp4("VID_0005.mp4", 1024, mvhd(0), null);
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, new Mp4DateProbe()));
+
+        // 录制中断、没有 moov 的文件
+        assertMalformed(write("VID_0006.mp4", concat(box("ftyp", TestImages.ascii("isom\0\0\2\0isom")),
+                box("mdat", new byte[1024]))), new Mp4DateProbe());
+    }
+
+    @Test
+    public void testXmp() throws IOException {
+        HeaderDateReader reader = new HeaderDateReader();
+        XmpDateSource source = new XmpDateSource();
+        // 属性写法；日期之后是64KB的填充，找到日期即停止
+        String packet = "<x:xmpmeta xmlns:x='adobe:ns:meta/'><rdf:RDF><rdf:Description "
+                + "xmp:CreatorTool='Editor' xmp:CreateDate = \"2023-01-01T12:30:45+08:00\"/></rdf:RDF></x:xmpmeta>";
+        byte[] xmp = concat(TestImages.ascii(packet), new byte[64 * 1024]);
+        Arrays.fill(xmp, packet.length(), xmp.length, (byte) ' ');
+        byte[] app1 = concat(TestImages.ascii("http://ns.adobe.com/xap/1.0/\0"), xmp);
+        byte[] jpeg = concat(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1,
+                (byte) ((app1.length + 2) >> 8), (byte) (app1.length + 2) }, app1,
+                new byte[] { (byte) 0xFF, (byte) 0xDA }, new byte[IMAGE_DATA_SIZE]);
+        File file = write("edited.jpg", jpeg);
+        assertEquals(EXPECTED_UTC, reader.read(file, source));
+        assertTrue("读取了 " + reader.getLastBytesRead() + " 字节",
+                reader.getLastBytesRead() <= MetadataInput.DEFAULT_WINDOW_SIZE);
+
+        // 元素写法，没有时区时按本地时间；名称的前缀、无法解析的值都跳过
+        packet = "<rdf:Description><xmp:CreateDateTime>x</xmp:CreateDateTime><xmp:CreateDate></xmp:CreateDate>"
+                + "<photoshophotoshop:DateCreated>2023-01-01T12:30:45</photoshop:DateCreated></rdf:Description>";
+        byte[] itxt = concat(TestImages.ascii("XML:com.adobe.xmp\0\0\0\0\0"), TestImages.ascii(packet));
+        byte[] png = concat(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' },
+                pngChunk("IHDR", new byte[13]), pngChunk("iTXt", itxt), pngChunk("IDAT", new byte[IMAGE_DATA_SIZE]));
+        file = write("Screenshot_1.png", png);
+        assertEquals(EXPECTED, reader.read(file, source));
+        // EXIF中没有日期时，XMP在同一次打开中读取
+        HeaderProbeDateSource header = new HeaderProbeDateSource();
+        long probes = reader.getProbeCount();
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, header, header, source));
+        assertEquals(EXPECTED, reader.getLastXmpDateTime());
+        assertEquals(probes + 1, reader.getProbeCount());
+
+        // WebP 的 XMP 块
+        byte[] vp8x = new byte[10];
+        vp8x[0] = 0x04;
+        byte[] chunks = concat(riffChunk("VP8X", vp8x), riffChunk("VP8 ", new byte[IMAGE_DATA_SIZE]),
+                riffChunk("XMP ", TestImages.ascii("<rdf:Description photoshop:DateCreated='2023-01-01T04:30:45Z'/>")));
+        file = write("export.webp", concat(TestImages.ascii("RIFF"), littleEndian(4 + chunks.length),
+                TestImages.ascii("WEBP"), chunks));
+        assertEquals(EXPECTED_UTC, reader.read(file, source));
+
+        // TIFF/RAW 的 IFD0 XMP 条目
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(TiffDateParser.TAG_XMP, "<rdf:Description xmp:CreateDate='2023-01-01T12:30'/>");
+        file = write("scan.tif", TestImages.buildTiff(ByteOrder.BIG_ENDIAN, ifd0, null, IMAGE_DATA_SIZE));
+        assertEquals(EXPECTED - 45000, reader.read(file, source));
+        // 只有日期的值按当天零点
+        ifd0.put(TiffDateParser.TAG_XMP, "<rdf:Description photoshop:DateCreated='2023-01-01'/>");
+        file = write("scan2.tif", TestImages.buildTiff(ByteOrder.BIG_ENDIAN, ifd0, null, IMAGE_DATA_SIZE));
+        assertEquals(DateTimeUtils.toEpochMillis(2023, 1, 1, 0, 0, 0), reader.read(file, source));
+
+        // 没有XMP时不读取图像数据
+        file = write("plain.png", buildPng(null, true));
+        assertEquals(DateTimeUtils.INVALID, reader.read(file, source));
+        assertTrue(reader.getLastBytesRead() <= MetadataInput.DEFAULT_WINDOW_SIZE);
+    }
+
+    @Test
+    public void testParseIsoDateTime() {
+        assertEquals(EXPECTED_UTC, DateTimeUtils.parseIsoDateTime("2023-01-01T04:30:45Z"));
+        assertEquals(EXPECTED_UTC, DateTimeUtils.parseIsoDateTime("2023-01-01T12:30:45+08:00"));
+        assertEquals(EXPECTED_UTC, DateTimeUtils.parseIsoDateTime("2022-12-31T23:30:45-05"));
+        assertEquals(EXPECTED_UTC, DateTimeUtils.parseIsoDateTime("2023-01-01 04:30:45.250000Z"));
+        // 没有时区时按本地时间
+        assertEquals(EXPECTED, DateTimeUtils.parseIsoDateTime("2023-01-01T12:30:45"));
+        assertEquals(EXPECTED - 45000, DateTimeUtils.parseIsoDateTime("2023-01-01T12:30"));
+        // 只有日期或年月时按本地时间零点
+        assertEquals(EXPECTED - (12 * 3600 + 30 * 60 + 45) * 1000L, DateTimeUtils.parseIsoDateTime("2023-01-01"));
+        assertEquals(DateTimeUtils.toEpochMillis(2023, 2, 1, 0, 0, 0), DateTimeUtils.parseIsoDateTime("2023-02"));
+        assertEquals(DateTimeUtils.INVALID, DateTimeUtils.parseIsoDateTime("2023"));
+        assertEquals(DateTimeUtils.INVALID, DateTimeUtils.parseIsoDateTime("2023-13"));
+        assertEquals(DateTimeUtils.INVALID, DateTimeUtils.parseIsoDateTime("2023/01/01"));
+        assertEquals(DateTimeUtils.INVALID, DateTimeUtils.parseIsoDateTime("2023-13-01T12:30:45"));
+        assertEquals(DateTimeUtils.INVALID, DateTimeUtils.parseIsoDateTime("2023-01-01T12:30:45+8"));
+    }
+
+    private static FileType sniff(int... bytes) {
+        byte[] header = new byte[FileType.SNIFF_LENGTH];
+        for (int i = 0; i < bytes.length; i++) {
+            header[i] = (byte) bytes[i];
+        }
+        return FileType.sniff(header, bytes.length);
+    }
+
+    private static byte[] exifTiff(ByteOrder order) {
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(0x010F, "TestCam");
+        Map<Integer, String> exif = new LinkedHashMap<>();
+        exif.put(TiffDateParser.TAG_DATETIME_ORIGINAL, "2023:01:01 12:30:45");
+        return TestImages.buildTiff(order, ifd0, exif, 16 * 1024);
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        return TestImages.write(folder.getRoot(), name, content);
+    }
+
+    private static void assertMalformed(File file, ExifDateProbe probe) throws IOException {
+        try {
+            new HeaderDateReader().read(file, probe);
+            fail("应抛出 MalformedMetadataException: " + file.getName());
+        } catch (MalformedMetadataException e) {
+            // 预期
+        }
+    }
+
+    // 构造HEIF：ftyp、meta（hdlr、iloc、iinf）、mdat（图像数据之后是Exif条目）
+    private static byte[] buildHeif(byte[] tiff, boolean withExifItem) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream exif = new DataOutputStream(payload);
+        exif.writeInt(TiffDateParser.EXIF_HEADER.length);
+        exif.write(TestImages.withExifHeader(tiff));
+        byte[] exifItem = payload.toByteArray();
+
+        byte[] ftyp = box("ftyp", concat(TestImages.ascii("heic"), new byte[4], TestImages.ascii("mif1heic")));
+        // meta盒的大小与偏移量的取值无关，先按0构造一次得到大小
+        int metaSize = buildHeifMeta(0, 0, exifItem.length, withExifItem).length;
+        int mdatData = ftyp.length + metaSize + 8;
+        byte[] meta = buildHeifMeta(mdatData, mdatData + IMAGE_DATA_SIZE, exifItem.length, withExifItem);
+        byte[] mdat = box("mdat", concat(new byte[IMAGE_DATA_SIZE], exifItem));
+        return concat(ftyp, meta, mdat);
+    }
+
+    private static byte[] buildHeifMeta(int imageOffset, int exifOffset, int exifLength, boolean withExifItem)
+            throws IOException {
+        int itemCount = withExifItem ? 2 : 1;
+        ByteArrayOutputStream ilocContent = new ByteArrayOutputStream();
+        DataOutputStream iloc = new DataOutputStream(ilocContent);
+        iloc.writeInt(0); // 版本0
+        iloc.writeByte(0x44); // offset_size=4, length_size=4
+        iloc.writeByte(0x00); // base_offset_size=0
+        iloc.writeShort(itemCount);
+        iloc.writeShort(1);
+        iloc.writeShort(0);
+        iloc.writeShort(1);
+        iloc.writeInt(imageOffset);
+        iloc.writeInt(IMAGE_DATA_SIZE);
+        if (withExifItem) {
+            iloc.writeShort(2);
+            iloc.writeShort(0);
+            iloc.writeShort(1);
+            iloc.writeInt(exifOffset);
+            iloc.writeInt(exifLength);
+        }
+
+        ByteArrayOutputStream iinfContent = new ByteArrayOutputStream();
+        DataOutputStream iinf = new DataOutputStream(iinfContent);
+        iinf.writeInt(0); // 版本0
+        iinf.writeShort(itemCount);
+        iinf.write(infe(1, "hvc1"));
+        if (withExifItem) {
+            iinf.write(infe(2, "Exif"));
+        }
+
+        byte[] hdlr = box("hdlr", concat(new byte[8], TestImages.ascii("pict"), new byte[13]));
+        return box("meta", concat(new byte[4], hdlr, box("iloc", ilocContent.toByteArray()),
+                box("iinf", iinfContent.toByteArray())));
+    }
+
+    private static byte[] infe(int itemId, String itemType) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream infe = new DataOutputStream(content);
+        infe.writeInt(0x02000000); // 版本2
+        infe.writeShort(itemId);
+        infe.writeShort(0);
+        infe.write(TestImages.ascii(itemType));
+        infe.writeByte(0);
+        return box("infe", content.toByteArray());
+    }
+
+    private static byte[] mvhd(long creationTime) {
+        byte[] content = new byte[100]; // 版本0
+        for (int i = 0; i < 4; i++) {
+            content[4 + i] = (byte) (creationTime >> (24 - 8 * i));
+        }
+        return box("mvhd", content);
+    }
+
+    // 构造MP4：ftyp、64位大小的 mdat（稀疏写入，不占用磁盘）、moov（mvhd、一个 trak、可选的 udta）
+    private File writeMp4(String name, long mediaSize, byte[] mvhd, byte[] udta) throws IOException {
+        byte[] ftyp = box("ftyp", TestImages.ascii("isom\0\0\2\0isomiso2mp41"));
+        byte[] trak = box("trak", box("tkhd", new byte[84]));
+        byte[] moov = box("moov", concat(mvhd, trak, udta != null ? udta : new byte[0]));
+        long mdatSize = 16 + mediaSize;
+        File file = new File(folder.getRoot(), name);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.write(ftyp);
+            out.writeInt(1);
+            out.write(TestImages.ascii("mdat"));
+            out.writeLong(mdatSize);
+            out.seek(ftyp.length + mdatSize);
+            out.write(moov);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] box(String type, byte[] content) {
+        int size = 8 + content.length;
+        byte[] header = { (byte) (size >> 24), (byte) (size >> 16), (byte) (size >> 8), (byte) size };
+        // 盒类型可以含 Latin-1 字符，如 "©day"
+        return concat(header, type.getBytes(StandardCharsets.ISO_8859_1), content);
+    }
+
+    // 构造扩展格式WebP：VP8X、VP8（奇数大小，测试对齐）、EXIF（exif 为 null 时省略）
+    private static byte[] buildWebp(byte[] exif) {
+        byte[] vp8x = new byte[10];
+        vp8x[0] = (byte) (exif != null ? 0x08 : 0);
+        byte[] chunks = concat(riffChunk("VP8X", vp8x), riffChunk("VP8 ", new byte[IMAGE_DATA_SIZE + 1]));
+        if (exif != null) {
+            chunks = concat(chunks, riffChunk("EXIF", exif));
+        }
+        return concat(TestImages.ascii("RIFF"), littleEndian(4 + chunks.length), TestImages.ascii("WEBP"), chunks);
+    }
+
+    private static byte[] riffChunk(String type, byte[] data) {
+        byte[] padding = new byte[data.length & 1];
+        return concat(TestImages.ascii(type), littleEndian(data.length), data, padding);
+    }
+
+    private static byte[] littleEndian(int value) {
+        return new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24) };
+    }
+
+    // 构造PNG：IHDR、eXIf（exif 为 null 时省略，beforeData 决定在 IDAT 之前还是之后）、IDAT、IEND
+    private static byte[] buildPng(byte[] exif, boolean beforeData) throws IOException {
+        byte[] signature = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+        byte[] exifChunk = exif != null ? pngChunk("eXIf", exif) : new byte[0];
+        byte[] idat = pngChunk("IDAT", new byte[IMAGE_DATA_SIZE]);
+        return concat(signature, pngChunk("IHDR", new byte[13]),
+                beforeData ? exifChunk : idat, beforeData ? idat : exifChunk, pngChunk("IEND", new byte[0]));
+    }
+
+    private static byte[] pngChunk(String type, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream chunk = new DataOutputStream(out);
+        chunk.writeInt(data.length);
+        chunk.write(TestImages.ascii(type));
+        chunk.write(data);
+        chunk.writeInt(0); // CRC不校验
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,258 @@
+package com.imagefixer.app.metadata;
+
+import com.imagefixer.app.utils.DateTimeUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * JpegExifDateProbe的单元测试类
+ * <p>
+ * 测试用JPEG按手机相机的常见布局构造：APP0、约60KB的APP2（ICC配置）、带缩略图的APP1（Exif），
+ * 之后是图像数据。性能对比的基准是按顺序读完SOS之前所有段的流式读取（ExifInterface 在 JVM 单元测试中不可用）。
+ * </p>
+ */
+public class JpegExifDateProbeTest {
+
+    private static final int ICC_SIZE = 60 * 1024;
+    private static final int THUMBNAIL_SIZE = 24 * 1024;
+    private static final int SCAN_SIZE = 200 * 1024;
+    private static final ExifDateProbe JPEG = new JpegExifDateProbe();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDateTimeInIfd0() throws IOException {
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(0x010F, "TestCam");
+        ifd0.put(TiffDateParser.TAG_DATETIME, "2023:01:01 12:30:45");
+        File file = writeJpeg("ifd0.jpg", ByteOrder.BIG_ENDIAN, ifd0, null);
+
+        assertEquals(DateTimeUtils.toEpochMillis(2023, 1, 1, 12, 30, 45), new HeaderDateReader().read(file, JPEG));
+    }
+
+    @Test
+    public void testExifIfdPriority() throws IOException {
+        // IFD0中的DateTime为空，按优先级取EXIF子IFD中的DateTimeOriginal
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(0x010F, "TestCam");
+        ifd0.put(TiffDateParser.TAG_DATETIME, "");
+        Map<Integer, String> exif = new LinkedHashMap<>();
+        exif.put(TiffDateParser.TAG_DATETIME_DIGITIZED, "2021:06:01 08:00:00");
+        exif.put(TiffDateParser.TAG_DATETIME_ORIGINAL, "2020:02:29 23:59:58");
+        File file = writeJpeg("exif.jpg", ByteOrder.LITTLE_ENDIAN, ifd0, exif);
+
+        HeaderDateReader reader = new HeaderDateReader();
+        assertEquals(DateTimeUtils.toEpochMillis(2020, 2, 29, 23, 59, 58), reader.read(file, JPEG));
+
+        exif.remove(TiffDateParser.TAG_DATETIME_ORIGINAL);
+        file = writeJpeg("digitized.jpg", ByteOrder.BIG_ENDIAN, ifd0, exif);
+        assertEquals(DateTimeUtils.toEpochMillis(2021, 6, 1, 8, 0, 0), reader.read(file, JPEG));
+    }
+
+    @Test
+    public void testNoExif() throws IOException {
+        File file = writeJpeg("noexif.jpg", ByteOrder.BIG_ENDIAN, null, null);
+        assertEquals(DateTimeUtils.INVALID, new HeaderDateReader().read(file, JPEG));
+
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(0x010F, "TestCam");
+        file = writeJpeg("nodate.jpg", ByteOrder.BIG_ENDIAN, ifd0, null);
+        assertEquals(DateTimeUtils.INVALID, new HeaderDateReader().read(file, JPEG));
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(TiffDateParser.TAG_DATETIME, "2023:01:01 12:30:45");
+        byte[] jpeg = buildJpeg(ByteOrder.BIG_ENDIAN, ifd0, null);
+
+        // 在APP2段中间截断
+        assertMalformed(write("truncated.jpg", Arrays.copyOf(jpeg, ICC_SIZE / 2)));
+        // 不是JPEG文件
+        assertMalformed(write("text.jpg", "not a jpeg".getBytes(StandardCharsets.US_ASCII)));
+        // 段长度小于2
+        byte[] badLength = jpeg.clone();
+        badLength[4] = 0;
+        badLength[5] = 1;
+        assertMalformed(write("badlength.jpg", badLength));
+    }
+
+    @Test
+    public void testBytesReadAndThroughput() throws IOException {
+        Map<Integer, String> ifd0 = new LinkedHashMap<>();
+        ifd0.put(0x010F, "TestCam");
+        Map<Integer, String> exif = new LinkedHashMap<>();
+        exif.put(TiffDateParser.TAG_DATETIME_ORIGINAL, "2023:01:01 12:30:45");
+        int fileCount = 50;
+        File[] files = new File[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            files[i] = writeJpeg("IMG_" + i + ".jpg", i % 2 == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN,
+                    ifd0, exif);
+        }
+
+        HeaderDateReader reader = new HeaderDateReader();
+        byte[] buffer = new byte[8192];
+        // 预热
+        for (File file : files) {
+            reader.read(file, JPEG);
+            readHeaderSegments(file, buffer);
+        }
+
+        int rounds = 10;
+        long probeBytes = reader.getTotalBytesRead();
+        long bufferAllocations = DirectBufferPool.getAllocationCount();
+        long allocatedBytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (File file : files) {
+                assertEquals(DateTimeUtils.toEpochMillis(2023, 1, 1, 12, 30, 45), reader.read(file, JPEG));
+            }
+        }
+        long probeNanos = System.nanoTime() - start;
+        allocatedBytes = allocatedBytes() - allocatedBytes;
+        probeBytes = reader.getTotalBytesRead() - probeBytes;
+
+        long baselineBytes = 0;
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (File file : files) {
+                baselineBytes += readHeaderSegments(file, buffer);
+            }
+        }
+        long baselineNanos = System.nanoTime() - start;
+
+        long probed = (long) rounds * fileCount;
+        System.out.println("顺序读取到SOS: " + baselineBytes / probed + " 字节/文件, "
+                + probed * 1000000000L / Math.max(1, baselineNanos) + " 文件/秒");
+        System.out.println("头部探测: " + probeBytes / probed + " 字节/文件, "
+                + probed * 1000000000L / Math.max(1, probeNanos) + " 文件/秒"
+                + (allocatedBytes >= 0 ? ", 分配 " + allocatedBytes / probed + " 字节/文件" : ""));
+
+        // APP2和缩略图都被跳过，只读取段头和IFD所在的窗口
+        assertTrue(probeBytes / probed <= 3 * MetadataInput.DEFAULT_WINDOW_SIZE);
+        assertTrue(probeBytes * 5 < baselineBytes);
+        // 窗口缓冲区来自池中，处理文件时不再分配；其余分配只有打开文件本身（RandomAccessFile 和 FileChannel）
+        assertEquals(bufferAllocations, DirectBufferPool.getAllocationCount());
+        if (allocatedBytes >= 0) {
+            assertTrue(allocatedBytes / probed < 1024);
+        }
+    }
+
+    @Test
+    public void testBufferPoolSurvivesShortLivedThreads() throws Exception {
+        DirectBufferPool.release(DirectBufferPool.acquire());
+        long allocations = DirectBufferPool.getAllocationCount();
+        // 处理线程空闲超时退出、每次扫描新建遍历线程：缓冲区回到共用的池中，新线程直接复用
+        for (int i = 0; i < 100; i++) {
+            Thread thread = new Thread(() -> DirectBufferPool.release(DirectBufferPool.acquire()));
+            thread.start();
+            thread.join();
+        }
+        assertEquals(allocations, DirectBufferPool.getAllocationCount());
+        ByteBuffer buffer = DirectBufferPool.acquire();
+        assertTrue(buffer.isDirect());
+        DirectBufferPool.release(buffer);
+    }
+
+    // 当前线程累计分配的字节数，JVM不支持时返回 -1
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void assertMalformed(File file) throws IOException {
+        try {
+            new HeaderDateReader().read(file, JPEG);
+            fail("应抛出 MalformedMetadataException: " + file.getName());
+        } catch (MalformedMetadataException e) {
+            // 预期
+        }
+    }
+
+    // 基准：按顺序读完SOS之前的所有段，返回读取的字节数
+    private static long readHeaderSegments(File file, byte[] buffer) throws IOException {
+        long total = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] header = new byte[4];
+            total += in.read(header, 0, 2);
+            while (in.read(header, 0, 2) == 2 && (header[1] & 0xFF) != 0xDA) {
+                total += 2;
+                total += in.read(header, 2, 2);
+                int remaining = ((header[2] & 0xFF) << 8 | header[3] & 0xFF) - 2;
+                while (remaining > 0) {
+                    int n = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        return total;
+                    }
+                    remaining -= n;
+                    total += n;
+                }
+            }
+        }
+        return total;
+    }
+
+    private File writeJpeg(String name, ByteOrder order, Map<Integer, String> ifd0, Map<Integer, String> exif)
+            throws IOException {
+        return write(name, buildJpeg(order, ifd0, exif));
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        return TestImages.write(folder.getRoot(), name, content);
+    }
+
+    // 构造JPEG：SOI、APP0、APP2、APP1（ifd0 为 null 时省略）、SOS、图像数据、EOI
+    private static byte[] buildJpeg(ByteOrder order, Map<Integer, String> ifd0, Map<Integer, String> exif) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        writeSegment(out, 0xE0, "JFIF\0\1\1\0\0\1\0\1\0\0".getBytes(StandardCharsets.US_ASCII));
+        byte[] icc = new byte[ICC_SIZE];
+        System.arraycopy("ICC_PROFILE\0".getBytes(StandardCharsets.US_ASCII), 0, icc, 0, 12);
+        writeSegment(out, 0xE2, icc);
+        if (ifd0 != null) {
+            byte[] tiff = TestImages.buildTiff(order, ifd0, exif, THUMBNAIL_SIZE);
+            byte[] app1 = new byte[6 + tiff.length];
+            System.arraycopy("Exif\0\0".getBytes(StandardCharsets.US_ASCII), 0, app1, 0, 6);
+            System.arraycopy(tiff, 0, app1, 6, tiff.length);
+            writeSegment(out, 0xE1, app1);
+        }
+        writeSegment(out, 0xDA, new byte[10]);
+        byte[] scan = new byte[SCAN_SIZE];
+        new Random(1).nextBytes(scan);
+        out.write(scan, 0, scan.length);
+        out.write(0xFF);
+        out.write(0xD9);
+        return out.toByteArray();
+    }
+
+    private static void writeSegment(ByteArrayOutputStream out, int marker, byte[] data) {
+        int length = data.length + 2;
+        out.write(0xFF);
+        out.write(marker);
+        out.write(length >> 8);
+        out.write(length);
+        out.write(data, 0, data.length);
+    }
+}
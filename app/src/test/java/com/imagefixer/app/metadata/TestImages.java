@@ -0,0 +1,91 @@
+package com.imagefixer.app.metadata;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 头部探测测试用的文件构造工具
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    static File write(File folder, String name, byte[] content) throws IOException {
+        File file = new File(folder, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    /**
+     * 构造TIFF结构：IFD0、EXIF子IFD（exif 为 null 时省略）、字符串数据区，最后是模拟缩略图的填充数据
+     */
+    static byte[] buildTiff(ByteOrder order, Map<Integer, String> ifd0, Map<Integer, String> exif, int paddingSize) {
+        int ifd0Count = ifd0.size() + (exif != null ? 1 : 0);
+        int ifd0Offset = 8;
+        int exifOffset = ifd0Offset + 2 + ifd0Count * 12 + 4;
+        int dataOffset = exif != null ? exifOffset + 2 + exif.size() * 12 + 4 : exifOffset;
+        ByteBuffer buffer = ByteBuffer.allocate(dataOffset + 1024 + paddingSize).order(order);
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? (byte) 'I' : (byte) 'M');
+        buffer.putShort((short) 42);
+        buffer.putInt(ifd0Offset);
+
+        buffer.position(ifd0Offset);
+        buffer.putShort((short) ifd0Count);
+        dataOffset = writeEntries(buffer, ifd0, dataOffset);
+        if (exif != null) {
+            buffer.putShort((short) TiffDateParser.TAG_EXIF_IFD);
+            buffer.putShort((short) 4);
+            buffer.putInt(1);
+            buffer.putInt(exifOffset);
+        }
+        buffer.putInt(0);
+        if (exif != null) {
+            buffer.putShort((short) exif.size());
+            writeEntries(buffer, exif, dataOffset);
+            buffer.putInt(0);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 在TIFF结构前加上 "Exif\0\0" 标识
+     */
+    static byte[] withExifHeader(byte[] tiff) {
+        byte[] block = new byte[TiffDateParser.EXIF_HEADER.length + tiff.length];
+        System.arraycopy(TiffDateParser.EXIF_HEADER, 0, block, 0, TiffDateParser.EXIF_HEADER.length);
+        System.arraycopy(tiff, 0, block, TiffDateParser.EXIF_HEADER.length, tiff.length);
+        return block;
+    }
+
+    static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // 写入ASCII条目，超过4字节的值写到数据区，返回新的数据区位置
+    private static int writeEntries(ByteBuffer buffer, Map<Integer, String> entries, int dataOffset) {
+        for (Map.Entry<Integer, String> entry : entries.entrySet()) {
+            byte[] value = ascii(entry.getValue() + "\0");
+            buffer.putShort((short) (int) entry.getKey());
+            buffer.putShort((short) 2);
+            buffer.putInt(value.length);
+            if (value.length <= 4) {
+                buffer.put(Arrays.copyOf(value, 4));
+            } else {
+                buffer.putInt(dataOffset);
+                System.arraycopy(value, 0, buffer.array(), dataOffset, value.length);
+                dataOffset += value.length;
+            }
+        }
+        return dataOffset;
+    }
+}
@@ -0,0 +1,105 @@
+package com.imagefixer.app.scan;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ConcurrencyController的单元测试类
+ * <p>
+ * 用模拟的存储设备驱动控制器：并发数不超过设备能力 K 时每个文件耗时固定，超过后吞吐量不再提高、
+ * 耗时随并发数线性增加。确认上限在快速设备上升到最大值，在慢速设备上停在 K 附近。
+ * </p>
+ */
+public class ConcurrencyControllerTest {
+    private static final long BASE_LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testFastStorageRampsToMax() throws InterruptedException {
+        FakeTicker ticker = new FakeTicker();
+        ConcurrencyController controller = new ConcurrencyController(2, 1, 8, WINDOW, ticker);
+        double average = simulate(controller, ticker, 100, 4000);
+        // 停在最大值，只偶尔试探性地减一
+        assertTrue(controller.getLimit() >= 7);
+        assertTrue("平均上限 " + average, average >= 7.5);
+    }
+
+    @Test
+    public void testSaturatedStorageSettlesNearCapacity() throws InterruptedException {
+        FakeTicker ticker = new FakeTicker();
+        ConcurrencyController controller = new ConcurrencyController(2, 1, 16, WINDOW, ticker);
+        double average = simulate(controller, ticker, 4, 4000);
+        assertTrue("平均上限 " + average, average >= 3 && average <= 5);
+        assertTrue(controller.getLimit() <= 6);
+    }
+
+    @Test
+    public void testSlowStorageStaysLow() throws InterruptedException {
+        FakeTicker ticker = new FakeTicker();
+        ConcurrencyController controller = new ConcurrencyController(8, 1, 8, WINDOW, ticker);
+        double average = simulate(controller, ticker, 1, 4000);
+        // 从最大值开始，试探后降到设备能力附近
+        assertTrue("平均上限 " + average, average <= 2);
+    }
+
+    @Test
+    public void testFixedLimit() throws InterruptedException {
+        FakeTicker ticker = new FakeTicker();
+        ConcurrencyController controller = new ConcurrencyController(3, 3, 3, WINDOW, ticker);
+        assertEquals(3.0, simulate(controller, ticker, 1, 1000), 0.01);
+        assertEquals(3.0, simulate(controller, ticker, 100, 1000), 0.01);
+    }
+
+    @Test
+    public void testAcquireRespectsLimitAndCancellation() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(1, 1, 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        assertTrue(controller.acquire(running));
+        // 上限已用满，取消后等待的线程在一个轮询间隔内返回
+        running.set(false);
+        assertFalse(controller.acquire(running));
+        controller.release();
+        assertFalse(controller.acquire(running));
+        running.set(true);
+        assertTrue(controller.acquire(running));
+    }
+
+    /**
+     * 每一步让当前上限个文件同时处理，返回后一半步数的平均上限
+     *
+     * @param capacity 设备能同时服务的请求数
+     */
+    private static double simulate(ConcurrencyController controller, FakeTicker ticker, int capacity, int steps)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        long limitSum = 0;
+        for (int step = 0; step < steps; step++) {
+            int limit = controller.getLimit();
+            for (int i = 0; i < limit; i++) {
+                assertTrue(controller.acquire(running));
+            }
+            long latency = BASE_LATENCY * Math.max(limit, capacity) / capacity;
+            ticker.now += latency;
+            for (int i = 0; i < limit; i++) {
+                controller.release();
+                controller.record(latency);
+            }
+            if (step >= steps / 2) {
+                limitSum += limit;
+            }
+        }
+        return (double) limitSum / (steps - steps / 2);
+    }
+
+    private static final class FakeTicker implements ConcurrencyController.Ticker {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+}
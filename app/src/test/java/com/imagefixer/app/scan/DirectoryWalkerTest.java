@@ -0,0 +1,283 @@
+package com.imagefixer.app.scan;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DirectoryWalker的单元测试类
+ * <p>
+ * 在临时目录中构造一棵包含排除目录和深层目录的树，确认并行遍历发现的文件与单线程时完全一致，
+ * 并通过计数的 {@link FileSystemShim} 确认每个条目只 stat 一次、大目录按块读取且读取器都已关闭。
+ * 符号链接成环、指向已访问目录的链接、硬链接和指向文件的符号链接都只处理一次。
+ * </p>
+ */
+public class DirectoryWalkerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Set<String> expected;
+
+    @Before
+    public void setUp() throws IOException {
+        expected = new TreeSet<>();
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 5; j++) {
+                expected.add(create("DCIM/Album" + i + "/Sub" + j + "/IMG_" + j + ".jpg"));
+            }
+            expected.add(create("DCIM/Album" + i + "/cover.png"));
+        }
+        expected.add(create("root.jpg"));
+        // 深层目录不受深度限制
+        expected.add(create("a/b/c/deep.jpg"));
+        StringBuilder deep = new StringBuilder("a/b/c");
+        for (int i = 0; i < 40; i++) {
+            deep.append("/d").append(i);
+        }
+        expected.add(create(deep + "/very_deep.jpg"));
+        // 隐藏目录、Android、Download 被排除
+        create(".thumbnails/thumb.jpg");
+        create("Android/data/app/cache.jpg");
+        create("Android/media/com.whatsapp/WhatsApp Images/IMG-1.jpg");
+        create("Download/file.jpg");
+        create("Pictures/.trash/deleted.jpg");
+    }
+
+    @Test
+    public void testParallelWalkMatchesSequential() {
+        assertEquals(expected, walk(1, new AtomicBoolean(true)));
+        for (int parallelism : new int[] { 2, 4, 8 }) {
+            assertEquals("并行度 " + parallelism, expected, walk(parallelism, new AtomicBoolean(true)));
+        }
+    }
+
+    @Test
+    public void testCancelled() {
+        assertTrue(walk(4, new AtomicBoolean(false)).isEmpty());
+    }
+
+    @Test
+    public void testConfiguredRules() throws IOException {
+        ScanRules rules = ScanRules.parse(new StringReader(
+                "include /Android/media\nexclude /DCIM/Album1*\n"));
+        final ConcurrentLinkedQueue<String> found = new ConcurrentLinkedQueue<>();
+        DirectoryWalker walker = new DirectoryWalker(new JavaFileSystem(), rules, 4, new AtomicBoolean(true),
+                new DirectoryWalker.Listener() {
+                    @Override
+                    public void onFile(ScanEntry entry) {
+                        found.add(relativePath(entry.getFile()));
+                    }
+                });
+        walker.walk(folder.getRoot());
+
+        Set<String> result = new TreeSet<>(found);
+        assertTrue(result.contains("Android/media/com.whatsapp/WhatsApp Images/IMG-1.jpg"));
+        assertFalse(result.contains("Android/data/app/cache.jpg"));
+        assertFalse(result.contains("DCIM/Album1/cover.png"));
+        assertFalse(result.contains("DCIM/Album12/cover.png"));
+        assertTrue(result.contains("DCIM/Album2/cover.png"));
+        // Album1 和 Album10~19 共11个相册被剪掉
+        assertEquals(expected.size() - 11 * 6 + 1, result.size());
+    }
+
+    @Test
+    public void testLinksProcessedOnce() throws IOException {
+        File root = folder.getRoot();
+        // 指向祖先目录的链接成环，另一个链接指向已访问的相册
+        Files.createSymbolicLink(new File(root, "DCIM/Album0/loop").toPath(), root.toPath());
+        Files.createSymbolicLink(new File(root, "Pictures/album").toPath(),
+                new File(root, "DCIM/Album1").toPath());
+        // 同一个文件的硬链接和指向文件的符号链接，都只处理一次
+        Files.createLink(new File(root, "DCIM/Album2/hard.jpg").toPath(),
+                new File(root, "root.jpg").toPath());
+        Files.createSymbolicLink(new File(root, "DCIM/Album3/soft.jpg").toPath(),
+                new File(root, "DCIM/Album4/cover.png").toPath());
+        // 目标在排除的目录中，只能通过链接处理
+        Files.createSymbolicLink(new File(root, "DCIM/Album5/download.jpg").toPath(),
+                new File(root, "Download/file.jpg").toPath());
+
+        final ConcurrentLinkedQueue<ScanEntry> found = new ConcurrentLinkedQueue<>();
+        DirectoryWalker walker = new DirectoryWalker(new JavaFileSystem(), ScanRules.defaults(), 4, new AtomicBoolean(true),
+                new DirectoryWalker.Listener() {
+                    @Override
+                    public void onFile(ScanEntry entry) {
+                        found.add(entry);
+                    }
+                });
+        walker.walk(root);
+
+        // 每个物理文件只出现一次，路径可能是任一条链接
+        Set<Long> inodes = new TreeSet<>();
+        for (ScanEntry entry : found) {
+            assertTrue("重复处理了 " + entry.getFile(), inodes.add(entry.getInode()));
+        }
+        assertEquals(expected.size() + 1, found.size());
+        assertEquals(2, walker.getDuplicateDirectoryCount());
+        assertEquals(2, walker.getDuplicateFileCount());
+        assertEquals(2, walker.getFileLinkCount());
+    }
+
+    @Test
+    public void testOneStatPerEntry() {
+        CountingFileSystem fileSystem = new CountingFileSystem();
+        final ConcurrentLinkedQueue<ScanEntry> found = new ConcurrentLinkedQueue<>();
+        DirectoryWalker walker = new DirectoryWalker(fileSystem, ScanRules.defaults(), 4, new AtomicBoolean(true),
+                new DirectoryWalker.Listener() {
+                    @Override
+                    public void onFile(ScanEntry entry) {
+                        found.add(entry);
+                    }
+                });
+        walker.walk(folder.getRoot());
+
+        // 根目录一次，列出的每个条目一次
+        assertEquals(fileSystem.listedCount.get() + 1, fileSystem.statCount.get());
+        for (Map.Entry<String, AtomicInteger> entry : fileSystem.statsByPath.entrySet()) {
+            assertEquals(entry.getKey(), 1, entry.getValue().get());
+        }
+        // 每个读取的目录只打开一次，且都已关闭
+        assertEquals(walker.getDirectoryCount(), fileSystem.openCount.get());
+        assertEquals(fileSystem.openCount.get(), fileSystem.closeCount.get());
+        // 交给回调的条目带有 stat 读到的属性
+        assertEquals(expected.size(), found.size());
+        for (ScanEntry entry : found) {
+            assertTrue(entry.isRegularFile());
+            assertEquals(0, entry.getSize());
+            assertEquals(entry.getFile().lastModified(), entry.getLastModified());
+        }
+    }
+
+    @Test
+    public void testLargeDirectoryReadInChunks() throws IOException {
+        int size = DirectoryWalker.CHUNK_SIZE * 3 + 7;
+        for (int i = 0; i < size; i++) {
+            expected.add(create("WhatsApp/Media/IMG-" + i + ".jpg"));
+        }
+        CountingFileSystem fileSystem = new CountingFileSystem();
+        final AtomicInteger found = new AtomicInteger();
+        DirectoryWalker walker = new DirectoryWalker(fileSystem, ScanRules.defaults(), 2, new AtomicBoolean(true),
+                new DirectoryWalker.Listener() {
+                    @Override
+                    public void onFile(ScanEntry entry) {
+                        found.incrementAndGet();
+                    }
+                });
+        walker.walk(folder.getRoot());
+
+        assertEquals(expected.size(), found.get());
+        assertEquals(DirectoryWalker.CHUNK_SIZE, fileSystem.maxChunk.get());
+        assertEquals(fileSystem.openCount.get(), fileSystem.closeCount.get());
+    }
+
+    @Test
+    public void testArrayReaderChunks() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            create("flat/" + i + ".jpg");
+        }
+        DirectoryReader reader = ArrayDirectoryReader.open(new File(folder.getRoot(), "flat"));
+        String[] names = new String[4];
+        Set<String> read = new TreeSet<>();
+        int count;
+        int chunks = 0;
+        while ((count = reader.read(names)) > 0) {
+            for (int i = 0; i < count; i++) {
+                read.add(names[i]);
+            }
+            chunks++;
+        }
+        reader.close();
+        assertEquals(10, read.size());
+        assertEquals(3, chunks);
+        assertNull(ArrayDirectoryReader.open(new File(folder.getRoot(), "missing")));
+    }
+
+    private Set<String> walk(int parallelism, AtomicBoolean running) {
+        final ConcurrentLinkedQueue<String> found = new ConcurrentLinkedQueue<>();
+        DirectoryWalker walker = new DirectoryWalker(new JavaFileSystem(), ScanRules.defaults(), parallelism, running,
+                new DirectoryWalker.Listener() {
+                    @Override
+                    public void onFile(ScanEntry entry) {
+                        found.add(relativePath(entry.getFile()));
+                    }
+                });
+        walker.walk(folder.getRoot());
+        Set<String> result = new TreeSet<>(found);
+        assertEquals("重复发现了文件", found.size(), result.size());
+        assertEquals(found.size(), walker.getFileCount());
+        return result;
+    }
+
+    private String create(String path) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        assertTrue(file.createNewFile());
+        return path;
+    }
+
+    private String relativePath(File file) {
+        return file.getAbsolutePath().substring(folder.getRoot().getAbsolutePath().length() + 1)
+                .replace(File.separatorChar, '/');
+    }
+
+    // 统计系统调用次数的文件系统
+    private static final class CountingFileSystem implements FileSystemShim {
+        private final FileSystemShim delegate = new JavaFileSystem();
+        final AtomicInteger openCount = new AtomicInteger();
+        final AtomicInteger closeCount = new AtomicInteger();
+        final AtomicInteger listedCount = new AtomicInteger();
+        final AtomicInteger maxChunk = new AtomicInteger();
+        final AtomicInteger statCount = new AtomicInteger();
+        final Map<String, AtomicInteger> statsByPath = new ConcurrentHashMap<>();
+
+        @Override
+        public DirectoryReader openDirectory(File directory) {
+            final DirectoryReader reader = delegate.openDirectory(directory);
+            if (reader == null) {
+                return null;
+            }
+            openCount.incrementAndGet();
+            return new DirectoryReader() {
+                @Override
+                public int read(String[] names) throws IOException {
+                    int count = reader.read(names);
+                    listedCount.addAndGet(count);
+                    int max;
+                    while (count > (max = maxChunk.get()) && !maxChunk.compareAndSet(max, count)) {
+                        // 重试
+                    }
+                    return count;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    closeCount.incrementAndGet();
+                    reader.close();
+                }
+            };
+        }
+
+        @Override
+        public ScanEntry stat(File file) {
+            statCount.incrementAndGet();
+            AtomicInteger count = new AtomicInteger();
+            AtomicInteger previous = statsByPath.putIfAbsent(file.getPath(), count);
+            (previous != null ? previous : count).incrementAndGet();
+            return delegate.stat(file);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.imagefixer.app.scan;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * InodeSet的单元测试类
+ */
+public class InodeSetTest {
+
+    @Test
+    public void testAddAndGrow() {
+        InodeSet set = new InodeSet(4);
+        for (long inode = 1; inode <= 10000; inode++) {
+            assertTrue(set.add(inode % 3, inode));
+        }
+        assertEquals(10000, set.size());
+        for (long inode = 1; inode <= 10000; inode++) {
+            assertFalse(set.add(inode % 3, inode));
+        }
+        // 设备号不同的同一 inode 是不同的条目
+        assertTrue(set.add(7, 1));
+        assertEquals(10001, set.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroInode() {
+        new InodeSet(4).add(1, 0);
+    }
+}
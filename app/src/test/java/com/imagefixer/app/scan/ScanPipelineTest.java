@@ -0,0 +1,128 @@
+package com.imagefixer.app.scan;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * ScanPipeline的单元测试类
+ */
+public class ScanPipelineTest {
+
+    @Test
+    public void testEveryItemProcessedOnceWithBackpressure() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 500;
+        final ScanPipeline<Integer> pipeline = new ScanPipeline<>(8, 5, new AtomicBoolean(true));
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    assertTrue(pipeline.put(base + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Thread finisher = new Thread(() -> {
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            pipeline.finish();
+        });
+        finisher.start();
+
+        final BitSet seen = new BitSet();
+        final int[] duplicates = new int[1];
+        pipeline.drain(batch -> {
+            assertTrue(batch.size() <= 5);
+            int hits = 0;
+            for (int item : batch) {
+                if (seen.get(item)) {
+                    duplicates[0]++;
+                }
+                seen.set(item);
+                if (item % 100 == 0) {
+                    hits++;
+                }
+            }
+            // 处理比发现慢，队列很快被填满
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return hits;
+        });
+        finisher.join();
+
+        int total = producers * perProducer;
+        assertEquals(0, duplicates[0]);
+        assertEquals(total, seen.cardinality());
+        assertEquals(total, pipeline.getProducedCount());
+        assertEquals(total, pipeline.getProcessedCount());
+        assertEquals(total / 100, pipeline.getHitCount());
+        assertTrue(pipeline.getFirstHitNanos() >= 0);
+        System.out.println(pipeline.getSummary());
+    }
+
+    @Test
+    public void testConcurrentConsumers() throws InterruptedException {
+        final int total = 2000;
+        final ScanPipeline<Integer> pipeline = new ScanPipeline<>(16, 5, new AtomicBoolean(true));
+        final AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            Thread thread = new Thread(() -> pipeline.drain(batch -> {
+                for (int item : batch) {
+                    seen.incrementAndGet(item);
+                }
+                return batch.size();
+            }), "consumer-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (int i = 0; i < total; i++) {
+            assertTrue(pipeline.put(i));
+        }
+        pipeline.finish();
+        // 结束标记传给每个处理线程，全部返回
+        for (Thread thread : threads) {
+            thread.join(5000);
+            assertFalse(thread.getName(), thread.isAlive());
+        }
+
+        for (int i = 0; i < total; i++) {
+            assertEquals("条目 " + i, 1, seen.get(i));
+        }
+        assertEquals(total, pipeline.getProcessedCount());
+        assertEquals(total, pipeline.getHitCount());
+    }
+
+    @Test
+    public void testCancelledPipelineDoesNotBlock() {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ScanPipeline<Integer> pipeline = new ScanPipeline<>(2, 5, running);
+        assertTrue(pipeline.put(1));
+        assertTrue(pipeline.put(2));
+        // 队列已满，取消后放入立即返回，处理也不再进行
+        running.set(false);
+        assertFalse(pipeline.put(3));
+        pipeline.finish();
+        pipeline.drain(batch -> {
+            fail("已取消时不应处理");
+            return 0;
+        });
+        assertEquals(0, pipeline.getProcessedCount());
+    }
+}
@@ -0,0 +1,115 @@
+package com.imagefixer.app.scan;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * ScanRules的单元测试类
+ */
+public class ScanRulesTest {
+
+    @Test
+    public void testDefaults() {
+        ScanRules rules = ScanRules.defaults();
+        assertTrue(rules.getRoots().isEmpty());
+        assertNull(enter(rules, ".thumbnails"));
+        assertNull(enter(rules, "DCIM", ".trash"));
+        assertNull(enter(rules, "Android"));
+        assertNull(enter(rules, "DCIM", "Download"));
+        assertFalse(enter(rules, "DCIM", "Camera").isExcluded());
+        assertFalse(enter(rules, "Pictures", "Android.bak").isExcluded());
+    }
+
+    @Test
+    public void testIncludeOverridesEarlierExclude() throws IOException {
+        ScanRules rules = parse("include /Android/media\nexclude /Android/media/*/cache");
+        // Android 本身被排除，但其下还有包含的目录，继续遍历
+        assertTrue(enter(rules, "Android").isExcluded());
+        assertNull(enter(rules, "Android", "data"));
+        assertFalse(enter(rules, "Android", "media").isExcluded());
+        assertFalse(enter(rules, "Android", "media", "com.whatsapp", "WhatsApp Images").isExcluded());
+        assertNull(enter(rules, "Android", "media", "com.whatsapp", "cache"));
+        // 内置的隐藏目录规则在前，包含的子树中的隐藏目录也被包含；在后面重复排除规则即可排除
+        assertFalse(enter(rules, "Android", "media", "com.whatsapp", ".Statuses").isExcluded());
+        assertNull(enter(rules, "DCIM", ".trash"));
+        rules = parse("include /Android/media\nexclude .*");
+        assertNull(enter(rules, "Android", "media", "com.whatsapp", ".Statuses"));
+    }
+
+    @Test
+    public void testLaterRuleWinsAcrossDepths() throws IOException {
+        // 浅层目录匹配的规则更靠后，深层匹配的更早的规则不能改变结果
+        ScanRules rules = parse("include Camera\nexclude /DCIM");
+        assertNull(enter(rules, "DCIM"));
+        assertNull(enter(rules, "DCIM", "Camera"));
+        assertNull(enter(rules, "DCIM", "a", "Camera"));
+        assertFalse(enter(rules, "Pictures", "Camera").isExcluded());
+        // 顺序相反时深层的 include 在后，重新包含
+        rules = parse("exclude /DCIM\ninclude Camera");
+        assertTrue(enter(rules, "DCIM").isExcluded());
+        assertFalse(enter(rules, "DCIM", "Camera").isExcluded());
+        assertFalse(enter(rules, "DCIM", "a", "Camera", "b").isExcluded());
+    }
+
+    @Test
+    public void testAnchoredAndGlobPatterns() throws IOException {
+        ScanRules rules = parse("exclude /DCIM/Screenshot?\nexclude **/cache/**/tmp\nexclude Backup*");
+        assertNull(enter(rules, "DCIM", "Screenshots"));
+        assertFalse(enter(rules, "Pictures", "Screenshots").isExcluded());
+        assertFalse(enter(rules, "DCIM", "Screenshots2").isExcluded());
+        assertNull(enter(rules, "a", "cache", "tmp"));
+        assertNull(enter(rules, "cache", "b", "c", "tmp"));
+        assertFalse(enter(rules, "cache", "b").isExcluded());
+        assertNull(enter(rules, "Pictures", "Backup 2023"));
+    }
+
+    @Test
+    public void testRoots() throws IOException {
+        ScanRules rules = parse("# 两个根目录\nroot /storage/emulated/0\n\nroot /storage/1234-5678\n");
+        assertEquals(Arrays.asList(new File("/storage/emulated/0"), new File("/storage/1234-5678")),
+                rules.getRoots());
+    }
+
+    @Test
+    public void testInvalidConfig() throws IOException {
+        for (String config : new String[] { "exclude", "scan /DCIM", "include /", "exclude **" }) {
+            try {
+                parse("# 注释\n" + config);
+                fail(config);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("第 2 行"));
+            }
+        }
+    }
+
+    @Test
+    public void testGlobMatches() {
+        assertTrue(ScanRules.globMatches("*", ""));
+        assertTrue(ScanRules.globMatches("IMG_*.jpg", "IMG_0001.jpg"));
+        assertTrue(ScanRules.globMatches("a*b*c", "aXbYbZc"));
+        assertFalse(ScanRules.globMatches("a*b*c", "aXbYbZ"));
+        assertTrue(ScanRules.globMatches("??", "ab"));
+        assertFalse(ScanRules.globMatches("??", "abc"));
+    }
+
+    private static ScanRules parse(String config) throws IOException {
+        return ScanRules.parse(new StringReader(config));
+    }
+
+    // 从根目录依次进入各级子目录，返回最后一级的状态；中途被剪掉时返回 null
+    private static ScanRules.State enter(ScanRules rules, String... names) {
+        ScanRules.State state = rules.getRootState();
+        for (String name : names) {
+            state = rules.enter(state, name);
+            if (state == null) {
+                return null;
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,110 @@
+package com.imagefixer.app.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * DateTimeUtils的单元测试类
+ * <p>
+ * 主要确认设备时区在进程运行期间改变并刷新后，换算结果跟随新的时区（偏移量缓存不沿用旧时区），
+ * 以及常见格式的解析不分配对象。
+ * </p>
+ */
+public class DateTimeUtilsTest {
+    private static final TimeZone SHANGHAI = TimeZone.getTimeZone("Asia/Shanghai");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    private TimeZone originalZone;
+
+    @Before
+    public void setUp() {
+        originalZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        setZone(originalZone);
+    }
+
+    // 模拟设备时区改变：系统先更新默认时区，再发出 ACTION_TIMEZONE_CHANGED，ScanService 收到后刷新
+    private static void setZone(TimeZone zone) {
+        TimeZone.setDefault(zone);
+        DateTimeUtils.refreshTimeZone();
+    }
+
+    @Test
+    public void testFixedWidthExifFollowsZoneChange() {
+        setZone(SHANGHAI);
+        assertEquals(expected(SHANGHAI, 2023, 1, 1, 12, 30, 45), DateTimeUtils.parseExifDateTime("2023:01:01 12:30:45"));
+        setZone(NEW_YORK);
+        assertEquals(expected(NEW_YORK, 2023, 1, 1, 12, 30, 45), DateTimeUtils.parseExifDateTime("2023:01:01 12:30:45"));
+        // 切回原时区后不沿用另一个时区的缓存
+        setZone(SHANGHAI);
+        assertEquals(expected(SHANGHAI, 2023, 1, 1, 12, 30, 45), DateTimeUtils.parseExifDateTime("2023:01:01 12:30:45"));
+    }
+
+    @Test
+    public void testFallbackFormatFollowsZoneChange() {
+        // 位数不足，走 SimpleDateFormat 兼容路径
+        setZone(SHANGHAI);
+        assertEquals(expected(SHANGHAI, 2023, 1, 1, 8, 5, 0), DateTimeUtils.parseExifDateTime("2023:1:1 8:5:0"));
+        setZone(NEW_YORK);
+        assertEquals(expected(NEW_YORK, 2023, 1, 1, 8, 5, 0), DateTimeUtils.parseExifDateTime("2023:1:1 8:5:0"));
+    }
+
+    @Test
+    public void testDaylightSavingAndJulianDatesFollowZoneChange() {
+        setZone(NEW_YORK);
+        // 夏令时开始当天（缺口之后）和儒略历日期
+        assertEquals(expected(NEW_YORK, 2023, 3, 12, 3, 30, 0), DateTimeUtils.toEpochMillis(2023, 3, 12, 3, 30, 0));
+        assertEquals(expected(NEW_YORK, 1500, 6, 1, 12, 0, 0), DateTimeUtils.toEpochMillis(1500, 6, 1, 12, 0, 0));
+        setZone(SHANGHAI);
+        assertEquals(expected(SHANGHAI, 2023, 3, 12, 3, 30, 0), DateTimeUtils.toEpochMillis(2023, 3, 12, 3, 30, 0));
+        assertEquals(expected(SHANGHAI, 1500, 6, 1, 12, 0, 0), DateTimeUtils.toEpochMillis(1500, 6, 1, 12, 0, 0));
+    }
+
+    /**
+     * 定宽EXIF字符串和文件名的解析不分配对象（不能每次调用 TimeZone.getDefault()，它会复制时区对象）
+     */
+    @Test
+    public void testParseDoesNotAllocate() {
+        FileNameDateTimeScanner scanner = new FileNameDateTimeScanner();
+        long sum = 0;
+        for (int i = 0; i < 10000; i++) {
+            sum += DateTimeUtils.parseExifDateTime("2023:01:01 12:30:45");
+            sum += scanner.parse("IMG_20230101_123045.jpg");
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < 10000; i++) {
+            sum += DateTimeUtils.parseExifDateTime("2023:01:01 12:30:45");
+            sum += scanner.parse("IMG_20230101_123045.jpg");
+        }
+        long after = allocatedBytes();
+        assertNotEquals(0, sum);
+        if (before >= 0) {
+            assertTrue("每次解析分配了 " + (after - before) / 20000.0 + " 字节", after - before < 20000);
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static long expected(TimeZone zone, int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = new GregorianCalendar(zone);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -4,7 +4,9 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.StringReader;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
@@ -12,6 +14,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * FileNameDateTimeParser的单元测试类
@@ -155,6 +158,216 @@ public class FileNameDateTimeParserTest {
         assertNull("超出合理范围的时间戳应该返回null", dateFuture);
     }
 
+    /**
+     * 测试定宽EXIF日期解析与 SimpleDateFormat 的结果一致
+     * 包括越界字段（宽松模式进位）、尾部附加内容和非定宽写法
+     */
+    @Test
+    public void testParseExifDateTimeMillis_MatchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat exifFormat = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.getDefault());
+        String[] inputs = {
+                "2023:01:01 12:30:45", "1970:01:01 00:00:00", "2024:02:29 23:59:59",
+                "2023:13:01 00:00:00", "2023:00:00 00:00:00", "2023:03:26 02:30:00",
+                "2023:10:29 02:30:00", "2023:01:01 12:30:45+08:00", "2023:1:1 1:2:3"
+        };
+        for (String input : inputs) {
+            assertEquals("EXIF日期: " + input, exifFormat.parse(input).getTime(),
+                    parser.parseExifDateTimeMillis(input));
+        }
+
+        assertEquals(DateTimeUtils.INVALID, parser.parseExifDateTimeMillis("    :  :     :  :  "));
+        assertEquals(DateTimeUtils.INVALID, parser.parseExifDateTimeMillis("invalid_date_string"));
+        assertNull(parser.parseExifDateTime("invalid_date_string"));
+    }
+
+    /**
+     * 测试多线程同时解析EXIF日期（覆盖整年的每一天，包括夏令时切换日）
+     */
+    @Test
+    public void testParseExifDateTimeMillis_Concurrent() throws Exception {
+        SimpleDateFormat exifFormat = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.US);
+        Calendar calendar = Calendar.getInstance();
+        final long[] expected = new long[366];
+        final String[] inputs = new String[expected.length];
+        for (int day = 0; day < expected.length; day++) {
+            calendar.clear();
+            calendar.set(2024, Calendar.JANUARY, 1 + day, 2, 30, 0);
+            expected[day] = calendar.getTimeInMillis();
+            inputs[day] = exifFormat.format(calendar.getTime());
+        }
+
+        final int threadCount = 8;
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int round = 0; round < 200; round++) {
+                        for (int day = 0; day < inputs.length; day++) {
+                            if (parser.parseExifDateTimeMillis(inputs[day]) != expected[day]) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("并发解析结果应与Calendar一致", 0, failures.get());
+    }
+
+    /**
+     * 测试形状缓存：同一命名方式的文件名只匹配一次正则，结果与关闭缓存时一致
+     * 包括形状相同但数值超出范围、需要交给后续规则或返回null的文件名
+     */
+    @Test
+    public void testShapeCache_MatchesUncachedParser() {
+        FileNameDateTimeParser uncached = new FileNameDateTimeParser();
+        uncached.setShapeCacheSize(0);
+
+        String[] names = new String[1000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = String.format(Locale.US, "IMG_2023%02d%02d_%06d.jpg", 1 + i % 12, 1 + i % 28, i * 37);
+        }
+        for (String name : names) {
+            assertEquals(name, uncached.getFileNameDateTime(name), parser.getFileNameDateTime(name));
+        }
+        assertTrue("同一形状应几乎全部命中缓存", parser.getShapeCacheHitRate() > 0.99);
+
+        // 形状相同，但前面的规则因数值超出范围而落选
+        String[] sameShape = {
+                "IMG_99991301_123045.jpg", "IMG_20230101_123045.jpg",
+                "mmexport9999999999999.jpg", "mmexport1600000000000.jpg",
+                "2099-01-01-12-30-45.jpg", "2023-01-01-12-30-45.jpg"
+        };
+        for (String name : sameShape) {
+            assertEquals(name, uncached.getFileNameDateTime(name), parser.getFileNameDateTime(name));
+        }
+        assertNull(parser.getFileNameDateTime("IMG_99991301_123045.jpg"));
+        assertNotNull(parser.getFileNameDateTime("IMG_20230101_123045.jpg"));
+    }
+
+    /**
+     * 测试厂商前缀分派：已知格式精确到毫秒，字段不合法时交给通用规则链
+     */
+    @Test
+    public void testVendorDispatch() throws Exception {
+        SimpleDateFormat millisFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+        Map<String, String> cases = new HashMap<>();
+        cases.put("PXL_20230101_123045123.jpg", "2023-01-01 12:30:45.123");
+        cases.put("PXL_20230101_123045123.MP.jpg", "2023-01-01 12:30:45.123");
+        cases.put("Screenshot_20230101-123045_Chrome.jpg", "2023-01-01 12:30:45.000");
+        cases.put("Screenshot_2023-01-01-12-30-45-123_com.tencent.mm.jpg", "2023-01-01 12:30:45.123");
+        cases.put("IMG-20230101-WA0001.jpg", "2023-01-01 00:00:00.000");
+        cases.put("IMG_20230101_123045_EDITED.jpg", "2023-01-01 12:30:45.000");
+        for (Map.Entry<String, String> entry : cases.entrySet()) {
+            assertEquals(entry.getKey(), millisFormat.parse(entry.getValue()).getTime(),
+                    parser.getFileNameDateTimeMillis(entry.getKey()));
+        }
+        assertEquals(1600000000123L, parser.getFileNameDateTimeMillis("mmexport1600000000123.jpg"));
+        assertEquals(1600000000123L, parser.getFileNameDateTimeMillis("wx_camera_1600000000123.jpg"));
+
+        // 字段不合法或数字串更长时，与关闭前缀分派的结果一致
+        FileNameDateTimeParser generic = new FileNameDateTimeParser();
+        generic.setVendorDispatch(false);
+        String[] fallbacks = { "IMG_20231399_123045.jpg", "IMG_20230101_1230451.jpg", "mmexport99999999999999.jpg",
+                "IMG_2023.jpg" };
+        for (String name : fallbacks) {
+            assertEquals(name, generic.getFileNameDateTimeMillis(name), parser.getFileNameDateTimeMillis(name));
+        }
+    }
+
+    /**
+     * 测试用户模板：按配置文件顺序优先于内置规则，配置有误时报告行号且保留原有模板
+     */
+    @Test
+    public void testUserPatterns() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        // 加载前先解析一次，形状缓存中已有这些形状
+        assertEquals(format.parse("2023-01-01 12:30:45").getTime(),
+                parser.getFileNameDateTimeMillis("IMG_20230101_123045.jpg"));
+        assertEquals(format.parse("2023-01-01 00:00:00").getTime(),
+                parser.getFileNameDateTimeMillis("REC_2023-01-01_12h30.mp4"));
+
+        parser.loadUserPatterns(new StringReader("# 行车记录仪\n"
+                + "DashCamRule = 'REC_'yyyy'-'MM'-'dd'_'HH'h'mm*\n"
+                + "\n"
+                + "'IMG_'yyyyddMM'_'HHmmss*\n"));
+        assertEquals(Arrays.asList("DashCamRule", "UserRule2"), ruleNames(parser.getUserRules()));
+
+        assertEquals(format.parse("2023-01-01 12:30:00").getTime(),
+                parser.getFileNameDateTimeMillis("REC_2023-01-01_12h30.mp4"));
+        // 用户模板优先于内置的 IMG_ 规则
+        assertEquals(format.parse("2023-12-01 12:30:45").getTime(),
+                parser.getFileNameDateTimeMillis("IMG_20230112_123045.jpg"));
+        // 用户模板的字段不合法时交给内置规则
+        assertEquals(format.parse("2023-01-13 12:30:45").getTime(),
+                parser.getFileNameDateTimeMillis("IMG_20230113_123045.jpg"));
+
+        try {
+            parser.loadUserPatterns(new StringReader("'OK_'yyyyMMdd*\nBadRule = 'X_'yyyyQQ*\n"));
+            fail("未知字段应抛出异常");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("第 2 行"));
+        }
+        assertEquals(2, parser.getUserRules().size());
+
+        // 空配置清除用户模板
+        parser.loadUserPatterns(new StringReader(""));
+        assertTrue(parser.getUserRules().isEmpty());
+        assertEquals(format.parse("2023-01-12 12:30:45").getTime(),
+                parser.getFileNameDateTimeMillis("IMG_20230112_123045.jpg"));
+    }
+
+    private static List<String> ruleNames(List<FileNameDateTimeParser.Rule> rules) {
+        List<String> names = new ArrayList<>();
+        for (FileNameDateTimeParser.Rule rule : rules) {
+            names.add(rule.getName());
+        }
+        return names;
+    }
+
+    /**
+     * 测试批量解析：超过拆分阈值的大目录（并行解析）与逐个解析的结果一致
+     */
+    @Test
+    public void testParseBatch_MatchesSingleParse() {
+        FileNameDateTimeParser single = new FileNameDateTimeParser();
+        single.setShapeCacheSize(0);
+
+        String[] names = new String[20000];
+        for (int i = 0; i < names.length; i++) {
+            switch (i % 50) {
+                case 0:
+                    names[i] = null;
+                    break;
+                case 1:
+                    names[i] = "random_file_name.jpg";
+                    break;
+                case 2:
+                    names[i] = "99999999999999.jpg";
+                    break;
+                case 3:
+                    names[i] = "mmexport" + (1600000000000L + i * 1000L) + ".jpg";
+                    break;
+                default:
+                    names[i] = String.format(Locale.US, "IMG-2023%02d%02d-WA%04d.jpg", 1 + i % 12, 1 + i % 28,
+                            i % 10000);
+                    break;
+            }
+        }
+
+        long[] results = new long[names.length];
+        parser.parseBatch(names, results);
+        for (int i = 0; i < names.length; i++) {
+            assertEquals("文件名: " + names[i], single.getFileNameDateTimeMillis(names[i]), results[i]);
+        }
+    }
+
     // /**
     // * 测试特殊格式的日期解析
     // * 适用于只需检查部分日期字段（年、月、日）的测试用例
@@ -0,0 +1,150 @@
+package com.imagefixer.app.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * FileNameDateTimeScanner的单元测试类
+ * 使用对照表方式管理测试用例，与 FileNameDateTimeParserTest 的写法一致
+ */
+public class FileNameDateTimeScannerTest {
+
+    private FileNameDateTimeScanner scanner;
+    private SimpleDateFormat dateFormat;
+
+    // 日期时间格式对照表 - 输入文件名 -> 预期格式化日期
+    private static final Map<String, String> DATE_TIME_TEST_CASES = new LinkedHashMap<>();
+    // 时间戳对照表 - 输入文件名 -> 预期毫秒时间戳
+    private static final Map<String, Long> TIMESTAMP_TEST_CASES = new LinkedHashMap<>();
+    // 无法解析的输入
+    private static final List<String> INVALID_INPUTS = Arrays.asList(null, "", "random_file_name.jpg",
+            "abc123def.jpg", ".jpg", "IMG_123.jpg", "99999999999999.jpg");
+
+    static {
+        // 紧凑格式
+        DATE_TIME_TEST_CASES.put("IMG_20230101_123045.jpg", "2023-01-01 12:30:45");
+        DATE_TIME_TEST_CASES.put("image_20230101123045.bmp", "2023-01-01 12:30:45");
+        DATE_TIME_TEST_CASES.put("image_20230101123045_.bmp", "2023-01-01 12:30:45");
+        DATE_TIME_TEST_CASES.put("document_20230101.pdf", "2023-01-01 00:00:00");
+        // 分隔格式
+        DATE_TIME_TEST_CASES.put("photo_2023-01-01-12-30-45.png", "2023-01-01 12:30:45");
+        DATE_TIME_TEST_CASES.put("image_2023.01.01.12.30.45.bmp", "2023-01-01 12:30:45");
+        DATE_TIME_TEST_CASES.put("A2023.01.02 13.45.30.jpg", "2023-01-02 13:45:30");
+        DATE_TIME_TEST_CASES.put("report 2023 01 03.pdf", "2023-01-03 00:00:00");
+        DATE_TIME_TEST_CASES.put("image 2023.01.02.jpg", "2023-01-02 00:00:00");
+        DATE_TIME_TEST_CASES.put("file_2023 01 04 14:30.jpg", "2023-01-04 14:30:00");
+        // 只有年份
+        DATE_TIME_TEST_CASES.put("image 2023.jpg", "2023-01-01 00:00:00");
+        // 中文上午/下午格式
+        DATE_TIME_TEST_CASES.put(".2023_02_17 下午9_30 Office Lens (16).jpg", "2023-02-17 21:30:00");
+        DATE_TIME_TEST_CASES.put(".2023_02_17 上午9_30 Office Lens (16).jpg", "2023-02-17 09:30:00");
+        DATE_TIME_TEST_CASES.put(".2023_02_17 上午12_30 Office Lens (16).jpg", "2023-02-17 00:30:00");
+        DATE_TIME_TEST_CASES.put(".2023_02_17 下午12_05.jpg", "2023-02-17 12:05:00");
+
+        // Unix时间戳：取前10位按秒解析
+        TIMESTAMP_TEST_CASES.put("1748512965.jpg", 1748512965000L);
+        TIMESTAMP_TEST_CASES.put("1600000000123.jpg", 1600000000000L);
+        // 厂商模板：13位毫秒时间戳
+        TIMESTAMP_TEST_CASES.put("mmexport1600000000123.jpg", 1600000000123L);
+    }
+
+    @Before
+    public void setUp() {
+        scanner = new FileNameDateTimeScanner();
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    }
+
+    /**
+     * 使用对照表批量测试紧凑、分隔、只有年份和中文上午/下午格式
+     */
+    @Test
+    public void testParse_StandardFormats() throws Exception {
+        for (Map.Entry<String, String> entry : DATE_TIME_TEST_CASES.entrySet()) {
+            String fileName = entry.getKey();
+            long millis = scanner.parse(fileName);
+            assertNotEquals("文件名: " + fileName + " 应该能解析出日期", FileNameDateTimeScanner.NO_MATCH, millis);
+            assertEquals("文件名: " + fileName + " 的解析结果应该正确",
+                    dateFormat.parse(entry.getValue()).getTime(), millis);
+        }
+    }
+
+    /**
+     * 测试Unix时间戳格式
+     */
+    @Test
+    public void testParse_Timestamp() {
+        for (Map.Entry<String, Long> entry : TIMESTAMP_TEST_CASES.entrySet()) {
+            assertEquals("文件名: " + entry.getKey(), entry.getValue().longValue(), scanner.parse(entry.getKey()));
+        }
+    }
+
+    /**
+     * 批量测试无法解析的输入（包括超出合理范围的时间戳）
+     */
+    @Test
+    public void testParse_NoMatch() {
+        for (String input : INVALID_INPUTS) {
+            assertEquals("输入: " + input, FileNameDateTimeScanner.NO_MATCH, scanner.parse(input));
+        }
+    }
+
+    /**
+     * 测试允许的最大时间戳：超出范围的候选结果被跳过，交给后面的格式
+     */
+    @Test
+    public void testParse_MaxTimestamp() throws Exception {
+        long max = dateFormat.parse("2020-01-01 00:00:00").getTime();
+        assertEquals(FileNameDateTimeScanner.NO_MATCH, scanner.parse("IMG_20230101_123045.jpg", max));
+        assertEquals(dateFormat.parse("2019-06-01 00:00:00").getTime(),
+                scanner.parse("IMG_20190601.jpg", max));
+    }
+
+    /**
+     * 测试厂商模板：精确到毫秒，字段不合法时交给通用格式
+     */
+    @Test
+    public void testParse_VendorTemplates() throws Exception {
+        SimpleDateFormat millisFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+        assertEquals(millisFormat.parse("2023-01-01 12:30:45.123").getTime(),
+                scanner.parse("PXL_20230101_123045123.jpg"));
+        assertEquals(millisFormat.parse("2023-01-01 12:30:45.000").getTime(),
+                scanner.parse("Screenshot_20230101-123045_Chrome.jpg"));
+        // 不使用模板时与通用格式一致
+        FileNameDateTimeScanner generic = new FileNameDateTimeScanner(Collections.<FileNameTemplate>emptyList());
+        assertEquals(1600000000000L, generic.parse("mmexport1600000000123.jpg"));
+        // 月份不合法，模板不给出结果，交给通用格式
+        assertEquals(generic.parse("PXL_20231399_123045123.jpg"), scanner.parse("PXL_20231399_123045123.jpg"));
+    }
+
+    /**
+     * 与 FileNameDateTimeParser 的结果一致：默认配置对应开启厂商前缀分派，不使用模板对应通用规则链
+     */
+    @Test
+    public void testParse_MatchesParser() {
+        FileNameDateTimeParser parser = new FileNameDateTimeParser();
+        FileNameDateTimeParser genericParser = new FileNameDateTimeParser();
+        genericParser.setVendorDispatch(false);
+        FileNameDateTimeScanner generic = new FileNameDateTimeScanner(Collections.<FileNameTemplate>emptyList());
+
+        List<String> names = new ArrayList<>(DATE_TIME_TEST_CASES.keySet());
+        names.addAll(TIMESTAMP_TEST_CASES.keySet());
+        names.addAll(INVALID_INPUTS);
+        names.addAll(Arrays.asList("PXL_20230101_123045123.jpg", "IMG-20230101-WA0001.jpg",
+                "Screenshot_2023-01-01-12-30-45-123_com.tencent.mm.jpg", "PXL_20231399_123045123.jpg"));
+        for (String fileName : names) {
+            assertEquals(String.valueOf(fileName), parser.getFileNameDateTimeMillis(fileName), scanner.parse(fileName));
+            assertEquals(String.valueOf(fileName), genericParser.getFileNameDateTimeMillis(fileName),
+                    generic.parse(fileName));
+        }
+    }
+}
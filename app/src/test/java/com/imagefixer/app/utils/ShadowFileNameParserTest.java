@@ -0,0 +1,106 @@
+package com.imagefixer.app.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShadowFileNameParser的单元测试类
+ * <p>
+ * 默认使用 test/resources 中的文件名语料；可通过 -Dshadow.corpus=/path/to/names.txt
+ * 指定从设备导出的真实文件名列表，在替换主解析器之前离线验证候选实现的行为完全一致。
+ * </p>
+ */
+public class ShadowFileNameParserTest {
+
+    private static final String CORPUS_RESOURCE = "/filename_corpus.txt";
+
+    @Test
+    public void testScannerAgreesWithParserOnCorpus() throws IOException {
+        List<String> names = loadCorpus();
+        assertFalse("语料为空", names.isEmpty());
+
+        // 与应用中的配置一致：主解析器开启厂商前缀分派
+        FileNameDateTimeParser primary = new FileNameDateTimeParser();
+        ShadowFileNameParser shadow = new ShadowFileNameParser(primary);
+        for (String name : names) {
+            shadow.getFileNameDateTime(name);
+        }
+        System.out.println(shadow.getSummary());
+
+        assertEquals(names.size(), shadow.getComparedCount());
+        assertEquals("不一致样本: " + shadow.getDisagreements(), 0, shadow.getDisagreementCount());
+    }
+
+    @Test
+    public void testScannerFollowsParserTemplates() throws IOException {
+        List<String> names = loadCorpus();
+
+        // 关闭前缀分派：扫描器只扫描通用格式
+        FileNameDateTimeParser generic = new FileNameDateTimeParser();
+        generic.setVendorDispatch(false);
+        ShadowFileNameParser genericShadow = new ShadowFileNameParser(generic);
+        // 用户模板优先于厂商模板
+        FileNameDateTimeParser custom = new FileNameDateTimeParser();
+        custom.loadUserPatterns(new StringReader("'IMG_'yyyyddMM'_'HHmmss*\n'REC_'yyyy'-'MM'-'dd'_'HH'h'mm*\n"));
+        ShadowFileNameParser customShadow = new ShadowFileNameParser(custom);
+        for (String name : names) {
+            genericShadow.getFileNameDateTime(name);
+            customShadow.getFileNameDateTime(name);
+        }
+        customShadow.getFileNameDateTime("REC_2023-01-01_12h30.mp4");
+
+        assertEquals("不一致样本: " + genericShadow.getDisagreements(), 0, genericShadow.getDisagreementCount());
+        assertEquals("不一致样本: " + customShadow.getDisagreements(), 0, customShadow.getDisagreementCount());
+    }
+
+    @Test
+    public void testDisagreementIsRecordedAndPrimaryResultReturned() {
+        FileNameDateTimeParser primary = new FileNameDateTimeParser();
+        ShadowFileNameParser shadow = new ShadowFileNameParser(primary, new ShadowFileNameParser.Candidate() {
+            @Override
+            public String getName() {
+                return "AlwaysInvalid";
+            }
+
+            @Override
+            public long parse(String fileName) {
+                return DateTimeUtils.INVALID;
+            }
+        });
+
+        assertEquals(primary.getFileNameDateTime("IMG_20230101_123045.jpg"),
+                shadow.getFileNameDateTime("IMG_20230101_123045.jpg"));
+        assertNull(shadow.getFileNameDateTime("random_file_name.jpg"));
+
+        assertEquals(2, shadow.getComparedCount());
+        assertEquals(1, shadow.getDisagreementCount());
+        assertTrue(shadow.getDisagreements().get(0).startsWith("IMG_20230101_123045.jpg"));
+    }
+
+    private List<String> loadCorpus() throws IOException {
+        String path = System.getProperty("shadow.corpus");
+        InputStream in = path != null ? new FileInputStream(path) : getClass().getResourceAsStream(CORPUS_RESOURCE);
+        assertNotNull("找不到文件名语料: " + CORPUS_RESOURCE, in);
+
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    names.add(line);
+                }
+            }
+        }
+        return names;
+    }
+}
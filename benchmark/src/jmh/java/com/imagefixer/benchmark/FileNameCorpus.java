@@ -0,0 +1,170 @@
+package com.imagefixer.benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 基准测试用的文件名语料
+ * <p>
+ * 包含 FileNameDateTimeParserTest 中的对照表，以及按真实相册比例随机生成的文件名：
+ * 相机、微信、截图、时间戳和无日期的杂项文件名。使用固定种子，保证每次运行的输入完全一致。
+ * </p>
+ */
+public final class FileNameCorpus {
+
+    /** 与 FileNameDateTimeParserTest 对照表及无效用例保持一致 */
+    public static final String[] TEST_TABLE = {
+            "IMG_20230101_123045.jpg",
+            "photo_2023-01-01-12-30-45.png",
+            "document_20230101.pdf",
+            "image_2023.01.01.12.30.45.bmp",
+            "image_20230101123045.bmp",
+            "image_20230101123045_.bmp",
+            "report 2023 01 03.pdf",
+            "A2023.01.02 13.45.30.jpg",
+            "image 2023.01.02.jpg",
+            "image 2023.jpg",
+            "file_2023 01 04 14:30.jpg",
+            ".2023_02_17 下午9_30 Office Lens (16).jpg",
+            ".2023_02_17 上午9_30 Office Lens (16).jpg",
+            ".2023_02_17 上午12_30 Office Lens (16).jpg",
+            "random_file_name.jpg",
+            "abc123def.jpg",
+            "99999999999999.jpg"
+    };
+
+    // 2015-01-01 ~ 2024-12-31 之间的秒级时间范围
+    private static final long MIN_SECONDS = 1420070400L;
+    private static final long MAX_SECONDS = 1735603200L;
+
+    private static final String[] EXTENSIONS = { ".jpg", ".jpeg", ".png", ".heic", ".webp", ".mp4" };
+    private static final String[] PACKAGES = { "com.tencent.mm", "com.android.chrome", "com.taobao.taobao",
+            "com.ss.android.ugc.aweme" };
+    private static final String[] JUNK_WORDS = { "photo", "image", "wallpaper", "avatar", "scan", "未命名", "头像",
+            "copy", "edited", "final" };
+
+    private FileNameCorpus() {
+    }
+
+    /**
+     * 生成指定数量的文件名
+     *
+     * @param count 文件名数量
+     * @param seed  随机种子
+     * @return 文件名数组
+     */
+    public static String[] generate(int count, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = nextName(random);
+        }
+        return names;
+    }
+
+    /**
+     * 生成一个微信目录的文件名列表（IMG-20230101-WA0001.jpg），按日期和序号排列
+     *
+     * @param count 文件名数量
+     * @param seed  随机种子
+     * @return 文件名数组
+     */
+    public static String[] generateDirectory(int count, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        int[] f = randomFields(random);
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(20) == 0) {
+                f = randomFields(random);
+            }
+            names[i] = String.format(Locale.US, "IMG-%04d%02d%02d-WA%04d.jpg", f[0], f[1], f[2], i % 10000);
+        }
+        return names;
+    }
+
+    /**
+     * 生成指定数量的EXIF日期字符串（"yyyy:MM:dd HH:mm:ss"）
+     *
+     * @param count 字符串数量
+     * @param seed  随机种子
+     * @return EXIF日期字符串数组
+     */
+    public static String[] generateExifDates(int count, long seed) {
+        Random random = new Random(seed);
+        String[] dates = new String[count];
+        for (int i = 0; i < count; i++) {
+            int[] f = randomFields(random);
+            dates[i] = String.format(Locale.US, "%04d:%02d:%02d %02d:%02d:%02d", f[0], f[1], f[2], f[3], f[4], f[5]);
+        }
+        return dates;
+    }
+
+    private static String nextName(Random random) {
+        int[] f = randomFields(random);
+        int millis = random.nextInt(1000);
+        String extension = EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+        int kind = random.nextInt(100);
+        if (kind < 40) {
+            // 相机：IMG_20230101_123045、VID_20230101_123045、PXL_20230101_123045123
+            switch (random.nextInt(3)) {
+                case 0:
+                    return String.format(Locale.US, "IMG_%04d%02d%02d_%02d%02d%02d%s", f[0], f[1], f[2], f[3], f[4],
+                            f[5], extension);
+                case 1:
+                    return String.format(Locale.US, "VID_%04d%02d%02d_%02d%02d%02d.mp4", f[0], f[1], f[2], f[3], f[4],
+                            f[5]);
+                default:
+                    return String.format(Locale.US, "PXL_%04d%02d%02d_%02d%02d%02d%03d%s", f[0], f[1], f[2], f[3],
+                            f[4], f[5], millis, extension);
+            }
+        } else if (kind < 60) {
+            // 微信：mmexport1600000000000、wx_camera_1600000000000、IMG-20230101-WA0001
+            long timestamp = randomSeconds(random) * 1000 + millis;
+            switch (random.nextInt(3)) {
+                case 0:
+                    return "mmexport" + timestamp + ".jpg";
+                case 1:
+                    return "wx_camera_" + timestamp + ".jpg";
+                default:
+                    return String.format(Locale.US, "IMG-%04d%02d%02d-WA%04d.jpg", f[0], f[1], f[2],
+                            random.nextInt(10000));
+            }
+        } else if (kind < 75) {
+            // 截图：Screenshot_2023-01-01-12-30-45-123_com.tencent.mm
+            return String.format(Locale.US, "Screenshot_%04d-%02d-%02d-%02d-%02d-%02d-%03d_%s.jpg", f[0], f[1], f[2],
+                    f[3], f[4], f[5], millis, PACKAGES[random.nextInt(PACKAGES.length)]);
+        } else if (kind < 85) {
+            // 时间戳：1600000000.jpg、1600000000000.jpg
+            long seconds = randomSeconds(random);
+            return (random.nextBoolean() ? String.valueOf(seconds) : String.valueOf(seconds * 1000 + millis))
+                    + extension;
+        } else {
+            // 无日期的杂项文件名：DSC_0001、photo (3)、头像_edited
+            switch (random.nextInt(3)) {
+                case 0:
+                    return String.format(Locale.US, "DSC_%04d%s", random.nextInt(10000), extension);
+                case 1:
+                    return JUNK_WORDS[random.nextInt(JUNK_WORDS.length)] + " (" + random.nextInt(50) + ")" + extension;
+                default:
+                    return JUNK_WORDS[random.nextInt(JUNK_WORDS.length)] + "_"
+                            + JUNK_WORDS[random.nextInt(JUNK_WORDS.length)] + extension;
+            }
+        }
+    }
+
+    private static long randomSeconds(Random random) {
+        return MIN_SECONDS + (long) (random.nextDouble() * (MAX_SECONDS - MIN_SECONDS));
+    }
+
+    // 年、月、日、时、分、秒
+    private static int[] randomFields(Random random) {
+        return new int[] {
+                2015 + random.nextInt(10),
+                1 + random.nextInt(12),
+                1 + random.nextInt(28),
+                random.nextInt(24),
+                random.nextInt(60),
+                random.nextInt(60)
+        };
+    }
+}
@@ -0,0 +1,109 @@
+package com.imagefixer.benchmark;
+
+import com.imagefixer.app.utils.FileNameDateTimeParser;
+import com.imagefixer.app.utils.FileNameDateTimeScanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+
+/**
+ * 文件名及EXIF日期解析的吞吐量基准测试
+ * <p>
+ * 每次调用只解析一个输入，依次轮转整个输入数组；配合 gc 分析器即可得到每次解析分配的字节数。
+ * </p>
+ */
+@State(Scope.Thread)
+public class FileNameDateTimeParserBenchmark {
+
+    // 语料规模（2的幂，便于用掩码轮转）
+    private static final int CORPUS_SIZE = 1 << 20;
+    private static final long SEED = 20240101L;
+    // 批量解析每次调用的文件名数量（模拟一个大目录）
+    private static final int BATCH_SIZE = 20000;
+
+    private FileNameDateTimeParser parser;
+    private FileNameDateTimeParser uncachedParser;
+    private FileNameDateTimeScanner scanner;
+    private String[] testTable;
+    private String[] corpus;
+    private String[] exifDates;
+    private String[] batchNames;
+    private long[] batchResults;
+
+    private int tableIndex;
+    private int corpusIndex;
+    private int exifIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parser = new FileNameDateTimeParser();
+        uncachedParser = new FileNameDateTimeParser();
+        uncachedParser.setShapeCacheSize(0);
+        scanner = new FileNameDateTimeScanner();
+        testTable = FileNameCorpus.TEST_TABLE;
+        corpus = FileNameCorpus.generate(CORPUS_SIZE, SEED);
+        exifDates = FileNameCorpus.generateExifDates(CORPUS_SIZE, SEED);
+        batchNames = FileNameCorpus.generateDirectory(BATCH_SIZE, SEED);
+        batchResults = new long[BATCH_SIZE];
+    }
+
+    @Benchmark
+    public Date getFileNameDateTime_testTable() {
+        String name = testTable[tableIndex];
+        tableIndex = (tableIndex + 1) % testTable.length;
+        return parser.getFileNameDateTime(name);
+    }
+
+    @Benchmark
+    public Date getFileNameDateTime_corpus() {
+        return parser.getFileNameDateTime(corpus[corpusIndex++ & (CORPUS_SIZE - 1)]);
+    }
+
+    @Benchmark
+    public long getFileNameDateTimeMillis_corpus() {
+        return parser.getFileNameDateTimeMillis(corpus[corpusIndex++ & (CORPUS_SIZE - 1)]);
+    }
+
+    @Benchmark
+    public long getFileNameDateTimeMillis_uncached_corpus() {
+        return uncachedParser.getFileNameDateTimeMillis(corpus[corpusIndex++ & (CORPUS_SIZE - 1)]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long[] parseBatch_directory() {
+        parser.parseBatch(batchNames, batchResults);
+        return batchResults;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long parseSingle_directory() {
+        long sum = 0;
+        for (String name : batchNames) {
+            sum += parser.getFileNameDateTimeMillis(name);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scanner_corpus() {
+        return scanner.parse(corpus[corpusIndex++ & (CORPUS_SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Date parseExifDateTime() {
+        return parser.parseExifDateTime(exifDates[exifIndex++ & (CORPUS_SIZE - 1)]);
+    }
+
+    @Benchmark
+    public long parseExifDateTimeMillis() {
+        return parser.parseExifDateTimeMillis(exifDates[exifIndex++ & (CORPUS_SIZE - 1)]);
+    }
+}